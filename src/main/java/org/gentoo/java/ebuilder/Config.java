@@ -6,10 +6,16 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import org.gentoo.java.ebuilder.maven.CacheBackend;
 import org.gentoo.java.ebuilder.maven.JavaVersion;
+import org.gentoo.java.ebuilder.maven.ModelEngine;
+import org.gentoo.java.ebuilder.maven.ResolutionFormat;
+import org.gentoo.java.ebuilder.portage.CacheFormat;
 import org.gentoo.java.ebuilder.portage.KeywordComparator;
 
 /**
@@ -19,11 +25,19 @@ import org.gentoo.java.ebuilder.portage.KeywordComparator;
  */
 public class Config {
 
+    /**
+     * In-memory representation of loaded cache.
+     */
+    private CacheBackend cacheBackend = CacheBackend.MAPS;
     /**
      * Path to portage ebuild cache.
      */
     private Path cacheFile = Paths.get(System.getProperty("user.home"),
             ".java-ebuilder/cache");
+    /**
+     * Format of the cache file written when refreshing the cache.
+     */
+    private CacheFormat cacheFormat = CacheFormat.TEXT;
     /**
      * URI that goes to pre-compiled Maven Jar.
      */
@@ -48,6 +62,10 @@ public class Config {
      * Ebuild name.
      */
     private String ebuildName;
+    /**
+     * Whether effective poms should be cached between runs.
+     */
+    private boolean effectivePomCache;
     /**
      * Ebuild version excluding suffix.
      */
@@ -69,10 +87,24 @@ public class Config {
      * Whethe the source code is distributed by Maven Central
      */
     private boolean fromMavenCentral;
+    /**
+     * Packages (category/pkg or category/pkg:slot) whose maven ids should be
+     * listed.
+     */
+    private final List<String> findMavenIds = new ArrayList<>(10);
+    /**
+     * Whether all ebuilds should be parsed when refreshing cache, ignoring the
+     * cache manifest from previous refresh.
+     */
+    private boolean fullRefresh;
     /**
      * Whether ebuild should be generated.
      */
     private boolean generateEbuild;
+    /**
+     * Number of threads used for parsing portage trees.
+     */
+    private int jobs = 1;
     /**
      * Arch keywords.
      */
@@ -81,18 +113,45 @@ public class Config {
      * License name.
      */
     private String license;
+    /**
+     * Whether md5-cache entries should be used for detecting java ebuilds
+     * before the ebuilds are read.
+     */
+    private boolean md5CacheFirst;
+    /**
+     * Engine used to get effective models of pom files.
+     */
+    private ModelEngine modelEngine = ModelEngine.MAVEN;
     /**
      * List of paths to pom.xml files.
      */
     private final List<Path> pomFiles = new ArrayList<>(10);
     /**
-     * Path to portage tree.
+     * Maximum number of seconds processing of single pom file can take, 0 for
+     * no limit.
+     */
+    private int pomTimeout;
+    /**
+     * Paths to portage trees in the order of increasing priority.
      */
-    private SortedSet<Path> portageTree = new TreeSet<>();
+    private final Set<Path> portageTree = new LinkedHashSet<>(10);
     /**
      * Whether ebuild cache should be refreshed.
      */
     private boolean refreshCache;
+    /**
+     * Output format of batch resolution.
+     */
+    private ResolutionFormat resolutionFormat = ResolutionFormat.TSV;
+    /**
+     * Whether resolved dependencies should be memoized between runs.
+     */
+    private boolean resolutionMemo;
+    /**
+     * Path to file with maven coordinates that should be resolved, - for
+     * standard input, or null if batch resolution is not requested.
+     */
+    private String resolveBatch;
     /**
      * Whether java-ebuilder will explictly unset hasTests of the Maven project.
      */
@@ -139,6 +198,33 @@ public class Config {
         pomFiles.add(pomFile);
     }
 
+    /**
+     * Adds package to {@link #findMavenIds}.
+     *
+     * @param atom category/pkg or category/pkg:slot
+     */
+    public void addFindMavenIds(final String atom) {
+        findMavenIds.add(atom);
+    }
+
+    /**
+     * Getter for {@link #cacheBackend}.
+     *
+     * @return {@link #cacheBackend}
+     */
+    public CacheBackend getCacheBackend() {
+        return cacheBackend;
+    }
+
+    /**
+     * Setter for {@link #cacheBackend}.
+     *
+     * @param cacheBackend {@link #cacheBackend}
+     */
+    public void setCacheBackend(final CacheBackend cacheBackend) {
+        this.cacheBackend = cacheBackend;
+    }
+
     /**
      * Getter for {@link #cacheFile}.
      *
@@ -157,6 +243,45 @@ public class Config {
         this.cacheFile = cacheFile;
     }
 
+    /**
+     * Returns path to directory with cached effective poms, which is stored
+     * next to the cache file.
+     *
+     * @return effective pom cache directory path
+     */
+    public Path getEffectivePomCacheDir() {
+        return cacheFile.resolveSibling(cacheFile.getFileName()
+                + ".effective-poms");
+    }
+
+    /**
+     * Returns path to resolution memo file, which is stored next to the cache
+     * file.
+     *
+     * @return resolution memo file path
+     */
+    public Path getResolutionMemoFile() {
+        return cacheFile.resolveSibling(cacheFile.getFileName() + ".memo");
+    }
+
+    /**
+     * Getter for {@link #cacheFormat}.
+     *
+     * @return {@link #cacheFormat}
+     */
+    public CacheFormat getCacheFormat() {
+        return cacheFormat;
+    }
+
+    /**
+     * Setter for {@link #cacheFormat}.
+     *
+     * @param cacheFormat {@link #cacheFormat}
+     */
+    public void setCacheFormat(final CacheFormat cacheFormat) {
+        this.cacheFormat = cacheFormat;
+    }
+
     /**
      * Getter for {@link #binjarUri}.
      *
@@ -284,6 +409,15 @@ public class Config {
         return errorWriter;
     }
 
+    /**
+     * Getter for {@link #findMavenIds}.
+     *
+     * @return {@link #findMavenIds}
+     */
+    public List<String> getFindMavenIds() {
+        return Collections.unmodifiableList(findMavenIds);
+    }
+
     /**
      * Getter for {@link #forceMinJavaVersion}.
      *
@@ -302,6 +436,24 @@ public class Config {
         this.forceMinJavaVersion = forceMinJavaVersion;
     }
 
+    /**
+     * Getter for {@link #jobs}.
+     *
+     * @return {@link #jobs}
+     */
+    public int getJobs() {
+        return jobs;
+    }
+
+    /**
+     * Setter for {@link #jobs}.
+     *
+     * @param jobs {@link #jobs}
+     */
+    public void setJobs(final int jobs) {
+        this.jobs = jobs;
+    }
+
     /**
      * Getter for {@link #keywords}.
      *
@@ -355,6 +507,24 @@ public class Config {
         this.license = license;
     }
 
+    /**
+     * Getter for {@link #md5CacheFirst}.
+     *
+     * @return {@link #md5CacheFirst}
+     */
+    public boolean isMd5CacheFirst() {
+        return md5CacheFirst;
+    }
+
+    /**
+     * Setter for {@link #md5CacheFirst}.
+     *
+     * @param md5CacheFirst {@link #md5CacheFirst}
+     */
+    public void setMd5CacheFirst(final boolean md5CacheFirst) {
+        this.md5CacheFirst = md5CacheFirst;
+    }
+
     /**
      * Getter for {@link #pomFiles}.
      *
@@ -369,12 +539,14 @@ public class Config {
      *
      * @return {@link #portageTree}
      */
-    public SortedSet<Path> getPortageTree() {
+    public Set<Path> getPortageTree() {
         return portageTree;
     }
 
     /**
-     * Add portageTrees to {@link #portageTree}.
+     * Add portageTrees to {@link #portageTree}. Tree that is added later has
+     * higher priority. Adding tree that is already present does not change
+     * its priority.
      *
      * @param portageTree {@link #portageTree}
      */
@@ -382,6 +554,42 @@ public class Config {
         this.portageTree.add(portageTree);
     }
 
+    /**
+     * Getter for {@link #resolutionFormat}.
+     *
+     * @return {@link #resolutionFormat}
+     */
+    public ResolutionFormat getResolutionFormat() {
+        return resolutionFormat;
+    }
+
+    /**
+     * Setter for {@link #resolutionFormat}.
+     *
+     * @param resolutionFormat {@link #resolutionFormat}
+     */
+    public void setResolutionFormat(final ResolutionFormat resolutionFormat) {
+        this.resolutionFormat = resolutionFormat;
+    }
+
+    /**
+     * Getter for {@link #resolveBatch}.
+     *
+     * @return {@link #resolveBatch}
+     */
+    public String getResolveBatch() {
+        return resolveBatch;
+    }
+
+    /**
+     * Setter for {@link #resolveBatch}.
+     *
+     * @param resolveBatch {@link #resolveBatch}
+     */
+    public void setResolveBatch(final String resolveBatch) {
+        this.resolveBatch = resolveBatch;
+    }
+
     /**
      * Getter for {@link #slot}.
      *
@@ -495,6 +703,24 @@ public class Config {
         }
     }
 
+    /**
+     * Getter for {@link #fullRefresh}.
+     *
+     * @return {@link #fullRefresh}
+     */
+    public boolean isFullRefresh() {
+        return fullRefresh;
+    }
+
+    /**
+     * Setter for {@link #fullRefresh}.
+     *
+     * @param fullRefresh {@link #fullRefresh}
+     */
+    public void setFullRefresh(final boolean fullRefresh) {
+        this.fullRefresh = fullRefresh;
+    }
+
     /**
      * Getter for {@link #generateEbuild}.
      *
@@ -531,6 +757,78 @@ public class Config {
         this.refreshCache = refreshCache;
     }
 
+    /**
+     * Getter for {@link #effectivePomCache}.
+     *
+     * @return {@link #effectivePomCache}
+     */
+    public boolean isEffectivePomCache() {
+        return effectivePomCache;
+    }
+
+    /**
+     * Setter for {@link #effectivePomCache}.
+     *
+     * @param effectivePomCache {@link #effectivePomCache}
+     */
+    public void setEffectivePomCache(final boolean effectivePomCache) {
+        this.effectivePomCache = effectivePomCache;
+    }
+
+    /**
+     * Getter for {@link #modelEngine}.
+     *
+     * @return {@link #modelEngine}
+     */
+    public ModelEngine getModelEngine() {
+        return modelEngine;
+    }
+
+    /**
+     * Setter for {@link #modelEngine}.
+     *
+     * @param modelEngine {@link #modelEngine}
+     */
+    public void setModelEngine(final ModelEngine modelEngine) {
+        this.modelEngine = modelEngine;
+    }
+
+    /**
+     * Getter for {@link #pomTimeout}.
+     *
+     * @return {@link #pomTimeout}
+     */
+    public int getPomTimeout() {
+        return pomTimeout;
+    }
+
+    /**
+     * Setter for {@link #pomTimeout}.
+     *
+     * @param pomTimeout {@link #pomTimeout}
+     */
+    public void setPomTimeout(final int pomTimeout) {
+        this.pomTimeout = pomTimeout;
+    }
+
+    /**
+     * Getter for {@link #resolutionMemo}.
+     *
+     * @return {@link #resolutionMemo}
+     */
+    public boolean isResolutionMemo() {
+        return resolutionMemo;
+    }
+
+    /**
+     * Setter for {@link #resolutionMemo}.
+     *
+     * @param resolutionMemo {@link #resolutionMemo}
+     */
+    public void setResolutionMemo(final boolean resolutionMemo) {
+        this.resolutionMemo = resolutionMemo;
+    }
+
     /**
      * Getter for {@link #skipTests}.
      *
@@ -1,25 +1,37 @@
 package org.gentoo.java.ebuilder;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.Writer;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.MessageFormat;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 import jakarta.enterprise.context.ApplicationScoped;
-import org.apache.maven.model.Model;
+import org.gentoo.java.ebuilder.maven.BakedCache;
+import org.gentoo.java.ebuilder.maven.BatchResolver;
+import org.gentoo.java.ebuilder.maven.CacheBackend;
 import org.gentoo.java.ebuilder.maven.JavaVersion;
 import org.gentoo.java.ebuilder.maven.MavenCache;
 import org.gentoo.java.ebuilder.maven.MavenEbuilder;
 import org.gentoo.java.ebuilder.maven.MavenParser;
 import org.gentoo.java.ebuilder.maven.MavenProject;
+import org.gentoo.java.ebuilder.maven.ModelEngine;
+import org.gentoo.java.ebuilder.maven.ResolutionFormat;
+import org.gentoo.java.ebuilder.portage.CacheFormat;
 import org.gentoo.java.ebuilder.portage.PortageParser;
 
 @ApplicationScoped
@@ -31,8 +43,14 @@ public class Main {
      * @param args command line arguments
      */
     public static void main(final String[] args) {
+        // results of batch resolution and maven id queries go to standard
+        // output, so messages are written to standard error instead
+        final boolean results = args != null
+                && (Arrays.asList(args).contains("--resolve-batch")
+                || Arrays.asList(args).contains("--find-maven-ids"));
         @SuppressWarnings("UseOfSystemOutOrSystemErr")
-        final Config config = new Config(new PrintWriter(System.out, true),
+        final Config config = new Config(
+                new PrintWriter(results ? System.err : System.out, true),
                 new PrintWriter(System.err, true));
 
         if (args == null || args.length == 0) {
@@ -51,6 +69,14 @@ public class Main {
             generateEbuild(config);
         }
 
+        if (config.getResolveBatch() != null) {
+            resolveBatch(config);
+        }
+
+        if (!config.getFindMavenIds().isEmpty()) {
+            findMavenIds(config);
+        }
+
         config.getStdoutWriter().println("Finished!");
         config.getStdoutWriter().flush();
         config.getErrorWriter().flush();
@@ -73,8 +99,22 @@ public class Main {
                     Runtime.getRuntime().exit(1);
                 }
             }
+
+            if (config.getJobs() < 1) {
+                config.getErrorWriter().println(
+                        "ERROR: --jobs must be a positive number.");
+                Runtime.getRuntime().exit(1);
+            }
         } else if (!config.getPortageTree().isEmpty()) {
             config.getErrorWriter().println("WARNING: Portage tree is used only when refreshing cache.");
+        } else if (config.getJobs() != 1 && !config.isGenerateEbuild()) {
+            config.getErrorWriter().println("WARNING: Jobs are used only for parsing portage trees when refreshing cache or pom.xml files when generating ebuild.");
+        } else if (config.isFullRefresh()) {
+            config.getErrorWriter().println("WARNING: Full refresh is used only when refreshing cache.");
+        } else if (config.isMd5CacheFirst()) {
+            config.getErrorWriter().println("WARNING: md5-cache is used only when refreshing cache.");
+        } else if (config.getCacheFormat() != CacheFormat.TEXT) {
+            config.getErrorWriter().println("WARNING: Cache format is used only when refreshing cache.");
         }
 
         if (config.isGenerateEbuild()) {
@@ -108,6 +148,14 @@ public class Main {
                 config.getErrorWriter().println(
                         "ERROR: --pom must be specified at least once.");
                 Runtime.getRuntime().exit(1);
+            } else if (config.getJobs() < 1) {
+                config.getErrorWriter().println(
+                        "ERROR: --jobs must be a positive number.");
+                Runtime.getRuntime().exit(1);
+            } else if (config.getPomTimeout() < 0) {
+                config.getErrorWriter().println(
+                        "ERROR: --pom-timeout must not be negative.");
+                Runtime.getRuntime().exit(1);
             }
 
             config.getPomFiles().stream().forEach((pomFile) -> {
@@ -136,13 +184,26 @@ public class Main {
             config.getErrorWriter().println("WARNING: License is used only when generating ebuild.");
         } else if (!config.getPomFiles().isEmpty()) {
             config.getErrorWriter().println("WARNING: pom.xml is used only when generating ebuild.");
+        } else if (config.getPomTimeout() != 0) {
+            config.getErrorWriter().println("WARNING: POM timeout is used only when generating ebuild.");
         } else if (config.getSlot() != null) {
             config.getErrorWriter().println("WARNING: SLOT is used only when generating ebuild.");
         } else if (config.getWorkdir() != null) {
             config.getErrorWriter().println("WARNING: Workdir is used only when generating ebuild.");
         }
 
-        if (!config.isRefreshCache()
+        if (config.getResolveBatch() != null) {
+            if (!"-".equals(config.getResolveBatch())
+                    && !Paths.get(config.getResolveBatch()).toFile().exists()) {
+                config.getErrorWriter().println("ERROR: Batch file "
+                        + config.getResolveBatch() + " does not exist.");
+                Runtime.getRuntime().exit(1);
+            }
+        } else if (config.getResolutionFormat() != ResolutionFormat.TSV) {
+            config.getErrorWriter().println("WARNING: Resolution format is used only when resolving batch.");
+        }
+
+        if (!config.isRefreshCache() && BakedCache.getSnapshot() == null
                 && !config.getCacheFile().toFile().exists()) {
             config.getErrorWriter().println("ERROR: Cache file does not exist. "
                     + "First you must generate it using --refresh-cache.");
@@ -164,6 +225,39 @@ public class Main {
         config.getStdoutWriter().println();
     }
 
+    /**
+     * Writes maven ids provided by the requested packages to standard output,
+     * one tab separated package and maven id per line.
+     *
+     * @param config application configuration
+     */
+    private static void findMavenIds(final Config config) {
+        final MavenCache mavenCache = new MavenCache();
+        mavenCache.loadCache(config);
+
+        @SuppressWarnings("UseOfSystemOutOrSystemErr")
+        final PrintWriter writer = new PrintWriter(new BufferedWriter(
+                new OutputStreamWriter(System.out, StandardCharsets.UTF_8)));
+
+        for (final String atom : config.getFindMavenIds()) {
+            final List<String> mavenIds = mavenCache.getMavenIds(atom);
+
+            if (mavenIds.isEmpty()) {
+                config.getErrorWriter().println("WARNING: Package " + atom
+                        + " does not provide any maven artifact.");
+            }
+
+            for (final String mavenId : mavenIds) {
+                writer.print(atom);
+                writer.print('\t');
+                writer.print(mavenId);
+                writer.print('\n');
+            }
+        }
+
+        writer.flush();
+    }
+
     /**
      * Processed generation of ebuild.
      *
@@ -178,9 +272,6 @@ public class Main {
         final MavenParser mavenParser = new MavenParser();
         final List<MavenProject> mavenProjects = mavenParser.parsePomFiles(config, mavenCache);
 
-        List<Model> mavenModels = mavenParser.parsePomFile(config.getPomFiles().get(0));
-
-
         // TODO: replace with logging
         if (config.isDumpProjects()) {
             dumpMavenProjects(config, mavenProjects);
@@ -214,6 +305,32 @@ public class Main {
                                 + " is not valid.");
                     }
 
+                    break;
+                case "--cache-backend":
+                    i++;
+
+                    try {
+                        config.setCacheBackend(CacheBackend.valueOf(
+                                args[i].toUpperCase(Locale.ROOT)));
+                    } catch (final IllegalArgumentException ex) {
+                        config.getErrorWriter().println("ERROR: Cache backend "
+                                + args[i] + " is not valid.");
+                        Runtime.getRuntime().exit(1);
+                    }
+
+                    break;
+                case "--cache-format":
+                    i++;
+
+                    try {
+                        config.setCacheFormat(CacheFormat.valueOf(
+                                args[i].toUpperCase(Locale.ROOT)));
+                    } catch (final IllegalArgumentException ex) {
+                        config.getErrorWriter().println("ERROR: Cache format "
+                                + args[i] + " is not valid.");
+                        Runtime.getRuntime().exit(1);
+                    }
+
                     break;
                 case "--download-uri":
                 case "-u":
@@ -237,6 +354,13 @@ public class Main {
                     config.setEbuild(Paths.get(args[i]).toAbsolutePath().
                             normalize());
                     break;
+                case "--effective-pom-cache":
+                    config.setEffectivePomCache(true);
+                    break;
+                case "--find-maven-ids":
+                    i++;
+                    config.addFindMavenIds(args[i]);
+                    break;
                 case "--force-min-java-version":
                     i++;
                     config.setForceMinJavaVersion(new JavaVersion(args[i]));
@@ -244,9 +368,25 @@ public class Main {
                 case "--from-maven-central":
                     config.setFromMavenCentral(true);
                     break;
+                case "--full-refresh":
+                    config.setFullRefresh(true);
+                    break;
                 case "--generate-ebuild":
                 case "-g":
                     config.setGenerateEbuild(true);
+                    break;
+                case "--jobs":
+                case "-j":
+                    i++;
+
+                    try {
+                        config.setJobs(Integer.parseInt(args[i], 10));
+                    } catch (final NumberFormatException ex) {
+                        config.getErrorWriter().println("ERROR: Number of "
+                                + "jobs " + args[i] + " is not valid.");
+                        Runtime.getRuntime().exit(1);
+                    }
+
                     break;
                 case "--keywords":
                 case "-k":
@@ -257,11 +397,39 @@ public class Main {
                 case "-l":
                     i++;
                     config.setLicense(args[i]);
+                    break;
+                case "--md5-cache-first":
+                    config.setMd5CacheFirst(true);
+                    break;
+                case "--model-engine":
+                    i++;
+
+                    try {
+                        config.setModelEngine(ModelEngine.valueOf(
+                                args[i].toUpperCase(Locale.ROOT)));
+                    } catch (final IllegalArgumentException ex) {
+                        config.getErrorWriter().println("ERROR: Model engine "
+                                + args[i] + " is not valid.");
+                        Runtime.getRuntime().exit(1);
+                    }
+
                     break;
                 case "--pom":
                 case "-p":
                     i++;
                     config.addPomFile(Paths.get(args[i]));
+                    break;
+                case "--pom-timeout":
+                    i++;
+
+                    try {
+                        config.setPomTimeout(Integer.parseInt(args[i], 10));
+                    } catch (final NumberFormatException ex) {
+                        config.getErrorWriter().println("ERROR: POM timeout "
+                                + args[i] + " is not valid.");
+                        Runtime.getRuntime().exit(1);
+                    }
+
                     break;
                 case "--portage-tree":
                 case "-t":
@@ -278,6 +446,26 @@ public class Main {
                 case "-c":
                     config.setRefreshCache(true);
                     break;
+                case "--resolution-format":
+                    i++;
+
+                    try {
+                        config.setResolutionFormat(ResolutionFormat.valueOf(
+                                args[i].toUpperCase(Locale.ROOT)));
+                    } catch (final IllegalArgumentException ex) {
+                        config.getErrorWriter().println("ERROR: Resolution "
+                                + "format " + args[i] + " is not valid.");
+                        Runtime.getRuntime().exit(1);
+                    }
+
+                    break;
+                case "--resolution-memo":
+                    config.setResolutionMemo(true);
+                    break;
+                case "--resolve-batch":
+                    i++;
+                    config.setResolveBatch(args[i]);
+                    break;
                 case "--skip-tests":
                     config.setSkipTests(true);
                     break;
@@ -355,6 +543,36 @@ public class Main {
         }
     }
 
+    /**
+     * Resolves batch of maven coordinates and writes the results to standard
+     * output.
+     *
+     * @param config application configuration
+     */
+    private static void resolveBatch(final Config config) {
+        final MavenCache mavenCache = new MavenCache();
+        mavenCache.loadCache(config);
+
+        @SuppressWarnings("UseOfSystemOutOrSystemErr")
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(
+                System.out, StandardCharsets.UTF_8));
+
+        try (final BufferedReader reader = "-".equals(config.getResolveBatch())
+                ? new BufferedReader(new InputStreamReader(System.in,
+                        StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Paths.get(config.getResolveBatch()),
+                        StandardCharsets.UTF_8)) {
+            final int count = new BatchResolver().resolve(reader, writer,
+                    mavenCache, config.getResolutionFormat());
+
+            config.getStdoutWriter().println("Resolved " + count
+                    + " coordinates");
+        } catch (final IOException ex) {
+            throw new RuntimeException("Failed to resolve batch "
+                    + config.getResolveBatch(), ex);
+        }
+    }
+
     /**
      * Processes cache refresh.
      *
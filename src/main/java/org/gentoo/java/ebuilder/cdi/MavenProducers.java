@@ -2,6 +2,7 @@ package org.gentoo.java.ebuilder.cdi;
 
 import jakarta.enterprise.context.ApplicationScoped;
 import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
+import org.gentoo.java.ebuilder.maven.MavenCache;
 
 public class MavenProducers {
 
@@ -9,4 +10,9 @@ public class MavenProducers {
     MavenXpp3Reader produceMavenXpp3Reader() {
         return new MavenXpp3Reader();
     }
+
+    @ApplicationScoped
+    MavenCache produceMavenCache() {
+        return new MavenCache();
+    }
 }
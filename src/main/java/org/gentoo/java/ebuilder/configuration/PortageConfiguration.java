@@ -2,8 +2,10 @@ package org.gentoo.java.ebuilder.configuration;
 
 import io.smallrye.config.ConfigMapping;
 import io.smallrye.config.WithConverter;
+import io.smallrye.config.WithDefault;
 import org.gentoo.java.ebuilder.converter.PathConverter;
 import org.gentoo.java.ebuilder.converter.PathListConverter;
+import org.gentoo.java.ebuilder.maven.CacheBackend;
 
 import java.nio.file.Path;
 import java.util.List;
@@ -17,4 +19,10 @@ public interface PortageConfiguration {
 
     @WithConverter(PathListConverter.class)
     Optional<List<Path>> additionalEbuildRepositories();
+
+    @WithConverter(PathConverter.class)
+    Optional<Path> cacheFile();
+
+    @WithDefault("maps")
+    CacheBackend cacheBackend();
 }
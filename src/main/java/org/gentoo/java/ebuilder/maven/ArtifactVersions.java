@@ -0,0 +1,172 @@
+package org.gentoo.java.ebuilder.maven;
+
+import java.util.List;
+import org.gentoo.java.ebuilder.portage.CacheItem;
+import org.gentoo.java.ebuilder.portage.MavenVersion;
+import org.gentoo.java.ebuilder.portage.MavenVersionRange;
+
+/**
+ * Versions of single maven artifact available in portage. Versions are stored
+ * as sorted arrays of their components so that the lookup is a binary search
+ * without any allocation, and the dependency strings are rendered in advance.
+ */
+final class ArtifactVersions implements SortedVersions {
+
+    /**
+     * Dependency strings of the versions.
+     */
+    private final String[] dependencies;
+    /**
+     * Incremental components of the versions.
+     */
+    private final int[] incrementals;
+    /**
+     * Major and minor components of the versions, major in the upper and
+     * minor in the lower 32 bits.
+     */
+    private final long[] majorMinors;
+    /**
+     * Qualifiers of the versions.
+     */
+    private final String[] qualifiers;
+    /**
+     * Slots of the versions.
+     */
+    private final String[] slots;
+
+    /**
+     * Creates new instance of ArtifactVersions.
+     *
+     * @param cacheItems cache items of the artifact sorted by maven version
+     */
+    ArtifactVersions(final List<CacheItem> cacheItems) {
+        final int size = cacheItems.size();
+        dependencies = new String[size];
+        incrementals = new int[size];
+        majorMinors = new long[size];
+        qualifiers = new String[size];
+        slots = new String[size];
+
+        for (int i = 0; i < size; i++) {
+            final CacheItem cacheItem = cacheItems.get(i);
+            final MavenVersion mavenVersion
+                    = cacheItem.getParsedMavenVersion();
+
+            dependencies[i] = createDependency(cacheItem);
+            incrementals[i] = mavenVersion.getIncrementalVersion();
+            majorMinors[i] = getMajorMinor(mavenVersion);
+            qualifiers[i] = mavenVersion.getQualifier();
+            slots[i] = cacheItem.getSlot();
+        }
+    }
+
+    /**
+     * Returns dependency string of the best version within the range.
+     *
+     * @param range version range
+     *
+     * @return dependency string or null if no version is within the range
+     *
+     * @see SortedVersions#getDependency(int, int, MavenVersionRange)
+     */
+    String getDependency(final MavenVersionRange range) {
+        return getDependency(0, dependencies.length, range);
+    }
+
+    @Override
+    public String getDependency(final int position) {
+        return dependencies[position];
+    }
+
+    @Override
+    public String getSlot(final int position) {
+        return slots[position];
+    }
+
+    @Override
+    public int search(final int start, final int end,
+            final MavenVersion mavenVersion, final boolean strict) {
+        final long majorMinor = getMajorMinor(mavenVersion);
+        int low = start;
+        int high = end;
+
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            int result = Long.compare(majorMinors[mid], majorMinor);
+
+            if (result == 0) {
+                result = Integer.compare(incrementals[mid],
+                        mavenVersion.getIncrementalVersion());
+            }
+
+            if (result == 0) {
+                result = qualifiers[mid].compareTo(mavenVersion.getQualifier());
+            }
+
+            if (result < 0 || result == 0 && strict) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Creates dependency string for the cache item.
+     *
+     * @param cacheItem cache item
+     *
+     * @return dependency string
+     */
+    static String createDependency(final CacheItem cacheItem) {
+        final StringBuilder sbDependency = new StringBuilder(50);
+        if (cacheItem.getCategory().compareTo("java-virtuals") != 0) {
+            sbDependency.append(">=");
+        }
+        sbDependency.append(cacheItem.getCategory());
+        sbDependency.append('/');
+        sbDependency.append(cacheItem.getPkg());
+        if (cacheItem.getCategory().compareTo("java-virtuals") != 0) {
+            sbDependency.append('-');
+            sbDependency.append(stripExtraFromVersion(cacheItem.getVersion()));
+        }
+
+        if (cacheItem.getUseFlag() != null) {
+            sbDependency.append('[');
+            sbDependency.append(cacheItem.getUseFlag());
+            sbDependency.append(']');
+        }
+
+        sbDependency.append(':');
+        sbDependency.append(cacheItem.getSlot());
+
+        return sbDependency.toString();
+    }
+
+    /**
+     * Combines major and minor component of the version into single value
+     * that sorts the same way as the components. Both components are never
+     * negative.
+     *
+     * @param mavenVersion maven version
+     *
+     * @return combined major and minor component
+     */
+    static long getMajorMinor(final MavenVersion mavenVersion) {
+        return ((long) mavenVersion.getMajorVersion() << 32)
+                | mavenVersion.getMinorVersion();
+    }
+
+    /**
+     * Strips all -r* from the version string.
+     *
+     * @param version version string
+     *
+     * @return stripped version string
+     */
+    private static String stripExtraFromVersion(final String version) {
+        return version.replaceAll("-r\\d+", "");
+    }
+}
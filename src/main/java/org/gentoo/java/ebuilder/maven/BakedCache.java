@@ -0,0 +1,53 @@
+package org.gentoo.java.ebuilder.maven;
+
+import java.nio.file.Paths;
+
+/**
+ * Cache snapshot loaded when this class is initialized, from cache file
+ * specified by system property {@value #CACHE_FILE_PROPERTY}. Native image
+ * built with baked-cache profile initializes this class at build time, so the
+ * snapshot, packed into arrays, is stored in the image heap and lookups are
+ * ready as soon as the binary starts.
+ */
+public final class BakedCache {
+
+    /**
+     * Name of system property with path to the cache file.
+     */
+    public static final String CACHE_FILE_PROPERTY
+            = "java-ebuilder.baked-cache";
+    /**
+     * Baked snapshot or null if no cache file was specified.
+     */
+    private static final MavenCacheSnapshot SNAPSHOT = loadSnapshot();
+
+    /**
+     * Getter for {@link #SNAPSHOT}.
+     *
+     * @return {@link #SNAPSHOT}
+     */
+    public static MavenCacheSnapshot getSnapshot() {
+        return SNAPSHOT;
+    }
+
+    /**
+     * Loads snapshot from the cache file specified by the system property.
+     * The cache is packed into arrays because memory-mapped binary cache
+     * cannot be stored in the image heap.
+     *
+     * @return snapshot or null if the system property is not set
+     */
+    private static MavenCacheSnapshot loadSnapshot() {
+        final String cacheFile = System.getProperty(CACHE_FILE_PROPERTY);
+
+        return cacheFile == null || cacheFile.isEmpty() ? null
+                : MavenCacheSnapshot.load(Paths.get(cacheFile),
+                        CacheBackend.ARRAYS);
+    }
+
+    /**
+     * Creates new instance of BakedCache.
+     */
+    private BakedCache() {
+    }
+}
@@ -0,0 +1,159 @@
+package org.gentoo.java.ebuilder.maven;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Resolves list of maven coordinates against loaded cache. Input contains one
+ * groupId:artifactId:version per line, empty lines and lines starting with #
+ * are skipped. Results are written in the order of the input as they are
+ * resolved. Invalid lines are reported with their status and do not stop the
+ * resolution.
+ */
+public class BatchResolver {
+
+    /**
+     * Resolves coordinates read from the reader and writes the results to the
+     * writer. Writer is flushed whenever there is no more input available
+     * without blocking, so that results can be consumed while the input is
+     * still being written.
+     *
+     * @param reader     input reader
+     * @param writer     output writer
+     * @param mavenCache maven cache
+     * @param format     output format
+     *
+     * @return number of resolved coordinates
+     *
+     * @throws IOException Thrown if problem occurred while reading or writing.
+     */
+    public int resolve(final BufferedReader reader, final Writer writer,
+            final MavenCache mavenCache, final ResolutionFormat format)
+            throws IOException {
+        final StringBuilder sbLine = new StringBuilder(200);
+        int count = 0;
+        String line = reader.readLine();
+
+        while (line != null) {
+            final String coordinates = line.trim();
+
+            if (!coordinates.isEmpty() && coordinates.charAt(0) != '#') {
+                final Resolution resolution = resolve(mavenCache, coordinates);
+
+                sbLine.setLength(0);
+
+                if (format == ResolutionFormat.JSON) {
+                    appendJson(sbLine, coordinates, resolution);
+                } else {
+                    appendTsv(sbLine, coordinates, resolution);
+                }
+
+                writer.append(sbLine);
+                count++;
+
+                if (!reader.ready()) {
+                    writer.flush();
+                }
+            }
+
+            line = reader.readLine();
+        }
+
+        writer.flush();
+
+        return count;
+    }
+
+    /**
+     * Appends result as JSON object on single line.
+     *
+     * @param sbLine      line builder
+     * @param coordinates maven coordinates
+     * @param resolution  resolution
+     */
+    private static void appendJson(final StringBuilder sbLine,
+            final String coordinates, final Resolution resolution) {
+        sbLine.append("{\"coordinates\":");
+        appendJsonString(sbLine, coordinates);
+        sbLine.append(",\"status\":\"");
+        sbLine.append(resolution.getStatus().name());
+        sbLine.append("\",\"dependency\":");
+
+        if (resolution.getDependency() == null) {
+            sbLine.append("null");
+        } else {
+            appendJsonString(sbLine, resolution.getDependency());
+        }
+
+        sbLine.append("}\n");
+    }
+
+    /**
+     * Appends quoted and escaped JSON string.
+     *
+     * @param sbLine line builder
+     * @param string string
+     */
+    private static void appendJsonString(final StringBuilder sbLine,
+            final String string) {
+        sbLine.append('"');
+
+        for (int i = 0; i < string.length(); i++) {
+            final char character = string.charAt(i);
+
+            if (character == '"' || character == '\\') {
+                sbLine.append('\\');
+                sbLine.append(character);
+            } else if (character < ' ') {
+                sbLine.append(String.format("\\u%04x", (int) character));
+            } else {
+                sbLine.append(character);
+            }
+        }
+
+        sbLine.append('"');
+    }
+
+    /**
+     * Appends result as tab separated coordinates, status and dependency,
+     * dependency is empty if the coordinates were not resolved.
+     *
+     * @param sbLine      line builder
+     * @param coordinates maven coordinates
+     * @param resolution  resolution
+     */
+    private static void appendTsv(final StringBuilder sbLine,
+            final String coordinates, final Resolution resolution) {
+        sbLine.append(coordinates.replace('\t', ' '));
+        sbLine.append('\t');
+        sbLine.append(resolution.getStatus().name());
+        sbLine.append('\t');
+
+        if (resolution.getDependency() != null) {
+            sbLine.append(resolution.getDependency());
+        }
+
+        sbLine.append('\n');
+    }
+
+    /**
+     * Resolves the coordinates.
+     *
+     * @param mavenCache  maven cache
+     * @param coordinates groupId:artifactId:version
+     *
+     * @return resolution
+     */
+    private static Resolution resolve(final MavenCache mavenCache,
+            final String coordinates) {
+        final String[] parts = coordinates.split(":", -1);
+
+        if (parts.length != 3 || parts[0].isEmpty() || parts[1].isEmpty()
+                || parts[2].isEmpty()) {
+            return Resolution.INVALID_COORDINATES;
+        }
+
+        return mavenCache.resolve(parts[0], parts[1], parts[2]);
+    }
+}
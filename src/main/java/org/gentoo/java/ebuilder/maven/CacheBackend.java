@@ -0,0 +1,19 @@
+package org.gentoo.java.ebuilder.maven;
+
+/**
+ * In-memory representation of loaded maven cache.
+ */
+public enum CacheBackend {
+
+    /**
+     * Whole cache is packed into primitive arrays when it is loaded. Loading
+     * is slower, but lookups and memory are cheaper, which pays off when many
+     * artifacts are resolved.
+     */
+    ARRAYS,
+    /**
+     * Cache items are kept in maps and artifacts are prepared for lookup when
+     * they are looked up for the first time.
+     */
+    MAPS
+}
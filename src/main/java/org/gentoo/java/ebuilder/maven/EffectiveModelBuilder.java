@@ -0,0 +1,432 @@
+package org.gentoo.java.ebuilder.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Extension;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Parent;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.Repository;
+import org.apache.maven.model.building.DefaultModelBuilderFactory;
+import org.apache.maven.model.building.DefaultModelBuildingRequest;
+import org.apache.maven.model.building.FileModelSource;
+import org.apache.maven.model.building.ModelBuilder;
+import org.apache.maven.model.building.ModelBuildingException;
+import org.apache.maven.model.building.ModelBuildingRequest;
+import org.apache.maven.model.building.ModelCache;
+import org.apache.maven.model.building.ModelSource2;
+import org.apache.maven.model.resolution.ModelResolver;
+import org.apache.maven.model.resolution.UnresolvableModelException;
+import org.gentoo.java.ebuilder.portage.MavenVersion;
+import org.gentoo.java.ebuilder.portage.MavenVersionRange;
+
+/**
+ * Builds effective models of pom files in-process using maven model builder,
+ * without running maven build and writing and parsing effective pom. Parents
+ * and imported poms are resolved from local maven repository only. Parent
+ * and imported models are cached, so building models of multiple poms that
+ * share parents reads the parents only once.
+ */
+final class EffectiveModelBuilder {
+
+    /**
+     * Model builder.
+     */
+    private final ModelBuilder modelBuilder
+            = new DefaultModelBuilderFactory().newInstance();
+    /**
+     * Cache of parent and imported models.
+     */
+    private final ModelCache modelCache = new MapModelCache();
+    /**
+     * Resolver of poms from local maven repository.
+     */
+    private final ModelResolver modelResolver;
+    /**
+     * System properties including environment variables as env.* properties,
+     * the same as maven passes to model builder.
+     */
+    private final Properties systemProperties = new Properties();
+
+    /**
+     * Creates new instance of EffectiveModelBuilder that resolves poms from
+     * local repository set by maven.repo.local system property or
+     * ~/.m2/repository.
+     */
+    EffectiveModelBuilder() {
+        final String localRepository = System.getProperty("maven.repo.local");
+
+        modelResolver = new LocalRepositoryModelResolver(
+                localRepository == null ? Paths.get(
+                        System.getProperty("user.home"), ".m2", "repository")
+                        : Paths.get(localRepository));
+        systemProperties.putAll(System.getProperties());
+        System.getenv().forEach((name, value)
+                -> systemProperties.setProperty("env." + name, value));
+    }
+
+    /**
+     * Builds effective model of the pom.
+     *
+     * @param pomFile path to pom.xml file
+     *
+     * @return effective model
+     *
+     * @throws RuntimeException Thrown if the model cannot be built, for
+     *                          example because a parent is not available in
+     *                          local repository.
+     */
+    Model build(final Path pomFile) {
+        final DefaultModelBuildingRequest request
+                = new DefaultModelBuildingRequest();
+        request.setPomFile(pomFile.toAbsolutePath().normalize().toFile());
+        request.setModelResolver(modelResolver);
+        request.setModelCache(modelCache);
+        request.setSystemProperties(systemProperties);
+        request.setValidationLevel(
+                ModelBuildingRequest.VALIDATION_LEVEL_MINIMAL);
+        request.setProcessPlugins(true);
+        request.setLocationTracking(false);
+
+        try {
+            return modelBuilder.build(request).getEffectiveModel();
+        } catch (final ModelBuildingException ex) {
+            throw new RuntimeException("Failed to build effective model of "
+                    + pomFile, ex);
+        }
+    }
+
+    /**
+     * Builds effective models of the pom and its modules, recursively. The
+     * models are returned in the order maven reactor builds them, the same
+     * order as projects of effective pom written by maven, see
+     * {@link #sortReactor(List)}.
+     *
+     * @param pomFile path to pom.xml file
+     *
+     * @return list of effective models
+     *
+     * @throws RuntimeException Thrown if any of the models cannot be built.
+     */
+    List<Model> buildReactor(final Path pomFile) {
+        final List<Model> models = new ArrayList<>(10);
+        addReactorModels(pomFile.toAbsolutePath().normalize(), models,
+                new HashSet<>(10));
+
+        return sortReactor(models);
+    }
+
+    /**
+     * Sorts models like maven reactor does. Every model follows models of the
+     * reactor it references as parent, dependency, build plugin or build
+     * extension, otherwise the order of module declarations is kept. Unlike
+     * maven, references are matched by group id and artifact id only and
+     * cycles are not reported.
+     *
+     * @param models models in the order of module declarations
+     *
+     * @return sorted models
+     */
+    private static List<Model> sortReactor(final List<Model> models) {
+        final Map<String, Model> reactor = new HashMap<>(models.size() * 2);
+
+        for (final Model model : models) {
+            reactor.putIfAbsent(model.getGroupId() + ':'
+                    + model.getArtifactId(), model);
+        }
+
+        final List<Model> result = new ArrayList<>(models.size());
+        final Set<Model> visited
+                = Collections.newSetFromMap(new IdentityHashMap<>(10));
+
+        for (final Model model : models) {
+            addSorted(model, reactor, visited, result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Adds models of the reactor referenced by the model and then the model
+     * itself to the result, unless they were already visited.
+     *
+     * @param model   model
+     * @param reactor models of the reactor by groupId:artifactId
+     * @param visited already visited models
+     * @param result  sorted models
+     */
+    private static void addSorted(final Model model,
+            final Map<String, Model> reactor, final Set<Model> visited,
+            final List<Model> result) {
+        if (!visited.add(model)) {
+            return;
+        }
+
+        final List<String> references = new ArrayList<>(10);
+
+        if (model.getParent() != null) {
+            references.add(model.getParent().getGroupId() + ':'
+                    + model.getParent().getArtifactId());
+        }
+
+        for (final Dependency dependency : model.getDependencies()) {
+            references.add(dependency.getGroupId() + ':'
+                    + dependency.getArtifactId());
+        }
+
+        if (model.getBuild() != null) {
+            for (final Plugin plugin : model.getBuild().getPlugins()) {
+                references.add(plugin.getGroupId() + ':'
+                        + plugin.getArtifactId());
+            }
+
+            for (final Extension extension
+                    : model.getBuild().getExtensions()) {
+                references.add(extension.getGroupId() + ':'
+                        + extension.getArtifactId());
+            }
+        }
+
+        for (final String reference : references) {
+            final Model referenced = reactor.get(reference);
+
+            if (referenced != null) {
+                addSorted(referenced, reactor, visited, result);
+            }
+        }
+
+        result.add(model);
+    }
+
+    /**
+     * Builds effective model of the pom and adds it and models of its modules
+     * to the list.
+     *
+     * @param pomFile path to pom.xml file
+     * @param models  list of models
+     * @param visited already built pom files
+     */
+    private void addReactorModels(final Path pomFile, final List<Model> models,
+            final Set<Path> visited) {
+        if (!visited.add(pomFile)) {
+            return;
+        }
+
+        final Model model = build(pomFile);
+        models.add(model);
+
+        for (final String module : model.getModules()) {
+            final Path modulePath
+                    = pomFile.getParent().resolve(module).normalize();
+
+            addReactorModels(Files.isDirectory(modulePath)
+                    ? modulePath.resolve("pom.xml") : modulePath, models,
+                    visited);
+        }
+    }
+
+    /**
+     * Model cache backed by concurrent map.
+     */
+    private static final class MapModelCache implements ModelCache {
+
+        /**
+         * Cached data by groupId:artifactId:version:tag.
+         */
+        private final Map<String, Object> data = new ConcurrentHashMap<>(100);
+
+        @Override
+        public Object get(final String groupId, final String artifactId,
+                final String version, final String tag) {
+            return data.get(groupId + ':' + artifactId + ':' + version + ':'
+                    + tag);
+        }
+
+        @Override
+        public void put(final String groupId, final String artifactId,
+                final String version, final String tag, final Object data) {
+            this.data.put(groupId + ':' + artifactId + ':' + version + ':'
+                    + tag, data);
+        }
+    }
+
+    /**
+     * Resolver of poms from local maven repository. Repositories declared in
+     * poms are ignored. Version ranges are resolved to the highest matching
+     * version available in the local repository.
+     */
+    private static final class LocalRepositoryModelResolver
+            implements ModelResolver {
+
+        /**
+         * Path to local maven repository.
+         */
+        private final Path localRepository;
+
+        /**
+         * Creates new instance of LocalRepositoryModelResolver.
+         *
+         * @param localRepository {@link #localRepository}
+         */
+        LocalRepositoryModelResolver(final Path localRepository) {
+            this.localRepository = localRepository;
+        }
+
+        @Override
+        public void addRepository(final Repository repository) {
+            // only local repository is used
+        }
+
+        @Override
+        public void addRepository(final Repository repository,
+                final boolean replace) {
+            // only local repository is used
+        }
+
+        @Override
+        public ModelResolver newCopy() {
+            return this;
+        }
+
+        @Override
+        public ModelSource2 resolveModel(final String groupId,
+                final String artifactId, final String version)
+                throws UnresolvableModelException {
+            final File pomFile = getArtifactDir(groupId, artifactId)
+                    .resolve(version)
+                    .resolve(artifactId + '-' + version + ".pom").toFile();
+
+            if (!pomFile.isFile()) {
+                throw new UnresolvableModelException("Pom " + pomFile
+                        + " was not found in local repository", groupId,
+                        artifactId, version);
+            }
+
+            return new FileModelSource(pomFile);
+        }
+
+        @Override
+        public ModelSource2 resolveModel(final Parent parent)
+                throws UnresolvableModelException {
+            parent.setVersion(resolveVersion(parent.getGroupId(),
+                    parent.getArtifactId(), parent.getVersion()));
+
+            return resolveModel(parent.getGroupId(), parent.getArtifactId(),
+                    parent.getVersion());
+        }
+
+        @Override
+        public ModelSource2 resolveModel(final Dependency dependency)
+                throws UnresolvableModelException {
+            dependency.setVersion(resolveVersion(dependency.getGroupId(),
+                    dependency.getArtifactId(), dependency.getVersion()));
+
+            return resolveModel(dependency.getGroupId(),
+                    dependency.getArtifactId(), dependency.getVersion());
+        }
+
+        /**
+         * Returns path to directory with versions of the artifact.
+         *
+         * @param groupId    maven group id
+         * @param artifactId maven artifact id
+         *
+         * @return artifact directory path
+         */
+        private Path getArtifactDir(final String groupId,
+                final String artifactId) {
+            return localRepository.resolve(groupId.replace('.', '/'))
+                    .resolve(artifactId);
+        }
+
+        /**
+         * Resolves version range to the highest version available in local
+         * repository.
+         *
+         * @param groupId    maven group id
+         * @param artifactId maven artifact id
+         * @param version    maven version or version range
+         *
+         * @return resolved version, the same version if it is not a range
+         *
+         * @throws UnresolvableModelException Thrown if no version within the
+         *                                    range is available.
+         */
+        private String resolveVersion(final String groupId,
+                final String artifactId, final String version)
+                throws UnresolvableModelException {
+            if (version == null || version.isEmpty()
+                    || version.charAt(0) != '[' && version.charAt(0) != '(') {
+                return version;
+            }
+
+            final MavenVersionRange range;
+
+            try {
+                range = new MavenVersionRange(version);
+            } catch (final RuntimeException ex) {
+                throw new UnresolvableModelException(ex.getMessage(), groupId,
+                        artifactId, version, ex);
+            }
+
+            final Path artifactDir = getArtifactDir(groupId, artifactId);
+            String result = null;
+            MavenVersion resultVersion = null;
+
+            try (final Stream<Path> versionDirs = Files.list(artifactDir)) {
+                for (final Path versionDir
+                        : (Iterable<Path>) versionDirs::iterator) {
+                    final String candidate
+                            = versionDir.getFileName().toString();
+
+                    if (!Files.isRegularFile(versionDir.resolve(
+                            artifactId + '-' + candidate + ".pom"))) {
+                        continue;
+                    }
+
+                    final MavenVersion candidateVersion;
+
+                    try {
+                        candidateVersion = new MavenVersion(candidate);
+                    } catch (final RuntimeException ex) {
+                        continue;
+                    }
+
+                    if (range.containsVersion(candidateVersion)
+                            && (resultVersion == null || candidateVersion
+                                    .compareTo(resultVersion) > 0)) {
+                        result = candidate;
+                        resultVersion = candidateVersion;
+                    }
+                }
+            } catch (final IOException ex) {
+                throw new UnresolvableModelException("Failed to list versions "
+                        + "in " + artifactDir, groupId, artifactId, version,
+                        ex);
+            }
+
+            if (result == null) {
+                throw new UnresolvableModelException("No version within "
+                        + version + " was found in local repository", groupId,
+                        artifactId, version);
+            }
+
+            return result;
+        }
+    }
+}
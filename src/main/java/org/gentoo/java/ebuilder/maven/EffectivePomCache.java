@@ -0,0 +1,350 @@
+package org.gentoo.java.ebuilder.maven;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Persistent cache of effective poms. Effective poms are stored under SHA-256
+ * hash of everything that affects them: absolute path and content of the
+ * pom, content of its local parents and modules (recursively), coordinates
+ * of parents and imported poms that are resolved from repository, maven
+ * settings and the java and os properties that profiles can be activated by.
+ * Poms that have parent or imported pom resolved from repository with
+ * snapshot version or with coordinates containing property expression are
+ * not cached, because the resolved pom can change without any local change.
+ */
+final class EffectivePomCache {
+
+    /**
+     * Version of the key format, part of the key.
+     */
+    private static final String KEY_VERSION = "2";
+    /**
+     * System properties that affect activation of profiles.
+     */
+    private static final String[] PROPERTIES = {"java.specification.version",
+        "os.name", "os.arch", "os.version"};
+    /**
+     * Directory containing cached effective poms.
+     */
+    private final Path directory;
+
+    /**
+     * Creates new instance of EffectivePomCache.
+     *
+     * @param directory {@link #directory}
+     */
+    EffectivePomCache(final Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns cached effective pom.
+     *
+     * @param key key of the pom
+     *
+     * @return path to the cached effective pom or null if it is not cached
+     */
+    Path get(final String key) {
+        final Path file = directory.resolve(key + ".xml");
+
+        return Files.isRegularFile(file) ? file : null;
+    }
+
+    /**
+     * Computes key of the pom.
+     *
+     * @param pomFile path to pom.xml file
+     *
+     * @return hex encoded key or null if the effective pom must not be cached
+     */
+    String getKey(final Path pomFile) {
+        final MessageDigest digest;
+
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException ex) {
+            throw new RuntimeException("SHA-256 is not supported", ex);
+        }
+
+        final Path start = pomFile.toAbsolutePath().normalize();
+        final Deque<Path> queue = new ArrayDeque<>(10);
+        final Set<Path> visited = new HashSet<>(10);
+
+        update(digest, KEY_VERSION);
+        update(digest, start.toString());
+
+        for (final String property : PROPERTIES) {
+            update(digest, property + '=' + System.getProperty(property));
+        }
+
+        final Path settings = Paths.get(System.getProperty("user.home"),
+                ".m2", "settings.xml");
+
+        try {
+            update(digest, Files.isRegularFile(settings)
+                    ? Files.readAllBytes(settings) : new byte[0]);
+
+            queue.add(start);
+
+            while (!queue.isEmpty()) {
+                final Path file = queue.poll();
+
+                if (!visited.add(file)) {
+                    continue;
+                }
+
+                final byte[] content = Files.readAllBytes(file);
+                update(digest, file.toString());
+                update(digest, content);
+
+                String volatileParent = null;
+
+                for (final String reference : readReferences(content)) {
+                    if (reference.startsWith("import:")) {
+                        if (isVolatile(reference)) {
+                            return null;
+                        }
+
+                        update(digest, reference);
+                        continue;
+                    } else if (reference.startsWith("parent:")) {
+                        update(digest, reference);
+                        volatileParent
+                                = isVolatile(reference) ? reference : null;
+                        continue;
+                    }
+
+                    final boolean relative = reference.startsWith("relative:");
+                    final Path referenced = resolvePom(file,
+                            reference.substring(reference.indexOf(':') + 1));
+
+                    if (Files.isRegularFile(referenced)) {
+                        queue.add(referenced);
+
+                        if (relative) {
+                            volatileParent = null;
+                        }
+                    } else if (!relative) {
+                        update(digest, "missing " + referenced);
+                    }
+                }
+
+                if (volatileParent != null) {
+                    return null;
+                }
+            }
+        } catch (final IOException | XMLStreamException ex) {
+            return null;
+        }
+
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Stores copy of the effective pom in the cache.
+     *
+     * @param key          key of the pom
+     * @param effectivePom path to effective pom
+     */
+    void put(final String key, final Path effectivePom) {
+        try {
+            Files.createDirectories(directory);
+
+            final Path tmpFile = Files.createTempFile(directory, key, ".tmp");
+            Files.copy(effectivePom, tmpFile,
+                    StandardCopyOption.REPLACE_EXISTING);
+            Files.move(tmpFile, directory.resolve(key + ".xml"),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException ex) {
+            throw new RuntimeException("Failed to store effective pom in "
+                    + directory, ex);
+        }
+    }
+
+    /**
+     * Checks whether the innermost element is dependencies element of
+     * dependency management, of the project or of a profile.
+     *
+     * @param elements stack of open elements
+     *
+     * @return true if dependency management is open, otherwise false
+     */
+    private static boolean isDependencyManagement(
+            final Deque<String> elements) {
+        final Iterator<String> iterator = elements.iterator();
+
+        return elements.size() >= 3 && "dependencies".equals(iterator.next())
+                && "dependencyManagement".equals(iterator.next());
+    }
+
+    /**
+     * Checks whether pom referenced from repository can change without any
+     * local change, that is whether it has snapshot version or coordinates
+     * containing property expression.
+     *
+     * @param reference parent or import reference
+     *
+     * @return true if the referenced pom can change, otherwise false
+     */
+    private static boolean isVolatile(final String reference) {
+        return reference.endsWith("-SNAPSHOT") || reference.contains("${");
+    }
+
+    /**
+     * Reads references to other poms from the pom. Parent is returned as
+     * "parent:groupId:artifactId:version" followed by "relative:path" unless
+     * the parent has empty relative path, modules are returned as
+     * "module:path" and dependencies imported in dependency management are
+     * returned as "import:groupId:artifactId:version".
+     *
+     * @param content pom content
+     *
+     * @return list of references
+     *
+     * @throws XMLStreamException Thrown if the pom is not valid XML.
+     */
+    private static List<String> readReferences(final byte[] content)
+            throws XMLStreamException {
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+
+        final XMLStreamReader reader = factory.createXMLStreamReader(
+                new ByteArrayInputStream(content));
+        final List<String> references = new ArrayList<>(10);
+        final Deque<String> elements = new ArrayDeque<>(10);
+        String parentId = "";
+        String relativePath = "../pom.xml";
+        String dependencyId = null;
+        String dependencyScope = null;
+
+        while (reader.hasNext()) {
+            reader.next();
+
+            if (reader.isStartElement()) {
+                final String name = reader.getLocalName();
+                final String parent = elements.peek();
+
+                if ("parent".equals(parent) && elements.size() == 2) {
+                    switch (name) {
+                        case "groupId":
+                        case "artifactId":
+                        case "version":
+                            parentId += ':' + reader.getElementText().trim();
+                            continue;
+                        case "relativePath":
+                            relativePath = reader.getElementText().trim();
+                            continue;
+                        default:
+                    }
+                } else if ("module".equals(name)
+                        && "modules".equals(parent)) {
+                    references.add("module:"
+                            + reader.getElementText().trim());
+                    continue;
+                } else if ("dependency".equals(parent)
+                        && dependencyId != null) {
+                    switch (name) {
+                        case "groupId":
+                        case "artifactId":
+                        case "version":
+                            dependencyId
+                                    += ':' + reader.getElementText().trim();
+                            continue;
+                        case "scope":
+                            dependencyScope = reader.getElementText().trim();
+                            continue;
+                        default:
+                    }
+                } else if ("dependency".equals(name)
+                        && isDependencyManagement(elements)) {
+                    dependencyId = "";
+                    dependencyScope = null;
+                }
+
+                elements.push(name);
+            } else if (reader.isEndElement()) {
+                final String name = elements.pop();
+
+                if ("parent".equals(name) && elements.size() == 1) {
+                    references.add("parent" + parentId);
+
+                    if (!relativePath.isEmpty()) {
+                        references.add("relative:" + relativePath);
+                    }
+                } else if ("dependency".equals(name)
+                        && dependencyId != null) {
+                    if ("import".equals(dependencyScope)) {
+                        references.add("import" + dependencyId);
+                    }
+
+                    dependencyId = null;
+                }
+            }
+        }
+
+        reader.close();
+
+        return references;
+    }
+
+    /**
+     * Resolves path of referenced pom.
+     *
+     * @param pomFile   pom containing the reference
+     * @param reference relative path of the referenced pom or its directory
+     *
+     * @return path of the referenced pom
+     */
+    private static Path resolvePom(final Path pomFile,
+            final String reference) {
+        final Path path = pomFile.getParent().resolve(reference).normalize();
+
+        return Files.isDirectory(path) ? path.resolve("pom.xml") : path;
+    }
+
+    /**
+     * Updates digest with length prefixed string.
+     *
+     * @param digest message digest
+     * @param string string
+     */
+    private static void update(final MessageDigest digest,
+            final String string) {
+        update(digest, string.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Updates digest with length prefixed bytes.
+     *
+     * @param digest message digest
+     * @param bytes  bytes
+     */
+    private static void update(final MessageDigest digest,
+            final byte[] bytes) {
+        digest.update((byte) (bytes.length >>> 24));
+        digest.update((byte) (bytes.length >>> 16));
+        digest.update((byte) (bytes.length >>> 8));
+        digest.update((byte) bytes.length);
+        digest.update(bytes);
+    }
+}
@@ -1,182 +1,229 @@
 package org.gentoo.java.ebuilder.maven;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.IOException;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.nio.file.Path;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
 import org.gentoo.java.ebuilder.Config;
-import org.gentoo.java.ebuilder.portage.CacheItem;
-import org.gentoo.java.ebuilder.portage.MavenVersion;
-import org.gentoo.java.ebuilder.portage.PortageParser;
 
 /**
- * Cache for resolving maven artifacts into portage ebuilds.
+ * Cache for resolving maven artifacts into portage ebuilds. Lookups are
+ * served from immutable {@link MavenCacheSnapshot} that is replaced
+ * atomically when the cache is reloaded, so the cache can be shared between
+ * threads and reloaded while it is being used.
  *
  * @author fordfrog
  */
 public class MavenCache {
 
     /**
-     * Cache containing map of group ids, artifact ids and corresponding cache
-     * items.
+     * Lock that serializes reloading of the cache, so that snapshots are
+     * published in the order their cache files were read.
      */
-    private final Map<String, Map<String, List<CacheItem>>> cache
-            = new HashMap<>();
+    private final Object reloadLock = new Object();
+    /**
+     * Configuration of the cache that is not loaded yet because all looked up
+     * dependencies were found in {@link #resolutionMemo} so far, otherwise
+     * null.
+     */
+    private volatile Config pendingConfig;
+    /**
+     * Memo of dependencies resolved by previous runs or null if it is not
+     * used.
+     */
+    private volatile ResolutionMemo resolutionMemo;
+    /**
+     * Currently published snapshot of the cache.
+     */
+    private final AtomicReference<MavenCacheSnapshot> snapshot
+            = new AtomicReference<>(BakedCache.getSnapshot() == null
+                    ? MavenCacheSnapshot.EMPTY : BakedCache.getSnapshot());
 
     /**
      * Searches for system dependency using maven group id, artifact id and
      * version. First version that is the same or greater than specified version
      * is returned. In case there is no such version, the highest version from
-     * the available ebuilds is returned.
+     * the available ebuilds is returned. If version range is specified, the
+     * best version within the range is returned.
      *
      * @param groupId    maven group id
      * @param artifactId maven artifact id
-     * @param version    maven version
+     * @param version    maven version or version range
+     *
+     * @return dependency string or placeholder of the resolution status
      *
-     * @return dependency string or null
+     * @see ResolutionStatus#getPlaceholder()
      */
     public String getDependency(final String groupId, final String artifactId,
             final String version) {
-        final Map<String, List<CacheItem>> artifactIds = cache.get(groupId);
-
-        if (artifactIds == null) {
-            return "!!!groupId-not-found!!!";
-        }
-
-        final List<CacheItem> versions = artifactIds.get(artifactId);
-
-        if (versions == null) {
-            return "!!!artifactId-not-found!!!";
-        }
-
-        final MavenVersion mavenVersion = new MavenVersion(version);
-        CacheItem cacheItem = null;
-
-        for (final CacheItem curCacheItem : versions) {
-            if (curCacheItem.getParsedMavenVersion().compareTo(mavenVersion)
-                    >= 0) {
-                cacheItem = curCacheItem;
-
-                break;
-            }
-        }
-
-        if (cacheItem == null) {
-            return "!!!suitable-mavenVersion-not-found!!!";
-        }
-
-        final StringBuilder sbDependency = new StringBuilder(50);
-        if (cacheItem.getCategory().compareTo("java-virtuals") != 0) {
-            sbDependency.append(">=");
-        }
-        sbDependency.append(cacheItem.getCategory());
-        sbDependency.append('/');
-        sbDependency.append(cacheItem.getPkg());
-        if (cacheItem.getCategory().compareTo("java-virtuals") != 0) {
-            sbDependency.append('-');
-            sbDependency.append(stripExtraFromVersion(cacheItem.getVersion()));
-        }
+        return resolve(groupId, artifactId, version).toDependencyString();
+    }
 
-        if (cacheItem.getUseFlag() != null) {
-            sbDependency.append('[');
-            sbDependency.append(cacheItem.getUseFlag());
-            sbDependency.append(']');
-        }
+    /**
+     * Returns maven ids provided by the package.
+     *
+     * @param atom category/pkg or category/pkg:slot
+     *
+     * @return list of groupId:artifactId:version, empty if the package does
+     *         not provide any maven artifact
+     *
+     * @see MavenCacheSnapshot#getMavenIds(String)
+     */
+    public List<String> getMavenIds(final String atom) {
+        loadPendingCache();
 
-        sbDependency.append(':');
-        sbDependency.append(cacheItem.getSlot());
+        return snapshot.get().getMavenIds(atom);
+    }
 
-        return sbDependency.toString();
+    /**
+     * Getter for {@link #snapshot}.
+     *
+     * @return currently published snapshot
+     */
+    public MavenCacheSnapshot getSnapshot() {
+        return snapshot.get();
     }
 
     /**
-     * Loads cache from specified path.
+     * Loads cache from specified path. If the cache is baked into the image,
+     * the baked cache is used instead, unless the cache file was refreshed.
+     * If resolution memo is enabled, only the memo is read and the cache is
+     * loaded when the first dependency that is not in the memo is looked up.
      *
      * @param config application configuration
+     *
+     * @see BakedCache
      */
     public void loadCache(final Config config) {
-        config.getStdoutWriter().print("Reading in maven cache...");
-
-        cache.clear();
-
-        try (final BufferedReader reader = new BufferedReader(
-                new FileReader(config.getCacheFile().toFile()))) {
-            String line = reader.readLine();
+        pendingConfig = null;
+        resolutionMemo = null;
+
+        if (BakedCache.getSnapshot() != null && !config.isRefreshCache()) {
+            config.getStdoutWriter().println(
+                    "Using maven cache baked into the image");
+            snapshot.set(BakedCache.getSnapshot());
+        } else if (config.isResolutionMemo()) {
+            config.getStdoutWriter().print("Reading in resolution memo...");
+            resolutionMemo = ResolutionMemo.open(
+                    config.getResolutionMemoFile(), config.getCacheFile());
+            pendingConfig = config;
+            config.getStdoutWriter().println("done");
+        } else {
+            readCache(config);
+        }
+    }
 
-            if ("1.0".equals(line)) {
-                config.getStdoutWriter().print("(warning: format is not "
-                        + "up-to-date, consider refreshing the cache)...");
-            } else if (!PortageParser.CACHE_VERSION.equals(line)) {
-                config.getErrorWriter().println("ERROR: Unsupported version of "
-                        + "cache. Please refresh the cache using command line "
-                        + "switch --refresh-cache.");
-                Runtime.getRuntime().exit(1);
+    /**
+     * Loads new snapshot from specified cache file in background and
+     * publishes it when it is loaded. Lookups use the previous snapshot until
+     * then. Resolution memo is not used anymore once the new snapshot is
+     * published, as it belongs to the previous cache file.
+     *
+     * @param cacheFile    cache file path
+     * @param cacheBackend in-memory representation of the cache
+     *
+     * @return future that completes with the published snapshot
+     */
+    public CompletableFuture<MavenCacheSnapshot> reloadCache(
+            final Path cacheFile, final CacheBackend cacheBackend) {
+        return CompletableFuture.supplyAsync(() -> {
+            synchronized (reloadLock) {
+                final MavenCacheSnapshot newSnapshot
+                        = MavenCacheSnapshot.load(cacheFile, cacheBackend);
+
+                snapshot.set(newSnapshot);
+                pendingConfig = null;
+                resolutionMemo = null;
+
+                return newSnapshot;
             }
+        });
+    }
 
-            line = reader.readLine();
+    /**
+     * Resolves maven group id, artifact id and version into system
+     * dependency, like {@link #getDependency(String, String, String)}.
+     *
+     * @param groupId    maven group id
+     * @param artifactId maven artifact id
+     * @param version    maven version
+     *
+     * @return resolution
+     */
+    public Resolution resolve(final String groupId, final String artifactId,
+            final String version) {
+        final ResolutionMemo memo = resolutionMemo;
 
-            while (line != null) {
-                if (!line.isEmpty() && line.charAt(0) != '#') {
-                    addCacheItem(new CacheItem(line));
-                }
+        if (memo == null) {
+            return snapshot.get().resolve(groupId, artifactId, version);
+        }
 
-                line = reader.readLine();
-            }
-        } catch (final IOException ex) {
-            throw new RuntimeException("Failed to load cache", ex);
+        final String dependency = memo.get(groupId, artifactId, version);
+
+        if (dependency != null) {
+            return Resolution.valueOf(dependency);
         }
 
-        for (final Map<String, List<CacheItem>> artifactIds : cache.values()) {
-            for (final List<CacheItem> versions : artifactIds.values()) {
-                versions.sort((final CacheItem o1, final CacheItem o2) -> {
-                    return o1.getParsedMavenVersion().compareTo(
-                            o2.getParsedMavenVersion());
-                });
-            }
+        loadPendingCache();
+
+        final Resolution resolution
+                = snapshot.get().resolve(groupId, artifactId, version);
+
+        // invalid version has no dependency string to memoize
+        if (resolution.getStatus() != ResolutionStatus.INVALID_VERSION) {
+            memo.put(groupId, artifactId, version,
+                    resolution.toDependencyString());
         }
 
-        config.getStdoutWriter().println("done");
+        return resolution;
     }
 
     /**
-     * Adds cache item to the cache if it contains maven id.
-     *
-     * @param cacheItem cache item
+     * Loads the cache if its loading was postponed.
      */
-    private void addCacheItem(final CacheItem cacheItem) {
-        if (cacheItem.getGroupId() == null) {
+    private void loadPendingCache() {
+        if (pendingConfig == null) {
             return;
         }
 
-        Map<String, List<CacheItem>> artifactIds
-                = cache.get(cacheItem.getGroupId());
-
-        if (artifactIds == null) {
-            artifactIds = new HashMap<>();
-            cache.put(cacheItem.getGroupId(), artifactIds);
-        }
-
-        List<CacheItem> versions = artifactIds.get(cacheItem.getArtifactId());
+        synchronized (reloadLock) {
+            final Config config = pendingConfig;
 
-        if (versions == null) {
-            versions = new ArrayList<>(10);
-            artifactIds.put(cacheItem.getArtifactId(), versions);
+            if (config != null) {
+                readCache(config);
+                pendingConfig = null;
+            }
         }
-
-        versions.add(cacheItem);
     }
 
     /**
-     * Strips all -r* from the version string.
+     * Reads cache from specified path and publishes it.
      *
-     * @param version version string
+     * @param config application configuration
      *
-     * @return stripped version string
+     * @see MavenCacheSnapshot#load(Path, CacheBackend)
      */
-    private String stripExtraFromVersion(final String version) {
-        return version.replaceAll("-r\\d+", "");
+    private void readCache(final Config config) {
+        config.getStdoutWriter().print("Reading in maven cache...");
+
+        final MavenCacheSnapshot newSnapshot;
+
+        try {
+            newSnapshot = MavenCacheSnapshot.load(config.getCacheFile(),
+                    config.getCacheBackend());
+        } catch (final IllegalArgumentException ex) {
+            config.getErrorWriter().println("ERROR: " + ex.getMessage());
+            Runtime.getRuntime().exit(1);
+
+            return;
+        }
+
+        if (newSnapshot.isOutdated()) {
+            config.getStdoutWriter().print("(warning: format is not "
+                    + "up-to-date, consider refreshing the cache)...");
+        }
+
+        snapshot.set(newSnapshot);
+        config.getStdoutWriter().println("done");
     }
 }
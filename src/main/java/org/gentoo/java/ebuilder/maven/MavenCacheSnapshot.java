@@ -0,0 +1,412 @@
+package org.gentoo.java.ebuilder.maven;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.gentoo.java.ebuilder.portage.BinaryCache;
+import org.gentoo.java.ebuilder.portage.CacheItem;
+import org.gentoo.java.ebuilder.portage.MavenVersionRange;
+import org.gentoo.java.ebuilder.portage.PortageParser;
+import org.gentoo.java.ebuilder.portage.StringPool;
+
+/**
+ * Content of single cache file loaded for resolving maven artifacts. The
+ * loaded content is never modified after the snapshot is created, only
+ * prepared versions of looked up artifacts are memoized in concurrent maps,
+ * so instances can be shared between threads without locking.
+ */
+public final class MavenCacheSnapshot {
+
+    /**
+     * Snapshot without any artifacts.
+     */
+    static final MavenCacheSnapshot EMPTY = new MavenCacheSnapshot(null,
+            new HashMap<>(0), null, null, false);
+    /**
+     * Memory-mapped binary cache with artifact index or null if the cache
+     * items are loaded into {@link #cacheItems}.
+     */
+    private final BinaryCache binaryCache;
+    /**
+     * Cache containing map of group ids, artifact ids and corresponding
+     * versions. Artifacts are added as they are looked up.
+     */
+    private final Map<String, Map<String, ArtifactVersions>> cache
+            = new ConcurrentHashMap<>(100);
+    /**
+     * Loaded cache items by group id and artifact id, in the order of the
+     * cache file. Maven versions of the items are only parsed when the
+     * artifact is looked up.
+     */
+    private final Map<String, Map<String, List<CacheItem>>> cacheItems;
+    /**
+     * Whether the cache file uses outdated format.
+     */
+    private final boolean outdated;
+    /**
+     * Cache packed into arrays or null if {@link CacheBackend#MAPS} backend is
+     * used.
+     */
+    private final PackedCache packedCache;
+    /**
+     * Reverse index of maven ids by package. It is created when the cache is
+     * packed into arrays, otherwise on the first lookup.
+     */
+    private volatile PackageIndex packageIndex;
+    /**
+     * Parsed version requirements of the looked up dependencies.
+     */
+    private final Map<String, MavenVersionRange> queryRanges
+            = new ConcurrentHashMap<>(100);
+
+    /**
+     * Creates new instance of MavenCacheSnapshot.
+     *
+     * @param binaryCache  {@link #binaryCache}
+     * @param cacheItems   {@link #cacheItems}
+     * @param packedCache  {@link #packedCache}
+     * @param packageIndex {@link #packageIndex}
+     * @param outdated     {@link #outdated}
+     */
+    private MavenCacheSnapshot(final BinaryCache binaryCache,
+            final Map<String, Map<String, List<CacheItem>>> cacheItems,
+            final PackedCache packedCache, final PackageIndex packageIndex,
+            final boolean outdated) {
+        this.binaryCache = binaryCache;
+        this.cacheItems = cacheItems;
+        this.packedCache = packedCache;
+        this.packageIndex = packageIndex;
+        this.outdated = outdated;
+    }
+
+    /**
+     * Loads snapshot from specified cache file. Format of the cache file is
+     * detected automatically. Binary cache with artifact index is only
+     * memory-mapped and cache items are read when they are looked up.
+     * Versions of artifacts are sorted when the artifact is looked up for the
+     * first time, unless {@link CacheBackend#ARRAYS} backend is used, which
+     * packs the whole cache into arrays right away.
+     *
+     * @param cacheFile    cache file path
+     * @param cacheBackend in-memory representation of the cache
+     *
+     * @return snapshot
+     *
+     * @throws IllegalArgumentException Thrown if version of the text cache
+     *                                  is not supported.
+     */
+    public static MavenCacheSnapshot load(final Path cacheFile,
+            final CacheBackend cacheBackend) {
+        final Map<String, Map<String, List<CacheItem>>> cacheItems
+                = new HashMap<>(1_000);
+        BinaryCache binaryCache = null;
+        boolean outdated = false;
+
+        if (BinaryCache.isBinaryCache(cacheFile)) {
+            final BinaryCache mappedCache = BinaryCache.open(cacheFile);
+
+            if (mappedCache.hasIndex()) {
+                binaryCache = mappedCache;
+            } else {
+                mappedCache.getCacheItems().forEach(
+                        cacheItem -> addCacheItem(cacheItems, cacheItem));
+            }
+        } else {
+            outdated = loadTextCache(cacheFile, cacheItems);
+        }
+
+        if (cacheBackend == CacheBackend.ARRAYS) {
+            if (binaryCache != null) {
+                binaryCache.getCacheItems().forEach(
+                        cacheItem -> addCacheItem(cacheItems, cacheItem));
+            }
+
+            return new MavenCacheSnapshot(null, new HashMap<>(0),
+                    new PackedCache(cacheItems),
+                    new PackageIndex(getAllCacheItems(cacheItems)), outdated);
+        }
+
+        return new MavenCacheSnapshot(binaryCache, cacheItems, null, null,
+                outdated);
+    }
+
+    /**
+     * Returns maven ids provided by the package.
+     *
+     * @param atom category/pkg or category/pkg:slot
+     *
+     * @return immutable list of groupId:artifactId:version sorted by group id,
+     *         artifact id and maven version, empty if the package does not
+     *         provide any maven artifact
+     */
+    public List<String> getMavenIds(final String atom) {
+        PackageIndex index = packageIndex;
+
+        if (index == null) {
+            synchronized (this) {
+                index = packageIndex;
+
+                if (index == null) {
+                    index = new PackageIndex(binaryCache == null
+                            ? getAllCacheItems(cacheItems)
+                            : binaryCache.getCacheItems());
+                    packageIndex = index;
+                }
+            }
+        }
+
+        return index.getMavenIds(atom);
+    }
+
+    /**
+     * Getter for {@link #outdated}.
+     *
+     * @return {@link #outdated}
+     */
+    public boolean isOutdated() {
+        return outdated;
+    }
+
+    /**
+     * Resolves maven group id, artifact id and version into system
+     * dependency. For plain version, first version that is the same or
+     * greater than specified version is returned. For version range, the best
+     * version within the range is returned. Version that cannot be parsed is
+     * reported before the artifact is looked up.
+     *
+     * @param groupId    maven group id
+     * @param artifactId maven artifact id
+     * @param version    maven version or version range
+     *
+     * @see SortedVersions#getDependency(int, int, MavenVersionRange)
+     *
+     * @return resolution
+     */
+    public Resolution resolve(final String groupId, final String artifactId,
+            final String version) {
+        final MavenVersionRange range;
+
+        try {
+            range = getQueryRange(version);
+        } catch (final RuntimeException ex) {
+            return Resolution.INVALID_VERSION;
+        }
+
+        final String dependency;
+
+        if (packedCache != null) {
+            final int artifact
+                    = packedCache.findArtifact(groupId, artifactId);
+
+            if (artifact == PackedCache.GROUP_ID_NOT_FOUND) {
+                return Resolution.GROUP_ID_NOT_FOUND;
+            } else if (artifact == PackedCache.ARTIFACT_ID_NOT_FOUND) {
+                return Resolution.ARTIFACT_ID_NOT_FOUND;
+            }
+
+            dependency = packedCache.getDependency(artifact, range);
+        } else {
+            final Map<String, ArtifactVersions> artifactIds
+                    = getArtifactIds(groupId);
+
+            if (artifactIds == null) {
+                return Resolution.GROUP_ID_NOT_FOUND;
+            }
+
+            final ArtifactVersions versions
+                    = getArtifactVersions(artifactIds, groupId, artifactId);
+
+            if (versions == null) {
+                return Resolution.ARTIFACT_ID_NOT_FOUND;
+            }
+
+            dependency = versions.getDependency(range);
+        }
+
+        return dependency == null ? Resolution.VERSION_NOT_FOUND
+                : Resolution.resolved(dependency);
+    }
+
+    /**
+     * Adds cache item to the cache items if it contains maven id.
+     *
+     * @param cacheItems cache items by group id and artifact id
+     * @param cacheItem  cache item
+     */
+    private static void addCacheItem(
+            final Map<String, Map<String, List<CacheItem>>> cacheItems,
+            final CacheItem cacheItem) {
+        if (cacheItem.getGroupId() == null) {
+            return;
+        }
+
+        Map<String, List<CacheItem>> artifactIds
+                = cacheItems.get(cacheItem.getGroupId());
+
+        if (artifactIds == null) {
+            artifactIds = new HashMap<>();
+            cacheItems.put(cacheItem.getGroupId(), artifactIds);
+        }
+
+        List<CacheItem> versions = artifactIds.get(cacheItem.getArtifactId());
+
+        if (versions == null) {
+            versions = new ArrayList<>(10);
+            artifactIds.put(cacheItem.getArtifactId(), versions);
+        }
+
+        versions.add(cacheItem);
+    }
+
+    /**
+     * Returns all cache items in single list.
+     *
+     * @param cacheItems cache items by group id and artifact id
+     *
+     * @return list of cache items
+     */
+    private static List<CacheItem> getAllCacheItems(
+            final Map<String, Map<String, List<CacheItem>>> cacheItems) {
+        final List<CacheItem> result = new ArrayList<>(10_000);
+        cacheItems.values().forEach(artifactIds
+                -> artifactIds.values().forEach(result::addAll));
+
+        return result;
+    }
+
+    /**
+     * Loads cache items from text cache file.
+     *
+     * @param cacheFile  cache file path
+     * @param cacheItems cache items by group id and artifact id
+     *
+     * @return true if the cache file uses outdated format, otherwise false
+     *
+     * @throws IllegalArgumentException Thrown if version of the cache is not
+     *                                  supported.
+     */
+    private static boolean loadTextCache(final Path cacheFile,
+            final Map<String, Map<String, List<CacheItem>>> cacheItems) {
+        final boolean outdated;
+
+        try (final BufferedReader reader = new BufferedReader(
+                new FileReader(cacheFile.toFile()))) {
+            String line = reader.readLine();
+            outdated = "1.0".equals(line);
+
+            if (!outdated && !PortageParser.CACHE_VERSION.equals(line)) {
+                throw new IllegalArgumentException("Unsupported version of "
+                        + "cache. Please refresh the cache using command line "
+                        + "switch --refresh-cache.");
+            }
+
+            final StringPool stringPool = new StringPool();
+            line = reader.readLine();
+
+            while (line != null) {
+                if (!line.isEmpty() && line.charAt(0) != '#') {
+                    addCacheItem(cacheItems, new CacheItem(line, stringPool));
+                }
+
+                line = reader.readLine();
+            }
+        } catch (final IOException ex) {
+            throw new RuntimeException("Failed to load cache", ex);
+        }
+
+        return outdated;
+    }
+
+    /**
+     * Returns versions of artifacts with specified group id, adding the group
+     * id to the cache if it is found in the loaded cache items or binary
+     * cache.
+     *
+     * @param groupId maven group id
+     *
+     * @return map of artifact ids and their versions or null if the group id
+     *         was not found
+     */
+    private Map<String, ArtifactVersions> getArtifactIds(
+            final String groupId) {
+        final Map<String, ArtifactVersions> artifactIds = cache.get(groupId);
+
+        if (artifactIds != null) {
+            return artifactIds;
+        } else if (binaryCache == null ? !cacheItems.containsKey(groupId)
+                : !binaryCache.containsGroupId(groupId)) {
+            return null;
+        }
+
+        return cache.computeIfAbsent(groupId,
+                key -> new ConcurrentHashMap<>(10));
+    }
+
+    /**
+     * Returns versions of specified artifact, creating them from the loaded
+     * cache items or binary cache if they are not in the cache yet.
+     *
+     * @param artifactIds map of artifact ids and their versions
+     * @param groupId     maven group id
+     * @param artifactId  maven artifact id
+     *
+     * @return versions of the artifact or null if the artifact was not found
+     */
+    private ArtifactVersions getArtifactVersions(
+            final Map<String, ArtifactVersions> artifactIds,
+            final String groupId, final String artifactId) {
+        final ArtifactVersions versions = artifactIds.get(artifactId);
+
+        if (versions != null) {
+            return versions;
+        } else if (binaryCache != null) {
+            final List<CacheItem> items
+                    = binaryCache.getCacheItems(groupId, artifactId);
+
+            return items == null ? null : artifactIds.computeIfAbsent(
+                    artifactId, key -> new ArtifactVersions(items));
+        }
+
+        final List<CacheItem> items
+                = cacheItems.get(groupId).get(artifactId);
+
+        if (items == null) {
+            return null;
+        }
+
+        return artifactIds.computeIfAbsent(artifactId, key -> {
+            final List<CacheItem> sortedItems = new ArrayList<>(items);
+            sortedItems.sort((final CacheItem o1, final CacheItem o2) -> {
+                return o1.getParsedMavenVersion().compareTo(
+                        o2.getParsedMavenVersion());
+            });
+
+            return new ArtifactVersions(sortedItems);
+        });
+    }
+
+    /**
+     * Returns parsed version requirement, parsing it only if it was not looked
+     * up before.
+     *
+     * @param version maven version or version range
+     *
+     * @return parsed version requirement
+     */
+    private MavenVersionRange getQueryRange(final String version) {
+        MavenVersionRange range = queryRanges.get(version);
+
+        if (range == null) {
+            range = new MavenVersionRange(version);
+            queryRanges.putIfAbsent(version, range);
+        }
+
+        return range;
+    }
+}
@@ -1,6 +1,6 @@
 package org.gentoo.java.ebuilder.maven;
 
-import org.gentoo.java.ebuilder.portage.MavenVersion;
+import org.gentoo.java.ebuilder.portage.MavenVersionRange;
 
 /**
  * Maven project dependency.
@@ -19,10 +19,6 @@ public class MavenDependency {
      * Group id.
      */
     private final String groupId;
-    /**
-     * Parsed maven version.
-     */
-    private final MavenVersion mavenVersion;
     /**
      * Dependency scope.
      */
@@ -35,6 +31,10 @@ public class MavenDependency {
      * Version.
      */
     private final String version;
+    /**
+     * Parsed version requirement, either soft requirement or version range.
+     */
+    private final MavenVersionRange versionRange;
 
     /**
      * Creates new instance of Dependency.
@@ -53,7 +53,7 @@ public class MavenDependency {
         this.version = version;
         this.scope = scope;
         this.systemDependency = systemDependency;
-        mavenVersion = new MavenVersion(version);
+        versionRange = new MavenVersionRange(version);
     }
 
     /**
@@ -74,15 +74,6 @@ public class MavenDependency {
         return groupId;
     }
 
-    /**
-     * Getter for {@link #mavenVersion}.
-     *
-     * @return {@link #mavenVersion}
-     */
-    public MavenVersion getMavenVersion() {
-        return mavenVersion;
-    }
-
     /**
      * Getter for {@link #scope}.
      *
@@ -110,4 +101,13 @@ public class MavenDependency {
         return version;
     }
 
+    /**
+     * Getter for {@link #versionRange}.
+     *
+     * @return {@link #versionRange}
+     */
+    public MavenVersionRange getVersionRange() {
+        return versionRange;
+    }
+
 }
@@ -208,8 +208,12 @@ public class MavenEbuilder {
          */
         if ("junit".equals(dependency.getGroupId())
                 && "junit".equals(dependency.getArtifactId())) {
-            if (dependency.getMavenVersion().
-                    compareTo(new MavenVersion("3.9.9")) < 1) {
+            // ranges are sorted by lower bound, null means unbounded range
+            final MavenVersion lowerBound = dependency.getVersionRange()
+                    .getRestrictions().get(0).getLowerBound();
+
+            if (lowerBound == null
+                    || lowerBound.compareTo(new MavenVersion("3.9.9")) < 1) {
                 return "junit";
             } else {
                 return "junit-4";
@@ -2,70 +2,152 @@ package org.gentoo.java.ebuilder.maven;
 
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import org.apache.maven.model.Build;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.License;
 import org.apache.maven.model.Model;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.Resource;
 import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
 import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
 import org.gentoo.java.ebuilder.Config;
-import org.gentoo.java.ebuilder.parser.XMLUtilities;
 import org.jboss.logging.Logger;
 import org.jboss.shrinkwrap.resolver.api.maven.embedded.EmbeddedMaven;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
-
-import javax.xml.XMLConstants;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
+
 import javax.xml.stream.FactoryConfigurationError;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
 import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.events.XMLEvent;
 import java.io.*;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 @ApplicationScoped
 public class MavenParser {
     private static final Logger LOG = Logger.getLogger(MavenParser.class);
 
     @Inject
-    XMLUtilities xmlUtilities;
-
-    @Inject
-    MavenXpp3Reader mavenXpp3Reader;
+    MavenXpp3Reader mavenXpp3Reader = new MavenXpp3Reader();
 
     public List<Model> parsePomFile(Path pomXmlPath) {
+        return parsePomFile(pomXmlPath, ModelEngine.MAVEN);
+    }
 
+    /**
+     * Returns effective models of the pom and its modules.
+     *
+     * @param pomXmlPath  path to pom.xml file that should be processed
+     * @param modelEngine engine used to get effective models
+     * @return list of effective models
+     */
+    public List<Model> parsePomFile(Path pomXmlPath, ModelEngine modelEngine) {
+        if (modelEngine == ModelEngine.BUILDER) {
+            try {
+                return new EffectiveModelBuilder().buildReactor(pomXmlPath);
+            } catch (RuntimeException e) {
+                LOG.warn("Failed to build effective models in-process, falling back to maven", e);
+            }
+        }
+
+        return readEffectiveModels(getEffectivePom(pomXmlPath));
+    }
+
+    /**
+     * Reads models of all projects in effective pom. The effective pom is read
+     * once using StAX. If it contains multiple projects, each project is copied
+     * to a buffer and read from there, so only single project is kept in memory
+     * at a time.
+     *
+     * @param effectivePom path to effective pom
+     * @return list of effective models
+     */
+    List<Model> readEffectiveModels(File effectivePom) {
         List<Model> mavenModels = new ArrayList<>();
-        File effectivePom = getEffectivePom(pomXmlPath);
+        XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+        outputFactory.setProperty(XMLOutputFactory.IS_REPAIRING_NAMESPACES, true);
 
-        Document document = parsePOMtoDOMDocument(effectivePom);
+        try (InputStream inputStream = new BufferedInputStream(new FileInputStream(effectivePom))) {
+            XMLEventReader reader = inputFactory.createXMLEventReader(inputStream);
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(65_536);
+
+            XMLEvent event = reader.nextTag();
+
+            if (!"projects".equals(event.asStartElement().getName().getLocalPart())) {
+                LOG.info("Effective POM contains single project");
+                reader.close();
+                mavenModels.add(readMavenProject(effectivePom));
+
+                return mavenModels;
+            }
 
-        if ("projects".equals(document.getDocumentElement().getNodeName())) {
             LOG.info("Effective POM contains multiple projects");
-            NodeList nodeList = document.getElementsByTagName("project");
 
-            for (int i = 0; i < nodeList.getLength(); i++) {
-                DocumentBuilder builder = createDocumentBuilder(true);
-                Document mavenSingleProjectDocument = builder.newDocument();
+            while (reader.hasNext()) {
+                event = reader.nextEvent();
+
+                if (event.isStartElement()) {
+                    buffer.reset();
 
-                Node importedNode = mavenSingleProjectDocument.importNode(nodeList.item(i), true);
-                mavenSingleProjectDocument.appendChild(importedNode);
+                    XMLEventWriter writer = outputFactory.createXMLEventWriter(buffer, "UTF-8");
+                    copyElement(reader, event, writer);
+                    writer.close();
 
-                mavenModels.add(readMavenProject(mavenSingleProjectDocument));
+                    mavenModels.add(readMavenProject(new ByteArrayInputStream(buffer.toByteArray())));
+                }
             }
-        } else if ("project".equals(document.getDocumentElement().getNodeName())) {
-            LOG.info("Effective POM contains single project");
-            mavenModels.add(readMavenProject(effectivePom));
+
+            reader.close();
+        } catch (IOException | XMLStreamException e) {
+            throw new RuntimeException("Failed to read effective pom", e);
         }
 
         return mavenModels;
     }
 
+    /**
+     * Copies element including its content from reader to writer.
+     *
+     * @param reader       XML event reader positioned after start of the element
+     * @param startElement start of the element
+     * @param writer       XML event writer
+     * @throws XMLStreamException Thrown if problem occurred while reading or writing XML stream.
+     */
+    private void copyElement(XMLEventReader reader, XMLEvent startElement, XMLEventWriter writer)
+            throws XMLStreamException {
+        XMLEvent event = startElement;
+        int depth = 0;
+
+        while (true) {
+            writer.add(event);
+
+            if (event.isStartElement()) {
+                depth++;
+            } else if (event.isEndElement() && --depth == 0) {
+                return;
+            }
+
+            event = reader.nextEvent();
+        }
+    }
+
     /**
      * Stores effective pom to file and returns the file.
      *
@@ -73,6 +155,36 @@ public class MavenParser {
      * @return path to effective pom
      */
     File getEffectivePom(Path pomXmlPath) {
+        return getEffectivePom(pomXmlPath, null);
+    }
+
+    /**
+     * Returns effective pom from the cache or stores effective pom to file,
+     * adds it to the cache and returns the file.
+     *
+     * @param pomXmlPath        path to pom.xml file that should be processed
+     * @param effectivePomCache effective pom cache or null if effective poms
+     *                          should not be cached
+     * @return path to effective pom
+     */
+    File getEffectivePom(Path pomXmlPath, EffectivePomCache effectivePomCache) {
+        String key = null;
+
+        if (effectivePomCache != null) {
+            key = effectivePomCache.getKey(pomXmlPath);
+
+            if (key == null) {
+                LOG.info("Effective pom for " + pomXmlPath + " cannot be cached");
+            } else {
+                Path cachedPom = effectivePomCache.get(key);
+
+                if (cachedPom != null) {
+                    LOG.info("Using cached effective pom " + cachedPom + " for " + pomXmlPath);
+                    return cachedPom.toFile();
+                }
+            }
+        }
+
         File effectivePom;
 
         try {
@@ -92,50 +204,17 @@ public class MavenParser {
 
         LOG.info("... done");
 
-        return effectivePom;
-    }
-
-    Document parsePOMtoDOMDocument(File effectivePom) {
-        DocumentBuilder documentBuilder = createDocumentBuilder(false);
-        try {
-            Document document = documentBuilder.parse(effectivePom);
-            // optional, but recommended
-            // http://stackoverflow.com/questions/13786607/normalization-in-dom-parsing-with-java-how-does-it-work
-            document.getDocumentElement().normalize();
-
-            return document;
-        } catch (SAXException e) {
-            LOG.error("Parsing error occurred", e);
-            throw new RuntimeException(e);
-        } catch (IOException e) {
-            LOG.error("Input output error occurred", e);
-            throw new RuntimeException(e);
-        }
-    }
-
-    DocumentBuilder createDocumentBuilder(boolean namespaceAware) {
-        DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
-        try {
-            // optional, but recommended - process XML securely, avoid attacks like XML External Entities (XXE)
-            documentBuilderFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
-            documentBuilderFactory.setNamespaceAware(namespaceAware);
-
-            return documentBuilderFactory.newDocumentBuilder();
-        } catch (ParserConfigurationException e) {
-            LOG.error("Could not create XML Document Builder", e);
-            throw new RuntimeException(e);
+        if (key != null && effectivePom.length() > 0) {
+            effectivePomCache.put(key, effectivePom.toPath());
         }
-    }
 
-    Model readMavenProject(Document document) {
-        InputStream mavenProject = xmlUtilities.createInputStream(document);
-        return readMavenProject(mavenProject);
+        return effectivePom;
     }
 
     Model readMavenProject(File file) {
-        try {
-            return readMavenProject(new FileInputStream(file));
-        } catch (FileNotFoundException e) {
+        try (InputStream inputStream = new FileInputStream(file)) {
+            return readMavenProject(inputStream);
+        } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
@@ -152,38 +231,163 @@ public class MavenParser {
 
 
     /**
-     * Parses specified pom.xml files.
+     * Parses specified pom.xml files. The files are processed concurrently using
+     * {@link Config#getJobs()} threads, each of them within
+     * {@link Config#getPomTimeout()} seconds from its start if the timeout is
+     * set. Processing that times out is cancelled and its thread is interrupted,
+     * which also makes maven invoker destroy the maven process it waits for.
+     * Projects are returned in the order of the pom files.
      *
      * @param config     application configuration
      * @param mavenCache maven cache
      * @return list of maven projects
      */
     public List<MavenProject> parsePomFiles(Config config, MavenCache mavenCache) {
-        List<MavenProject> result = new ArrayList<>(config.getPomFiles().size());
+        EffectivePomCache effectivePomCache = config.isEffectivePomCache()
+                ? new EffectivePomCache(config.getEffectivePomCacheDir()) : null;
+        EffectiveModelBuilder effectiveModelBuilder = config.getModelEngine() == ModelEngine.BUILDER
+                ? new EffectiveModelBuilder() : null;
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(config.getJobs(), config.getPomFiles().size())),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "pom-parser");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        ScheduledExecutorService timeoutScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "pom-timeout");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Future<MavenProject>> futures = new ArrayList<>(config.getPomFiles().size());
 
-        config.getPomFiles().stream()
-                .forEach((pomFile) -> {
-                    File effectivePom = getEffectivePom(pomFile);
+        try {
+            for (Path pomFile : config.getPomFiles()) {
+                FutureTask<MavenProject> future = new FutureTask<>(() -> processPomFile(config, mavenCache, pomFile,
+                        effectivePomCache, effectiveModelBuilder));
+
+                executor.submit(() -> {
+                    if (config.getPomTimeout() > 0) {
+                        timeoutScheduler.schedule(() -> future.cancel(true), config.getPomTimeout(),
+                                TimeUnit.SECONDS);
+                    }
 
-                    MavenProject mavenProject = parsePom(mavenCache, pomFile, effectivePom);
+                    future.run();
+                });
 
-                    // TODO: I suppose they should go to "POJO" tests
-                    if (mavenProject.hasTests() && mavenProject.getTestDependencies().isEmpty()) {
-                        mavenProject.addDependency(new MavenDependency("junit", "junit", "4.11", "test", mavenCache.getDependency("junit", "junit", "4.11")));
-                    }
+                futures.add(future);
+            }
 
-                    if (config.hasTestSrcUri()) {
-                        mavenProject.setHasTests(true);
+            List<MavenProject> result = new ArrayList<>(futures.size());
+
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    result.add(futures.get(i).get());
+                } catch (CancellationException e) {
+                    throw new RuntimeException("Processing of " + config.getPomFiles().get(i)
+                            + " timed out after " + config.getPomTimeout() + " seconds", e);
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
                     }
 
-                    if (config.willSkipTests()) {
-                        mavenProject.setHasTests(false);
-                    }
+                    throw new RuntimeException("Processing of " + config.getPomFiles().get(i) + " failed",
+                            e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
 
-                    result.add(mavenProject);
-                });
+                    throw new RuntimeException("Interrupted while processing " + config.getPomFiles().get(i), e);
+                }
+            }
+
+            return result;
+        } finally {
+            timeoutScheduler.shutdownNow();
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Gets effective models of the pom file and its modules, either built
+     * in-process or from effective pom written by maven, collects them to
+     * maven project and resolves its dependencies.
+     *
+     * @param config                application configuration
+     * @param mavenCache            maven cache
+     * @param pomFile               path to pom.xml file
+     * @param effectivePomCache     effective pom cache or null if effective poms
+     *                              should not be cached
+     * @param effectiveModelBuilder in-process model builder or null if maven
+     *                              should be used
+     * @return maven project
+     */
+    MavenProject processPomFile(Config config, MavenCache mavenCache, Path pomFile,
+            EffectivePomCache effectivePomCache, EffectiveModelBuilder effectiveModelBuilder) {
+        MavenProject mavenProject = null;
 
-        return result;
+        if (effectiveModelBuilder != null) {
+            try {
+                List<Model> effectiveModels = effectiveModelBuilder.buildReactor(pomFile);
+                mavenProject = new MavenProject(pomFile);
+
+                for (Model model : effectiveModels) {
+                    parseModel(mavenProject, mavenCache, model);
+                }
+            } catch (RuntimeException e) {
+                LOG.warn("Failed to build effective model in-process, falling back to maven", e);
+                mavenProject = null;
+            }
+        }
+
+        if (mavenProject == null) {
+            File effectivePom = getEffectivePom(pomFile, effectivePomCache);
+            mavenProject = parsePom(mavenCache, pomFile, effectivePom);
+        }
+
+        // TODO: I suppose they should go to "POJO" tests
+        if (mavenProject.hasTests() && mavenProject.getTestDependencies().isEmpty()) {
+            mavenProject.addDependency(new MavenDependency("junit", "junit", "4.11", "test", mavenCache.getDependency("junit", "junit", "4.11")));
+        }
+
+        if (config.hasTestSrcUri()) {
+            mavenProject.setHasTests(true);
+        }
+
+        if (config.willSkipTests()) {
+            mavenProject.setHasTests(false);
+        }
+
+        return mavenProject;
+    }
+
+    /**
+     * Adds dependency resolved from maven cache to the project. Snapshot suffix is removed from the version and
+     * versions that cannot be parsed are mapped to parsable ones.
+     *
+     * @param mavenProject maven project instance
+     * @param mavenCache   maven cache
+     * @param groupId      dependency group id
+     * @param artifactId   dependency artifact id
+     * @param version      dependency version
+     * @param scope        dependency scope
+     */
+    private void addDependency(MavenProject mavenProject, MavenCache mavenCache, String groupId, String artifactId,
+            String version, String scope) {
+        String mappedVersion = version;
+
+        if (mappedVersion != null) {
+            mappedVersion = mappedVersion.replace("-SNAPSHOT", "");
+
+            /* crazy version from
+             * org.khronos:opengl-api:gl1.1-android-2.1_r1 */
+            // TODO: this should go to a file mapping crazy versions
+            if (mappedVersion.equals("gl1.1-android-2.1_r1")) {
+                mappedVersion = "2.1.1";
+            }
+        }
+
+        mavenProject.addDependency(new MavenDependency(groupId, artifactId, mappedVersion, scope,
+                mavenCache.getDependency(groupId, artifactId, mappedVersion)));
     }
 
     /**
@@ -356,6 +560,124 @@ public class MavenParser {
         }
     }
 
+    /**
+     * Collects information from effective model to maven project, the same information as
+     * {@link #parsePom(MavenCache, Path, File)} collects from project of effective pom. Like projects of
+     * effective pom, all models of the reactor are collected to the same maven project.
+     *
+     * @param mavenProject maven project instance
+     * @param mavenCache   maven cache
+     * @param model        effective model
+     */
+    private void parseModel(MavenProject mavenProject, MavenCache mavenCache, Model model) {
+        mavenProject.setGroupId(model.getGroupId());
+        mavenProject.setArtifactId(model.getArtifactId());
+
+        if (model.getVersion() != null) {
+            mavenProject.setVersion(model.getVersion().replace("-SNAPSHOT", ""));
+        }
+
+        if (model.getDescription() != null) {
+            mavenProject.setDescription(model.getDescription());
+        }
+
+        if (model.getUrl() != null) {
+            mavenProject.setHomepage(model.getUrl());
+        }
+
+        if (!model.getLicenses().isEmpty()) {
+            MavenLicenses mavenLicenses = new MavenLicenses();
+
+            for (License license : model.getLicenses()) {
+                if (license.getName() != null) {
+                    mavenProject.addLicense(mavenLicenses.getEquivalentLicense(license.getName()));
+                }
+            }
+        }
+
+        Properties properties = model.getProperties();
+
+        if (properties.getProperty("maven.compiler.source") != null) {
+            mavenProject.setSourceVersion(new JavaVersion(properties.getProperty("maven.compiler.source")));
+        }
+
+        if (properties.getProperty("maven.compiler.target") != null) {
+            mavenProject.setTargetVersion(new JavaVersion(properties.getProperty("maven.compiler.target")));
+        }
+
+        if (properties.getProperty("project.build.sourceEncoding") != null) {
+            mavenProject.setSourceEncoding(properties.getProperty("project.build.sourceEncoding"));
+        }
+
+        for (Dependency dependency : model.getDependencies()) {
+            addDependency(mavenProject, mavenCache, dependency.getGroupId(), dependency.getArtifactId(),
+                    dependency.getVersion(), dependency.getScope() == null ? "compile" : dependency.getScope());
+        }
+
+        Build build = model.getBuild();
+
+        if (build != null) {
+            if (build.getSourceDirectory() != null) {
+                mavenProject.setSourceDirectory(Paths.get(build.getSourceDirectory()));
+            }
+
+            if (build.getTestSourceDirectory() != null) {
+                mavenProject.setTestSourceDirectory(Paths.get(build.getTestSourceDirectory()));
+            }
+
+            for (Resource resource : build.getResources()) {
+                if (resource.getDirectory() != null) {
+                    mavenProject.addResourceDirectory(Paths.get(resource.getDirectory()));
+                }
+            }
+
+            for (Resource resource : build.getTestResources()) {
+                if (resource.getDirectory() != null) {
+                    mavenProject.addTestResourceDirectory(Paths.get(resource.getDirectory()));
+                }
+            }
+
+            for (Plugin plugin : build.getPlugins()) {
+                parseModelPlugin(mavenProject, plugin);
+            }
+        }
+    }
+
+    /**
+     * Collects information from build plugin configuration of effective model.
+     *
+     * @param mavenProject maven project instance
+     * @param plugin       build plugin
+     */
+    private void parseModelPlugin(MavenProject mavenProject, Plugin plugin) {
+        if (!(plugin.getConfiguration() instanceof Xpp3Dom)) {
+            return;
+        }
+
+        Xpp3Dom configuration = (Xpp3Dom) plugin.getConfiguration();
+
+        if ("maven-jar-plugin".equals(plugin.getArtifactId())) {
+            Xpp3Dom archive = configuration.getChild("archive");
+            Xpp3Dom manifest = archive == null ? null : archive.getChild("manifest");
+            Xpp3Dom mainClass = manifest == null ? null : manifest.getChild("mainClass");
+
+            if (mainClass != null) {
+                mavenProject.setMainClass(mainClass.getValue());
+            }
+        } else if ("maven-compiler-plugin".equals(plugin.getArtifactId())) {
+            Xpp3Dom source = configuration.getChild("source");
+            Xpp3Dom target = configuration.getChild("target");
+
+            if (source != null) {
+                mavenProject.setSourceVersion(new JavaVersion(source.getValue()));
+            }
+
+            if (target != null) {
+                mavenProject.setTargetVersion(new JavaVersion(target.getValue()));
+            }
+        }
+    }
+
     /**
      * Parses the pom file and returns maven project instance containing collected information.
      *
@@ -548,20 +870,13 @@ public class MavenParser {
                         scope = reader.getElementText();
                         break;
                     case "version":
-                        version = reader.getElementText().replace("-SNAPSHOT", "");
-
-                        /* crazy version from
-                         * org.khronos:opengl-api:gl1.1-android-2.1_r1 */
-                        // TODO: this should go to a file mapping crazy versions
-                        if (version.equals("gl1.1-android-2.1_r1")) {
-                            version = "2.1.1";
-                        }
+                        version = reader.getElementText();
                         break;
                     default:
                         consumeElement(reader);
                 }
             } else if (reader.isEndElement()) {
-                mavenProject.addDependency(new MavenDependency(groupId, artifactId, version, scope, mavenCache.getDependency(groupId, artifactId, version)));
+                addDependency(mavenProject, mavenCache, groupId, artifactId, version, scope);
 
                 return;
             }
@@ -0,0 +1,20 @@
+package org.gentoo.java.ebuilder.maven;
+
+/**
+ * Engine used to get effective models of pom files.
+ */
+public enum ModelEngine {
+
+    /**
+     * Effective model is built in-process using maven model builder, parents
+     * and imported poms are resolved from local maven repository. Profiles
+     * from maven settings are not applied. If the model cannot be built, maven
+     * engine is used instead.
+     */
+    BUILDER,
+    /**
+     * Effective pom is written by embedded maven build running
+     * help:effective-pom goal and parsed back.
+     */
+    MAVEN
+}
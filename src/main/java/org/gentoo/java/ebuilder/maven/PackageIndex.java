@@ -0,0 +1,85 @@
+package org.gentoo.java.ebuilder.maven;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.gentoo.java.ebuilder.portage.CacheItem;
+
+/**
+ * Reverse index of maven artifacts provided by portage packages. Each package
+ * is indexed both as category/pkg and category/pkg:slot, so both forms are
+ * answered by single hash lookup. Instances are immutable.
+ */
+final class PackageIndex {
+
+    /**
+     * Maven ids (groupId:artifactId:version) by package atom, sorted by group
+     * id, artifact id and maven version.
+     */
+    private final Map<String, List<String>> mavenIds;
+
+    /**
+     * Creates new instance of PackageIndex.
+     *
+     * @param cacheItems cache items, items without maven id are skipped
+     */
+    PackageIndex(final Collection<CacheItem> cacheItems) {
+        final List<CacheItem> sortedItems = new ArrayList<>(cacheItems.size());
+
+        for (final CacheItem cacheItem : cacheItems) {
+            if (cacheItem.getGroupId() != null) {
+                sortedItems.add(cacheItem);
+            }
+        }
+
+        sortedItems.sort((final CacheItem o1, final CacheItem o2) -> {
+            int result = o1.getGroupId().compareTo(o2.getGroupId());
+
+            if (result == 0) {
+                result = o1.getArtifactId().compareTo(o2.getArtifactId());
+            }
+
+            if (result == 0) {
+                result = o1.getParsedMavenVersion().compareTo(
+                        o2.getParsedMavenVersion());
+            }
+
+            return result;
+        });
+
+        final Map<String, Set<String>> packageIds = new HashMap<>(
+                sortedItems.size());
+
+        for (final CacheItem cacheItem : sortedItems) {
+            final String mavenId = cacheItem.getGroupId() + ':'
+                    + cacheItem.getArtifactId() + ':'
+                    + cacheItem.getMavenVersion();
+            final String pkg = cacheItem.getCategory() + '/'
+                    + cacheItem.getPkg();
+
+            packageIds.computeIfAbsent(pkg, key -> new LinkedHashSet<>(10))
+                    .add(mavenId);
+            packageIds.computeIfAbsent(pkg + ':' + cacheItem.getSlot(),
+                    key -> new LinkedHashSet<>(10)).add(mavenId);
+        }
+
+        mavenIds = new HashMap<>(packageIds.size() * 2);
+        packageIds.forEach((pkg, ids) -> mavenIds.put(pkg, List.copyOf(ids)));
+    }
+
+    /**
+     * Returns maven ids provided by the package.
+     *
+     * @param atom category/pkg or category/pkg:slot
+     *
+     * @return immutable list of groupId:artifactId:version, empty if the
+     *         package does not provide any maven artifact
+     */
+    List<String> getMavenIds(final String atom) {
+        return mavenIds.getOrDefault(atom, List.of());
+    }
+}
@@ -0,0 +1,382 @@
+package org.gentoo.java.ebuilder.maven;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.gentoo.java.ebuilder.portage.CacheItem;
+import org.gentoo.java.ebuilder.portage.MavenVersion;
+import org.gentoo.java.ebuilder.portage.MavenVersionRange;
+
+/**
+ * Maven cache packed into primitive arrays. All strings are stored once in
+ * string table and referenced by their ids, versions of all artifacts are
+ * stored as numeric keys in single array where each artifact has its range
+ * sorted by maven version, and artifacts and group ids are found using open
+ * addressing hash tables. Instances are immutable and can be shared between
+ * threads.
+ * <p>
+ * Each version has two longs in the key array next to each other, so that
+ * the binary search touches as few cache lines as possible: major and minor
+ * component as combined by {@link ArtifactVersions#getMajorMinor(MavenVersion)}
+ * and incremental component in the upper 32 bits with qualifier key in the
+ * lower 32 bits. Qualifier key is based on the position of the qualifier in
+ * sorted table of all qualifiers, so the keys sort the same way as the
+ * versions.
+ */
+final class PackedCache implements SortedVersions {
+
+    /**
+     * Artifact number returned if group id was not found.
+     */
+    static final int GROUP_ID_NOT_FOUND = -1;
+    /**
+     * Artifact number returned if artifact id was not found.
+     */
+    static final int ARTIFACT_ID_NOT_FOUND = -2;
+    /**
+     * String ids of group ids of the artifacts.
+     */
+    private final int[] artifactGroupIds;
+    /**
+     * Hashes of the artifacts, compared before the strings are compared.
+     */
+    private final int[] artifactHashes;
+    /**
+     * String ids of artifact ids of the artifacts.
+     */
+    private final int[] artifactIds;
+    /**
+     * Hash table of artifacts, contains artifact number plus one, zero for
+     * empty slot.
+     */
+    private final int[] artifactTable;
+    /**
+     * String ids of dependency strings of the versions.
+     */
+    private final int[] dependencies;
+    /**
+     * Hash table of group ids, contains string id plus one, zero for empty
+     * slot.
+     */
+    private final int[] groupIdTable;
+    /**
+     * Sorted table of distinct qualifiers of the versions.
+     */
+    private final String[] qualifiers;
+    /**
+     * String ids of slots of the versions.
+     */
+    private final int[] slots;
+    /**
+     * String table.
+     */
+    private final String[] strings;
+    /**
+     * Position of the first version of the artifacts, with extra item at the
+     * end containing number of versions.
+     */
+    private final int[] versionStarts;
+    /**
+     * Keys of the versions, two longs per version.
+     */
+    private final long[] versionKeys;
+
+    /**
+     * Creates new instance of PackedCache.
+     *
+     * @param cacheItems cache items by group id and artifact id
+     */
+    PackedCache(final Map<String, Map<String, List<CacheItem>>> cacheItems) {
+        int artifactCount = 0;
+        int versionCount = 0;
+
+        for (final Map<String, List<CacheItem>> groupItems
+                : cacheItems.values()) {
+            artifactCount += groupItems.size();
+
+            for (final List<CacheItem> items : groupItems.values()) {
+                versionCount += items.size();
+            }
+        }
+
+        artifactGroupIds = new int[artifactCount];
+        artifactHashes = new int[artifactCount];
+        artifactIds = new int[artifactCount];
+        artifactTable = new int[getTableSize(artifactCount)];
+        groupIdTable = new int[getTableSize(cacheItems.size())];
+        versionStarts = new int[artifactCount + 1];
+        dependencies = new int[versionCount];
+        slots = new int[versionCount];
+        versionKeys = new long[versionCount * 2];
+        qualifiers = cacheItems.values().stream()
+                .flatMap(groupItems -> groupItems.values().stream())
+                .flatMap(List::stream)
+                .map(cacheItem
+                        -> cacheItem.getParsedMavenVersion().getQualifier())
+                .distinct()
+                .sorted()
+                .toArray(String[]::new);
+
+        final Map<String, Integer> stringIds = new HashMap<>(
+                (artifactCount + versionCount) * 2);
+        final List<String> stringList = new ArrayList<>(
+                artifactCount + versionCount);
+        int artifact = 0;
+        int version = 0;
+
+        for (final Map.Entry<String, Map<String, List<CacheItem>>> group
+                : cacheItems.entrySet()) {
+            final int groupId = getStringId(stringIds, stringList,
+                    group.getKey());
+            insert(groupIdTable, mix(group.getKey().hashCode()), groupId);
+
+            for (final Map.Entry<String, List<CacheItem>> artifactItems
+                    : group.getValue().entrySet()) {
+                final List<CacheItem> items
+                        = new ArrayList<>(artifactItems.getValue());
+                items.sort((final CacheItem o1, final CacheItem o2) -> {
+                    return o1.getParsedMavenVersion().compareTo(
+                            o2.getParsedMavenVersion());
+                });
+
+                artifactGroupIds[artifact] = groupId;
+                artifactHashes[artifact]
+                        = hash(group.getKey(), artifactItems.getKey());
+                artifactIds[artifact] = getStringId(stringIds, stringList,
+                        artifactItems.getKey());
+                insert(artifactTable, artifactHashes[artifact], artifact);
+                versionStarts[artifact] = version;
+
+                for (final CacheItem cacheItem : items) {
+                    final MavenVersion mavenVersion
+                            = cacheItem.getParsedMavenVersion();
+
+                    dependencies[version] = getStringId(stringIds, stringList,
+                            ArtifactVersions.createDependency(cacheItem));
+                    slots[version] = cacheItem.getSlot() == null
+                            ? -1 : getStringId(stringIds, stringList,
+                                    cacheItem.getSlot());
+                    versionKeys[version * 2]
+                            = ArtifactVersions.getMajorMinor(mavenVersion);
+                    versionKeys[version * 2 + 1]
+                            = getIncrementalQualifier(mavenVersion);
+                    version++;
+                }
+
+                artifact++;
+            }
+        }
+
+        versionStarts[artifactCount] = versionCount;
+        strings = stringList.toArray(String[]::new);
+    }
+
+    /**
+     * Searches for the artifact.
+     *
+     * @param groupId    maven group id
+     * @param artifactId maven artifact id
+     *
+     * @return artifact number, {@link #GROUP_ID_NOT_FOUND} or
+     *         {@link #ARTIFACT_ID_NOT_FOUND}
+     */
+    int findArtifact(final String groupId, final String artifactId) {
+        final int mask = artifactTable.length - 1;
+        final int hash = hash(groupId, artifactId);
+
+        for (int slot = hash & mask; artifactTable[slot] != 0;
+                slot = (slot + 1) & mask) {
+            final int artifact = artifactTable[slot] - 1;
+
+            if (artifactHashes[artifact] == hash
+                    && strings[artifactIds[artifact]].equals(artifactId)
+                    && strings[artifactGroupIds[artifact]].equals(groupId)) {
+                return artifact;
+            }
+        }
+
+        return containsGroupId(groupId)
+                ? ARTIFACT_ID_NOT_FOUND : GROUP_ID_NOT_FOUND;
+    }
+
+    /**
+     * Returns dependency string of the best version of the artifact within
+     * the range.
+     *
+     * @param artifact artifact number
+     * @param range    version range
+     *
+     * @return dependency string or null if no version is within the range
+     *
+     * @see SortedVersions#getDependency(int, int, MavenVersionRange)
+     */
+    String getDependency(final int artifact, final MavenVersionRange range) {
+        return getDependency(versionStarts[artifact],
+                versionStarts[artifact + 1], range);
+    }
+
+    @Override
+    public String getDependency(final int position) {
+        return strings[dependencies[position]];
+    }
+
+    @Override
+    public String getSlot(final int position) {
+        return slots[position] == -1 ? null : strings[slots[position]];
+    }
+
+    @Override
+    public int search(final int start, final int end,
+            final MavenVersion mavenVersion, final boolean strict) {
+        final long majorMinor = ArtifactVersions.getMajorMinor(mavenVersion);
+        final long incrementalQualifier
+                = getIncrementalQualifier(mavenVersion);
+        int low = start;
+        int high = end;
+
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            int result = Long.compare(versionKeys[mid * 2], majorMinor);
+
+            if (result == 0) {
+                result = Long.compare(versionKeys[mid * 2 + 1],
+                        incrementalQualifier);
+            }
+
+            if (result < 0 || result == 0 && strict) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Checks whether there is any artifact with specified group id.
+     *
+     * @param groupId maven group id
+     *
+     * @return true if the group id was found, otherwise false
+     */
+    private boolean containsGroupId(final String groupId) {
+        final int mask = groupIdTable.length - 1;
+
+        for (int slot = mix(groupId.hashCode()) & mask;
+                groupIdTable[slot] != 0; slot = (slot + 1) & mask) {
+            if (strings[groupIdTable[slot] - 1].equals(groupId)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Combines incremental component and qualifier of the version into single
+     * value. Qualifier that is in the qualifier table gets odd key, qualifier
+     * that is not gets even key between the keys of its neighbours.
+     *
+     * @param mavenVersion maven version
+     *
+     * @return combined incremental component and qualifier key
+     */
+    private long getIncrementalQualifier(final MavenVersion mavenVersion) {
+        final int qualifierKey;
+
+        if (mavenVersion.getQualifier().isEmpty()) {
+            qualifierKey = qualifiers.length > 0 && qualifiers[0].isEmpty()
+                    ? 1 : 0;
+        } else {
+            final int pos = Arrays.binarySearch(qualifiers,
+                    mavenVersion.getQualifier());
+            qualifierKey = pos >= 0 ? pos * 2 + 1 : -(pos + 1) * 2;
+        }
+
+        return ((long) mavenVersion.getIncrementalVersion() << 32)
+                | qualifierKey;
+    }
+
+    /**
+     * Returns id of the string, adding it to the string table if needed.
+     *
+     * @param stringIds  map of strings and their ids
+     * @param stringList string table
+     * @param string     string
+     *
+     * @return string id
+     */
+    private static int getStringId(final Map<String, Integer> stringIds,
+            final List<String> stringList, final String string) {
+        Integer id = stringIds.get(string);
+
+        if (id == null) {
+            id = stringList.size();
+            stringList.add(string);
+            stringIds.put(string, id);
+        }
+
+        return id;
+    }
+
+    /**
+     * Returns size of hash table for specified number of values, which is
+     * power of two with at most half of the slots used.
+     *
+     * @param count number of values
+     *
+     * @return table size
+     */
+    private static int getTableSize(final int count) {
+        return Integer.highestOneBit(Math.max(count, 1) * 2 - 1) << 1;
+    }
+
+    /**
+     * Computes hash of artifact.
+     *
+     * @param groupId    maven group id
+     * @param artifactId maven artifact id
+     *
+     * @return hash
+     */
+    private static int hash(final String groupId, final String artifactId) {
+        return mix(groupId.hashCode() * 31 + artifactId.hashCode());
+    }
+
+    /**
+     * Inserts value into hash table using linear probing.
+     *
+     * @param table hash table
+     * @param hash  mixed hash of the value
+     * @param value value, it is stored as value plus one
+     */
+    private static void insert(final int[] table, final int hash,
+            final int value) {
+        final int mask = table.length - 1;
+        int slot = hash & mask;
+
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+
+        table[slot] = value + 1;
+    }
+
+    /**
+     * Spreads higher bits of the hash to lower bits that are used for slot
+     * selection.
+     *
+     * @param hash hash
+     *
+     * @return mixed hash
+     */
+    private static int mix(final int hash) {
+        int result = (hash ^ (hash >>> 16)) * 0x85EBCA6B;
+        result = (result ^ (result >>> 13)) * 0xC2B2AE35;
+
+        return result ^ (result >>> 16);
+    }
+}
@@ -0,0 +1,114 @@
+package org.gentoo.java.ebuilder.maven;
+
+/**
+ * Result of resolving maven artifact into portage dependency.
+ */
+public final class Resolution {
+
+    /**
+     * Resolution of artifact whose group id was not found.
+     */
+    static final Resolution GROUP_ID_NOT_FOUND
+            = new Resolution(ResolutionStatus.GROUP_ID_NOT_FOUND, null);
+    /**
+     * Resolution of artifact whose artifact id was not found.
+     */
+    static final Resolution ARTIFACT_ID_NOT_FOUND
+            = new Resolution(ResolutionStatus.ARTIFACT_ID_NOT_FOUND, null);
+    /**
+     * Resolution of artifact without suitable version.
+     */
+    static final Resolution VERSION_NOT_FOUND
+            = new Resolution(ResolutionStatus.VERSION_NOT_FOUND, null);
+    /**
+     * Resolution of coordinates that could not be parsed.
+     */
+    static final Resolution INVALID_COORDINATES
+            = new Resolution(ResolutionStatus.INVALID_COORDINATES, null);
+    /**
+     * Resolution of coordinates with version that could not be parsed.
+     */
+    static final Resolution INVALID_VERSION
+            = new Resolution(ResolutionStatus.INVALID_VERSION, null);
+    /**
+     * Dependency string or null if the artifact was not resolved.
+     */
+    private final String dependency;
+    /**
+     * Resolution status.
+     */
+    private final ResolutionStatus status;
+
+    /**
+     * Creates new instance of Resolution.
+     *
+     * @param status     {@link #status}
+     * @param dependency {@link #dependency}
+     */
+    private Resolution(final ResolutionStatus status,
+            final String dependency) {
+        this.status = status;
+        this.dependency = dependency;
+    }
+
+    /**
+     * Creates resolution of resolved artifact.
+     *
+     * @param dependency dependency string
+     *
+     * @return resolution
+     */
+    static Resolution resolved(final String dependency) {
+        return new Resolution(ResolutionStatus.RESOLVED, dependency);
+    }
+
+    /**
+     * Creates resolution from dependency string or placeholder of the status
+     * as returned by {@link #toDependencyString()}.
+     *
+     * @param dependencyString dependency string or placeholder
+     *
+     * @return resolution
+     */
+    static Resolution valueOf(final String dependencyString) {
+        if (dependencyString.equals(GROUP_ID_NOT_FOUND.toDependencyString())) {
+            return GROUP_ID_NOT_FOUND;
+        } else if (dependencyString.equals(
+                ARTIFACT_ID_NOT_FOUND.toDependencyString())) {
+            return ARTIFACT_ID_NOT_FOUND;
+        } else if (dependencyString.equals(
+                VERSION_NOT_FOUND.toDependencyString())) {
+            return VERSION_NOT_FOUND;
+        }
+
+        return resolved(dependencyString);
+    }
+
+    /**
+     * Getter for {@link #dependency}.
+     *
+     * @return {@link #dependency}
+     */
+    public String getDependency() {
+        return dependency;
+    }
+
+    /**
+     * Getter for {@link #status}.
+     *
+     * @return {@link #status}
+     */
+    public ResolutionStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * Returns dependency string that is put to the ebuild, which is either
+     * the dependency or placeholder of the status.
+     *
+     * @return dependency string
+     */
+    public String toDependencyString() {
+        return dependency == null ? status.getPlaceholder() : dependency;
+    }
+}
@@ -0,0 +1,17 @@
+package org.gentoo.java.ebuilder.maven;
+
+/**
+ * Output format of batch resolution.
+ */
+public enum ResolutionFormat {
+
+    /**
+     * One JSON object per line with coordinates, status and dependency keys.
+     */
+    JSON,
+    /**
+     * One line per coordinates with tab separated coordinates, status and
+     * dependency.
+     */
+    TSV
+}
@@ -0,0 +1,241 @@
+package org.gentoo.java.ebuilder.maven;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Memo of resolved dependencies that is kept between runs, so that
+ * dependencies resolved by previous runs do not need the cache to be loaded.
+ * The first line of the file contains memo version, size, modification time
+ * and SHA-256 hash of the cache file the results come from, every other line
+ * contains tab separated group id, artifact id, version and the result. New
+ * results are appended to the file as they are resolved. If the cache file
+ * changes, the memo is discarded.
+ */
+final class ResolutionMemo {
+
+    /**
+     * Memo file format version.
+     */
+    private static final String MEMO_VERSION = "2";
+    /**
+     * Memo file path.
+     */
+    private final Path memoFile;
+    /**
+     * Results by group id, artifact id and version.
+     */
+    private final Map<String, String> results;
+
+    /**
+     * Creates new instance of ResolutionMemo.
+     *
+     * @param memoFile {@link #memoFile}
+     * @param results  {@link #results}
+     */
+    private ResolutionMemo(final Path memoFile,
+            final Map<String, String> results) {
+        this.memoFile = memoFile;
+        this.results = results;
+    }
+
+    /**
+     * Opens memo for specified cache file. If the memo does not exist or it
+     * was created for different content of the cache file, new empty memo is
+     * created. Memo with incomplete last line, left by interrupted run, is
+     * rewritten so that new results are not appended to that line.
+     *
+     * @param memoFile  memo file path
+     * @param cacheFile cache file path
+     *
+     * @return memo
+     */
+    static ResolutionMemo open(final Path memoFile, final Path cacheFile) {
+        final Map<String, String> results = new ConcurrentHashMap<>(100);
+
+        try {
+            final long size = Files.size(cacheFile);
+            final long lastModified
+                    = Files.getLastModifiedTime(cacheFile).toMillis();
+            final String content = Files.exists(memoFile) ? new String(
+                    Files.readAllBytes(memoFile), StandardCharsets.UTF_8) : "";
+            final int headerEnd = content.indexOf('\n');
+            final String[] header = headerEnd == -1 ? new String[0]
+                    : content.substring(0, headerEnd).split(":");
+            final String hash;
+
+            if (header.length == 4 && MEMO_VERSION.equals(header[0])
+                    && Long.toString(size).equals(header[1])
+                    && Long.toString(lastModified).equals(header[2])) {
+                hash = null;
+            } else {
+                hash = getHash(cacheFile);
+            }
+
+            if (hash == null || header.length == 4
+                    && MEMO_VERSION.equals(header[0])
+                    && hash.equals(header[3])) {
+                readResults(content, headerEnd + 1, results);
+            }
+
+            if (hash != null || !content.endsWith("\n")) {
+                write(memoFile, MEMO_VERSION + ':' + size + ':' + lastModified
+                        + ':' + (hash == null ? header[3] : hash) + '\n',
+                        results);
+            }
+        } catch (final IOException ex) {
+            throw new RuntimeException("Failed to read resolution memo "
+                    + memoFile, ex);
+        }
+
+        return new ResolutionMemo(memoFile, results);
+    }
+
+    /**
+     * Returns result from the memo.
+     *
+     * @param groupId    maven group id
+     * @param artifactId maven artifact id
+     * @param version    maven version
+     *
+     * @return result or null if the dependency is not in the memo
+     */
+    String get(final String groupId, final String artifactId,
+            final String version) {
+        return results.get(getKey(groupId, artifactId, version));
+    }
+
+    /**
+     * Adds result to the memo and appends it to the memo file.
+     *
+     * @param groupId    maven group id
+     * @param artifactId maven artifact id
+     * @param version    maven version
+     * @param result     result
+     */
+    void put(final String groupId, final String artifactId,
+            final String version, final String result) {
+        final String key = getKey(groupId, artifactId, version);
+
+        if (results.putIfAbsent(key, result) != null) {
+            return;
+        }
+
+        try {
+            Files.write(memoFile,
+                    (key + '\t' + result + '\n').getBytes(
+                            StandardCharsets.UTF_8),
+                    StandardOpenOption.APPEND);
+        } catch (final IOException ex) {
+            throw new RuntimeException("Failed to write resolution memo "
+                    + memoFile, ex);
+        }
+    }
+
+    /**
+     * Computes SHA-256 hash of the file.
+     *
+     * @param file file path
+     *
+     * @return hex encoded hash
+     *
+     * @throws IOException Thrown if problem occurred while reading the file.
+     */
+    private static String getHash(final Path file) throws IOException {
+        final MessageDigest digest;
+
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException ex) {
+            throw new RuntimeException("SHA-256 is not supported", ex);
+        }
+
+        try (final InputStream inputStream
+                = new DigestInputStream(Files.newInputStream(file), digest)) {
+            inputStream.transferTo(OutputStream.nullOutputStream());
+        }
+
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Returns key of the dependency.
+     *
+     * @param groupId    maven group id
+     * @param artifactId maven artifact id
+     * @param version    maven version
+     *
+     * @return key
+     */
+    private static String getKey(final String groupId,
+            final String artifactId, final String version) {
+        return groupId + '\t' + artifactId + '\t' + version;
+    }
+
+    /**
+     * Reads results from the memo file content. Incomplete last line is
+     * ignored.
+     *
+     * @param content memo file content
+     * @param start   position of the first result line
+     * @param results map to store the results to
+     */
+    private static void readResults(final String content, final int start,
+            final Map<String, String> results) {
+        int pos = start;
+        int end = content.indexOf('\n', pos);
+
+        while (end != -1) {
+            final int separator = content.lastIndexOf('\t', end);
+
+            if (separator > pos) {
+                results.putIfAbsent(content.substring(pos, separator),
+                        content.substring(separator + 1, end));
+            }
+
+            pos = end + 1;
+            end = content.indexOf('\n', pos);
+        }
+    }
+
+    /**
+     * Writes new memo file.
+     *
+     * @param memoFile memo file path
+     * @param header   header line
+     * @param results  results to write
+     *
+     * @throws IOException Thrown if problem occurred while writing the file.
+     */
+    private static void write(final Path memoFile, final String header,
+            final Map<String, String> results) throws IOException {
+        final StringBuilder sbContent = new StringBuilder(
+                header.length() + results.size() * 100);
+        sbContent.append(header);
+
+        results.forEach((key, result) -> {
+            sbContent.append(key);
+            sbContent.append('\t');
+            sbContent.append(result);
+            sbContent.append('\n');
+        });
+
+        final Path tmpFile = Files.createTempFile(memoFile.getParent(),
+                memoFile.getFileName().toString(), ".tmp");
+        Files.writeString(tmpFile, sbContent, StandardCharsets.UTF_8);
+        Files.move(tmpFile, memoFile, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+}
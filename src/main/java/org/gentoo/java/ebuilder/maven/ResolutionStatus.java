@@ -0,0 +1,57 @@
+package org.gentoo.java.ebuilder.maven;
+
+/**
+ * Status of resolving maven artifact into portage dependency.
+ */
+public enum ResolutionStatus {
+
+    /**
+     * Suitable ebuild was found.
+     */
+    RESOLVED(null),
+    /**
+     * There is no ebuild with the group id.
+     */
+    GROUP_ID_NOT_FOUND("!!!groupId-not-found!!!"),
+    /**
+     * There is no ebuild with the group id and artifact id.
+     */
+    ARTIFACT_ID_NOT_FOUND("!!!artifactId-not-found!!!"),
+    /**
+     * There is no ebuild of the artifact with the same or greater version.
+     */
+    VERSION_NOT_FOUND("!!!suitable-mavenVersion-not-found!!!"),
+    /**
+     * Coordinates could not be parsed, the artifact was not looked up.
+     */
+    INVALID_COORDINATES(null),
+    /**
+     * Version is not a valid maven version or version range, for example
+     * LATEST or unresolved property, the artifact was not looked up.
+     */
+    INVALID_VERSION(null);
+
+    /**
+     * String that is put to the ebuild in place of the dependency, or null if
+     * there is no such string.
+     */
+    private final String placeholder;
+
+    /**
+     * Creates new instance of ResolutionStatus.
+     *
+     * @param placeholder {@link #placeholder}
+     */
+    ResolutionStatus(final String placeholder) {
+        this.placeholder = placeholder;
+    }
+
+    /**
+     * Getter for {@link #placeholder}.
+     *
+     * @return {@link #placeholder}
+     */
+    public String getPlaceholder() {
+        return placeholder;
+    }
+}
@@ -0,0 +1,93 @@
+package org.gentoo.java.ebuilder.maven;
+
+import java.util.Objects;
+import org.gentoo.java.ebuilder.portage.MavenVersion;
+import org.gentoo.java.ebuilder.portage.MavenVersionRange;
+
+/**
+ * Versions of maven artifacts sorted by maven version, addressed by their
+ * positions. Version ranges are resolved using two binary searches per range
+ * that find the interval of matching positions.
+ */
+interface SortedVersions {
+
+    /**
+     * Returns dependency string of the version.
+     *
+     * @param position position of the version
+     *
+     * @return dependency string
+     */
+    String getDependency(int position);
+
+    /**
+     * Returns slot of the version.
+     *
+     * @param position position of the version
+     *
+     * @return slot or null if the version has no slot
+     */
+    String getSlot(int position);
+
+    /**
+     * Searches for the first version that is greater than or equal to, or
+     * strictly greater than, specified version.
+     *
+     * @param start        position of the first version
+     * @param end          position after the last version
+     * @param mavenVersion maven version
+     * @param strict       whether the version must be strictly greater
+     *
+     * @return position of the found version or end if there is no such
+     *         version
+     */
+    int search(int start, int end, MavenVersion mavenVersion, boolean strict);
+
+    /**
+     * Returns dependency string of the best version within the range. For soft
+     * requirement it is the first version that is the same or greater than the
+     * requirement. For ranges it is the highest version within the ranges, but
+     * the dependency is on the lowest version within the same range that has
+     * the same slot, so that the dependency allows all matching versions of
+     * that slot.
+     *
+     * @param start position of the first version
+     * @param end   position after the last version
+     * @param range version range
+     *
+     * @return dependency string or null if no version is within the range
+     */
+    default String getDependency(final int start, final int end,
+            final MavenVersionRange range) {
+        for (int i = range.getRestrictions().size() - 1; i >= 0; i--) {
+            final MavenVersionRange.Restriction restriction
+                    = range.getRestrictions().get(i);
+            final int low = restriction.getLowerBound() == null ? start
+                    : search(start, end, restriction.getLowerBound(),
+                            !restriction.isLowerBoundInclusive());
+
+            if (low == end) {
+                continue;
+            } else if (range.isSoft()) {
+                return getDependency(low);
+            }
+
+            final int high = restriction.getUpperBound() == null ? end
+                    : search(low, end, restriction.getUpperBound(),
+                            restriction.isUpperBoundInclusive());
+
+            if (low < high) {
+                final String slot = getSlot(high - 1);
+                int best = low;
+
+                while (!Objects.equals(slot, getSlot(best))) {
+                    best++;
+                }
+
+                return getDependency(best);
+            }
+        }
+
+        return null;
+    }
+}
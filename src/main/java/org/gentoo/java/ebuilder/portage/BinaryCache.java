@@ -0,0 +1,443 @@
+package org.gentoo.java.ebuilder.portage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reader of binary cache file. The file is memory-mapped and strings and cache
+ * items are only materialized when they are accessed, so opening the cache
+ * costs the same regardless of its size. Instances are thread-safe. The file
+ * starts with a header followed by fixed-width records, a string table and
+ * maven artifact index. All numbers are big-endian.
+ * <p>
+ * Header:
+ * <pre>
+ * int   magic ("JEBC")
+ * short major format version
+ * short minor format version
+ * int   number of records
+ * int   number of strings
+ * long  offset of string table
+ * long  offset of artifact index (since 2.1), 0 if there is no index
+ * </pre>
+ * Record is a sequence of ints: ids of category, package, version, slot, USE
+ * flag, groupId, artifactId, maven version and comma separated list of java
+ * eclasses in the string table, followed by major, minor and incremental
+ * component of maven version and id of its qualifier. Missing values have id
+ * -1. Records are sorted the same way as lines of text cache file.
+ * <p>
+ * String table contains number of strings plus one int offsets of UTF-8
+ * encoded strings relative to the end of the offsets, followed by the string
+ * bytes. Every string is stored only once.
+ * <p>
+ * Artifact index contains number of distinct groupId and artifactId pairs,
+ * followed by entries of four ints: ids of groupId and artifactId, position of
+ * the first record number of the artifact in the record list and count of the
+ * record numbers. Entries are sorted by UTF-8 bytes of groupId and artifactId.
+ * The record list follows the entries and contains record numbers of each
+ * artifact sorted by maven version.
+ */
+public final class BinaryCache {
+
+    /**
+     * Magic number at the start of the file ("JEBC").
+     */
+    static final int MAGIC = 0x4A454243;
+    /**
+     * Major format version. Readers do not read files of different major
+     * version.
+     */
+    static final short VERSION_MAJOR = 2;
+    /**
+     * Minor format version. Minor versions only add data that older readers
+     * can ignore.
+     */
+    static final short VERSION_MINOR = 1;
+    /**
+     * Size of the header.
+     */
+    static final int HEADER_SIZE = 32;
+    /**
+     * Number of ints in record.
+     */
+    static final int RECORD_INTS = 13;
+    /**
+     * Size of record.
+     */
+    static final int RECORD_SIZE = RECORD_INTS * 4;
+    /**
+     * Number of ints in artifact index entry.
+     */
+    static final int INDEX_ENTRY_INTS = 4;
+    /**
+     * Id of missing string.
+     */
+    static final int NO_STRING = -1;
+    /**
+     * Mapped cache file.
+     */
+    private final ByteBuffer buffer;
+    /**
+     * Lists of java eclasses indexed by string id, materialized on first
+     * access.
+     */
+    private final List<String>[] eclassLists;
+    /**
+     * Number of artifact index entries.
+     */
+    private final int indexCount;
+    /**
+     * Offset of the first artifact index entry.
+     */
+    private final int indexOffset;
+    /**
+     * Cache items of the artifacts that were already looked up.
+     */
+    private final Map<String, List<CacheItem>> items
+            = new ConcurrentHashMap<>(100);
+    /**
+     * Number of records.
+     */
+    private final int recordCount;
+    /**
+     * Offset of string bytes.
+     */
+    private final int stringDataOffset;
+    /**
+     * Offset of string offsets.
+     */
+    private final int stringTableOffset;
+    /**
+     * Strings indexed by their ids, materialized on first access.
+     */
+    private final String[] strings;
+
+    /**
+     * Creates new instance of BinaryCache.
+     *
+     * @param file   cache file path
+     * @param buffer file buffer
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private BinaryCache(final Path file, final ByteBuffer buffer) {
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new RuntimeException("File " + file
+                    + " is not a binary cache file");
+        } else if (buffer.getShort(4) != VERSION_MAJOR) {
+            throw new RuntimeException("Unsupported version "
+                    + buffer.getShort(4) + " of binary cache file " + file);
+        }
+
+        this.buffer = buffer;
+        recordCount = buffer.getInt(8);
+        strings = new String[buffer.getInt(12)];
+        eclassLists = new List[strings.length];
+        stringTableOffset = (int) buffer.getLong(16);
+        stringDataOffset = stringTableOffset + (strings.length + 1) * 4;
+
+        final long index = buffer.getShort(6) > 0 ? buffer.getLong(24) : 0;
+
+        if (index == 0) {
+            indexCount = 0;
+            indexOffset = 0;
+        } else {
+            indexCount = buffer.getInt((int) index);
+            indexOffset = (int) index + 4;
+        }
+    }
+
+    /**
+     * Checks whether the file is a binary cache file.
+     *
+     * @param file cache file path
+     *
+     * @return true if the file starts with binary cache magic number,
+     *         otherwise false
+     */
+    public static boolean isBinaryCache(final Path file) {
+        try (final InputStream inputStream = Files.newInputStream(file)) {
+            final byte[] magic = new byte[4];
+
+            return inputStream.readNBytes(magic, 0, 4) == 4
+                    && ByteBuffer.wrap(magic).getInt() == MAGIC;
+        } catch (final IOException ex) {
+            throw new RuntimeException("Failed to read cache file " + file,
+                    ex);
+        }
+    }
+
+    /**
+     * Memory-maps the binary cache file.
+     *
+     * @param file cache file path
+     *
+     * @return binary cache
+     */
+    public static BinaryCache open(final Path file) {
+        try (final FileChannel channel
+                = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new BinaryCache(file,
+                    channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                            channel.size()));
+        } catch (final IOException ex) {
+            throw new RuntimeException("Failed to read cache file " + file,
+                    ex);
+        }
+    }
+
+    /**
+     * Reads all cache items from the binary cache file.
+     *
+     * @param file cache file path
+     *
+     * @return list of cache items in the order of the file
+     */
+    public static List<CacheItem> read(final Path file) {
+        return open(file).getCacheItems();
+    }
+
+    /**
+     * Checks whether the file contains artifact index. Only files with artifact
+     * index support looking up the artifacts.
+     *
+     * @return true if the file contains artifact index, otherwise false
+     */
+    public boolean hasIndex() {
+        return indexOffset != 0;
+    }
+
+    /**
+     * Checks whether there is any artifact with specified groupId.
+     *
+     * @param groupId maven group id
+     *
+     * @return true if the groupId was found, otherwise false
+     */
+    public boolean containsGroupId(final String groupId) {
+        final byte[] groupIdBytes = groupId.getBytes(StandardCharsets.UTF_8);
+        final int pos = findIndexEntry(groupIdBytes, null);
+
+        return pos < indexCount && compareString(
+                getIndexInt(pos, 0), groupIdBytes) == 0;
+    }
+
+    /**
+     * Returns cache items of specified artifact.
+     *
+     * @param groupId    maven group id
+     * @param artifactId maven artifact id
+     *
+     * @return immutable list of cache items sorted by maven version or null if
+     *         the artifact was not found
+     */
+    public List<CacheItem> getCacheItems(final String groupId,
+            final String artifactId) {
+        final String key = groupId + ':' + artifactId;
+        final List<CacheItem> cached = items.get(key);
+
+        if (cached != null) {
+            return cached;
+        }
+
+        final byte[] groupIdBytes = groupId.getBytes(StandardCharsets.UTF_8);
+        final byte[] artifactIdBytes
+                = artifactId.getBytes(StandardCharsets.UTF_8);
+        final int pos = findIndexEntry(groupIdBytes, artifactIdBytes);
+
+        if (pos == indexCount
+                || compareString(getIndexInt(pos, 0), groupIdBytes) != 0
+                || compareString(getIndexInt(pos, 1), artifactIdBytes) != 0) {
+            return null;
+        }
+
+        final int recordListOffset = indexOffset
+                + indexCount * INDEX_ENTRY_INTS * 4;
+        final int first = getIndexInt(pos, 2);
+        final int count = getIndexInt(pos, 3);
+        final List<CacheItem> result = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            result.add(getCacheItem(
+                    buffer.getInt(recordListOffset + (first + i) * 4)));
+        }
+
+        final List<CacheItem> previous = items.putIfAbsent(key,
+                Collections.unmodifiableList(result));
+
+        return previous == null ? items.get(key) : previous;
+    }
+
+    /**
+     * Returns all cache items.
+     *
+     * @return list of cache items in the order of the file
+     */
+    public List<CacheItem> getCacheItems() {
+        final List<CacheItem> result = new ArrayList<>(recordCount);
+
+        for (int i = 0; i < recordCount; i++) {
+            result.add(getCacheItem(i));
+        }
+
+        return result;
+    }
+
+    /**
+     * Creates cache item from the record.
+     *
+     * @param record record number
+     *
+     * @return cache item
+     */
+    private CacheItem getCacheItem(final int record) {
+        final int pos = HEADER_SIZE + record * RECORD_SIZE;
+        final String mavenVersion = getString(buffer.getInt(pos + 7 * 4));
+        final int eclassesId = buffer.getInt(pos + 8 * 4);
+
+        return new CacheItem(getString(buffer.getInt(pos)),
+                getString(buffer.getInt(pos + 4)),
+                getString(buffer.getInt(pos + 2 * 4)),
+                getString(buffer.getInt(pos + 3 * 4)),
+                getString(buffer.getInt(pos + 4 * 4)),
+                getString(buffer.getInt(pos + 5 * 4)),
+                getString(buffer.getInt(pos + 6 * 4)), mavenVersion,
+                mavenVersion == null ? null : new MavenVersion(mavenVersion,
+                        buffer.getInt(pos + 9 * 4),
+                        buffer.getInt(pos + 10 * 4),
+                        buffer.getInt(pos + 11 * 4),
+                        getString(buffer.getInt(pos + 12 * 4))),
+                eclassesId == NO_STRING ? null : getEclasses(eclassesId));
+    }
+
+    /**
+     * Returns list of java eclasses stored in the string.
+     *
+     * @param id string id
+     *
+     * @return immutable list of java eclasses
+     */
+    private List<String> getEclasses(final int id) {
+        List<String> result = eclassLists[id];
+
+        if (result == null) {
+            result = Collections.unmodifiableList(
+                    Arrays.asList(getString(id).split(",")));
+            eclassLists[id] = result;
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns int from artifact index entry.
+     *
+     * @param entry entry number
+     * @param field number of the int in the entry
+     *
+     * @return int value
+     */
+    private int getIndexInt(final int entry, final int field) {
+        return buffer.getInt(
+                indexOffset + (entry * INDEX_ENTRY_INTS + field) * 4);
+    }
+
+    /**
+     * Returns string from the string table.
+     *
+     * @param id string id
+     *
+     * @return string or null if the id is {@link #NO_STRING}
+     */
+    private String getString(final int id) {
+        if (id == NO_STRING) {
+            return null;
+        }
+
+        String result = strings[id];
+
+        if (result == null) {
+            final int start = buffer.getInt(stringTableOffset + id * 4);
+            final byte[] bytes = new byte[
+                    buffer.getInt(stringTableOffset + (id + 1) * 4) - start];
+            buffer.get(stringDataOffset + start, bytes);
+            result = new String(bytes, StandardCharsets.UTF_8);
+            strings[id] = result;
+        }
+
+        return result;
+    }
+
+    /**
+     * Compares string from the string table with specified UTF-8 bytes,
+     * byte by byte as unsigned values.
+     *
+     * @param id    string id
+     * @param bytes UTF-8 bytes
+     *
+     * @return negative number, zero or positive number if the string is less
+     *         than, equal to or greater than the bytes
+     */
+    private int compareString(final int id, final byte[] bytes) {
+        final int start = stringDataOffset
+                + buffer.getInt(stringTableOffset + id * 4);
+        final int length = stringDataOffset
+                + buffer.getInt(stringTableOffset + (id + 1) * 4) - start;
+        final int common = Math.min(length, bytes.length);
+
+        for (int i = 0; i < common; i++) {
+            final int result = Byte.toUnsignedInt(buffer.get(start + i))
+                    - Byte.toUnsignedInt(bytes[i]);
+
+            if (result != 0) {
+                return result;
+            }
+        }
+
+        return length - bytes.length;
+    }
+
+    /**
+     * Searches artifact index for the first entry that is not less than
+     * specified groupId and artifactId.
+     *
+     * @param groupId    UTF-8 bytes of group id
+     * @param artifactId UTF-8 bytes of artifact id or null to search for the
+     *                   first entry of the groupId
+     *
+     * @return entry number, equal to the number of entries if all entries are
+     *         less
+     */
+    private int findIndexEntry(final byte[] groupId, final byte[] artifactId) {
+        int low = 0;
+        int high = indexCount;
+
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            int result = compareString(getIndexInt(mid, 0), groupId);
+
+            if (result == 0 && artifactId != null) {
+                result = compareString(getIndexInt(mid, 1), artifactId);
+            }
+
+            if (result < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        return low;
+    }
+}
@@ -0,0 +1,312 @@
+package org.gentoo.java.ebuilder.portage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writer of binary cache file. Records are written as the lines are added,
+ * only the string table and artifact index are kept in memory and they are
+ * written at the end, together with the header. See {@link BinaryCache} for the format.
+ */
+class BinaryCacheWriter implements Closeable {
+
+    /**
+     * Artifact index entries.
+     */
+    private final List<IndexEntry> artifacts = new ArrayList<>(10_000);
+    /**
+     * File channel.
+     */
+    private final FileChannel channel;
+    /**
+     * Buffer of records that were not written yet.
+     */
+    private final ByteBuffer records
+            = ByteBuffer.allocate(BinaryCache.RECORD_SIZE * 1024);
+    /**
+     * Number of written records.
+     */
+    private int recordCount;
+    /**
+     * Map of strings and their ids.
+     */
+    private final Map<String, Integer> stringIds = new HashMap<>(10_000);
+    /**
+     * Strings in the order of their ids.
+     */
+    private final List<String> strings = new ArrayList<>(10_000);
+
+    /**
+     * Creates new instance of BinaryCacheWriter.
+     *
+     * @param file binary cache file path
+     *
+     * @throws IOException Thrown if the file could not be created.
+     */
+    BinaryCacheWriter(final Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        channel.position(BinaryCache.HEADER_SIZE);
+    }
+
+    /**
+     * Writes cache item.
+     *
+     * @param line cache item in the format of text cache file line
+     *
+     * @throws IOException Thrown if problem occurred while writing the file.
+     */
+    void write(final String line) throws IOException {
+        final String[] parts = line.split(":", -1);
+
+        if (parts.length != 9) {
+            throw new RuntimeException("Failed to parse cache line: " + line);
+        }
+
+        if (!records.hasRemaining()) {
+            flush();
+        }
+
+        for (int i = 0; i < 4; i++) {
+            records.putInt(getStringId(parts[i]));
+        }
+
+        for (int i = 4; i < 9; i++) {
+            records.putInt(parts[i].isEmpty()
+                    ? BinaryCache.NO_STRING : getStringId(parts[i]));
+        }
+
+        if (parts[7].isEmpty()) {
+            records.putInt(0);
+            records.putInt(0);
+            records.putInt(0);
+            records.putInt(BinaryCache.NO_STRING);
+        } else {
+            final MavenVersion mavenVersion = new MavenVersion(parts[7]);
+            records.putInt(mavenVersion.getMajorVersion());
+            records.putInt(mavenVersion.getMinorVersion());
+            records.putInt(mavenVersion.getIncrementalVersion());
+            records.putInt(getStringId(mavenVersion.getQualifier()));
+
+            if (!parts[5].isEmpty()) {
+                artifacts.add(new IndexEntry(getStringId(parts[5]),
+                        getStringId(parts[6]), recordCount, mavenVersion));
+            }
+        }
+
+        recordCount++;
+    }
+
+    /**
+     * Writes the string table, the artifact index and the header and closes
+     * the file.
+     *
+     * @throws IOException Thrown if problem occurred while writing the file.
+     */
+    void finish() throws IOException {
+        flush();
+
+        final long stringTableOffset = channel.position();
+        final List<byte[]> bytes = new ArrayList<>(strings.size());
+        final ByteBuffer offsets
+                = ByteBuffer.allocate((strings.size() + 1) * 4);
+        int offset = 0;
+
+        for (final String string : strings) {
+            final byte[] stringBytes = string.getBytes(StandardCharsets.UTF_8);
+            bytes.add(stringBytes);
+            offsets.putInt(offset);
+            offset += stringBytes.length;
+        }
+
+        offsets.putInt(offset);
+        writeFully(offsets.flip());
+
+        final ByteBuffer data = ByteBuffer.allocate(offset);
+        bytes.forEach(data::put);
+        writeFully(data.flip());
+
+        final long indexOffset = channel.position();
+        writeIndex(bytes);
+
+        final ByteBuffer header = ByteBuffer.allocate(BinaryCache.HEADER_SIZE);
+        header.putInt(BinaryCache.MAGIC);
+        header.putShort(BinaryCache.VERSION_MAJOR);
+        header.putShort(BinaryCache.VERSION_MINOR);
+        header.putInt(recordCount);
+        header.putInt(strings.size());
+        header.putLong(stringTableOffset);
+        header.putLong(indexOffset);
+        channel.position(0);
+        writeFully(header.flip());
+        channel.close();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Writes buffered records to the file.
+     *
+     * @throws IOException Thrown if problem occurred while writing the file.
+     */
+    private void flush() throws IOException {
+        writeFully(records.flip());
+        records.clear();
+    }
+
+    /**
+     * Returns id of the string, adding it to the string table if needed.
+     *
+     * @param string string
+     *
+     * @return string id
+     */
+    private int getStringId(final String string) {
+        Integer id = stringIds.get(string);
+
+        if (id == null) {
+            id = strings.size();
+            strings.add(string);
+            stringIds.put(string, id);
+        }
+
+        return id;
+    }
+
+    /**
+     * Writes the artifact index. Artifacts are sorted by UTF-8 bytes of their
+     * groupId and artifactId, records of an artifact by maven version and then
+     * by their order in the file.
+     *
+     * @param bytes UTF-8 bytes of strings indexed by string id
+     *
+     * @throws IOException Thrown if problem occurred while writing the file.
+     */
+    private void writeIndex(final List<byte[]> bytes) throws IOException {
+        artifacts.sort((final IndexEntry o1, final IndexEntry o2) -> {
+            int result = Arrays.compareUnsigned(bytes.get(o1.groupId),
+                    bytes.get(o2.groupId));
+
+            if (result == 0) {
+                result = Arrays.compareUnsigned(bytes.get(o1.artifactId),
+                        bytes.get(o2.artifactId));
+            }
+
+            if (result == 0) {
+                result = o1.mavenVersion.compareTo(o2.mavenVersion);
+            }
+
+            return result == 0 ? Integer.compare(o1.record, o2.record) : result;
+        });
+
+        int entryCount = 0;
+
+        for (int i = 0; i < artifacts.size(); i++) {
+            if (i == 0 || !artifacts.get(i).isSameArtifact(
+                    artifacts.get(i - 1))) {
+                entryCount++;
+            }
+        }
+
+        final ByteBuffer index = ByteBuffer.allocate(4 + entryCount
+                * BinaryCache.INDEX_ENTRY_INTS * 4 + artifacts.size() * 4);
+        index.putInt(entryCount);
+
+        int first = 0;
+
+        for (int i = 1; i <= artifacts.size(); i++) {
+            if (i == artifacts.size() || !artifacts.get(i).isSameArtifact(
+                    artifacts.get(first))) {
+                index.putInt(artifacts.get(first).groupId);
+                index.putInt(artifacts.get(first).artifactId);
+                index.putInt(first);
+                index.putInt(i - first);
+                first = i;
+            }
+        }
+
+        for (final IndexEntry artifact : artifacts) {
+            index.putInt(artifact.record);
+        }
+
+        writeFully(index.flip());
+    }
+
+    /**
+     * Writes whole buffer to the file.
+     *
+     * @param buffer buffer
+     *
+     * @throws IOException Thrown if problem occurred while writing the file.
+     */
+    private void writeFully(final ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Record of maven artifact in the artifact index.
+     */
+    private static class IndexEntry {
+
+        /**
+         * String id of maven artifact id.
+         */
+        private final int artifactId;
+        /**
+         * String id of maven group id.
+         */
+        private final int groupId;
+        /**
+         * Parsed maven version.
+         */
+        private final MavenVersion mavenVersion;
+        /**
+         * Record number.
+         */
+        private final int record;
+
+        /**
+         * Creates new instance of IndexEntry.
+         *
+         * @param groupId      {@link #groupId}
+         * @param artifactId   {@link #artifactId}
+         * @param record       {@link #record}
+         * @param mavenVersion {@link #mavenVersion}
+         */
+        IndexEntry(final int groupId, final int artifactId, final int record,
+                final MavenVersion mavenVersion) {
+            this.groupId = groupId;
+            this.artifactId = artifactId;
+            this.record = record;
+            this.mavenVersion = mavenVersion;
+        }
+
+        /**
+         * Checks whether the entry belongs to the same artifact as the other
+         * entry.
+         *
+         * @param other other entry
+         *
+         * @return true if both entries have the same groupId and artifactId,
+         *         otherwise false
+         */
+        boolean isSameArtifact(final IndexEntry other) {
+            return groupId == other.groupId && artifactId == other.artifactId;
+        }
+    }
+}
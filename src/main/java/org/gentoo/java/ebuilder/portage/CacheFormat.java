@@ -0,0 +1,18 @@
+package org.gentoo.java.ebuilder.portage;
+
+/**
+ * Format of the cache file.
+ */
+public enum CacheFormat {
+
+    /**
+     * Binary format with string table and fixed-width records that is fast to
+     * load.
+     */
+    BINARY,
+    /**
+     * Text format with one cache item per line. This is the format other tools
+     * read.
+     */
+    TEXT
+}
@@ -1,8 +1,7 @@
 package org.gentoo.java.ebuilder.portage;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
+import java.io.IOException;
+import java.io.Writer;
 import java.util.List;
 
 /**
@@ -25,7 +24,8 @@ public class CacheItem {
      */
     private final String groupId;
     /**
-     * List of inherited java eclasses, in the order as they are inherited.
+     * Immutable list of inherited java eclasses, in the order as they are
+     * inherited.
      */
     private final List<String> javaEclasses;
     /**
@@ -33,9 +33,9 @@ public class CacheItem {
      */
     private final String mavenVersion;
     /**
-     * Parsed maven version.
+     * Parsed maven version, parsed on first access.
      */
-    private final MavenVersion parsedMavenVersion;
+    private MavenVersion parsedMavenVersion;
     /**
      * Portage package.
      */
@@ -80,10 +80,40 @@ public class CacheItem {
         this.artifactId = artifactId;
         this.mavenVersion = mavenVersion;
         this.javaEclasses
-                = Collections.unmodifiableList(new ArrayList<>(javaEclasses));
+                = javaEclasses == null ? null : List.copyOf(javaEclasses);
+    }
 
-        parsedMavenVersion = mavenVersion == null
-                ? null : new MavenVersion(mavenVersion);
+    /**
+     * Creates new instance of CacheItem from already parsed values. The
+     * strings are not pooled and the list of eclasses is not copied so it
+     * must be immutable.
+     *
+     * @param category           {@link #category}
+     * @param pkg                {@link #pkg}
+     * @param version            {@link #version}
+     * @param slot               {@link #slot}
+     * @param useFlag            {@link #useFlag}
+     * @param groupId            {@link #groupId}
+     * @param artifactId         {@link #artifactId}
+     * @param mavenVersion       {@link #mavenVersion}
+     * @param parsedMavenVersion {@link #parsedMavenVersion}
+     * @param javaEclasses       {@link #javaEclasses}
+     */
+    CacheItem(final String category, final String pkg, final String version,
+            final String slot, final String useFlag, final String groupId,
+            final String artifactId, final String mavenVersion,
+            final MavenVersion parsedMavenVersion,
+            final List<String> javaEclasses) {
+        this.category = category;
+        this.pkg = pkg;
+        this.version = version;
+        this.slot = slot;
+        this.useFlag = useFlag;
+        this.groupId = groupId;
+        this.artifactId = artifactId;
+        this.mavenVersion = mavenVersion;
+        this.parsedMavenVersion = parsedMavenVersion;
+        this.javaEclasses = javaEclasses;
     }
 
     /**
@@ -92,23 +122,38 @@ public class CacheItem {
      * @param line line from cache file
      */
     public CacheItem(final String line) {
+        this(line, null);
+    }
+
+    /**
+     * Creates new instance of CacheItem, taking repeated strings and eclass
+     * lists from the pool.
+     *
+     * @param line       line from cache file
+     * @param stringPool pool of the cache file or manifest that is loaded, or
+     *                   null if the strings should not be pooled
+     */
+    public CacheItem(final String line, final StringPool stringPool) {
         final String[] parts = line.split(":");
 
         try {
-            category = parts[0];
-            pkg = parts[1];
+            category = pooled(stringPool, parts[0]);
+            pkg = pooled(stringPool, parts[1]);
             version = parts[2];
-            slot = parts[3];
+            slot = pooled(stringPool, parts[3]);
 
             if (parts.length > 4) {
-                useFlag = parts[4].isEmpty() ? null : parts[4];
+                useFlag = parts[4].isEmpty()
+                        ? null : pooled(stringPool, parts[4]);
             } else {
                 useFlag = null;
             }
 
             if (parts.length > 5) {
-                groupId = parts[5].isEmpty() ? null : parts[5];
-                artifactId = parts[6].isEmpty() ? null : parts[6];
+                groupId = parts[5].isEmpty()
+                        ? null : pooled(stringPool, parts[5]);
+                artifactId = parts[6].isEmpty()
+                        ? null : pooled(stringPool, parts[6]);
                 mavenVersion = parts[7].isEmpty() ? null : parts[7];
             } else {
                 groupId = null;
@@ -117,7 +162,9 @@ public class CacheItem {
             }
 
             if (parts.length > 8 && !parts[0].isEmpty()) {
-                javaEclasses = Arrays.asList(parts[8].split(","));
+                javaEclasses = stringPool == null
+                        ? StringPool.splitEclasses(parts[8])
+                        : stringPool.getEclasses(parts[8]);
             } else {
                 javaEclasses = null;
             }
@@ -125,9 +172,19 @@ public class CacheItem {
             throw new RuntimeException("Failed to parse cache line: " + line,
                     ex);
         }
+    }
 
-        parsedMavenVersion = mavenVersion == null
-                ? null : new MavenVersion(mavenVersion);
+    /**
+     * Returns canonical instance of the string from the pool.
+     *
+     * @param stringPool string pool or null
+     * @param string     string
+     *
+     * @return canonical string or the string itself if there is no pool
+     */
+    private static String pooled(final StringPool stringPool,
+            final String string) {
+        return stringPool == null ? string : stringPool.get(string);
     }
 
     /**
@@ -163,7 +220,7 @@ public class CacheItem {
      * @return {@link #javaEclasses}
      */
     public List<String> getJavaEclasses() {
-        return Collections.unmodifiableList(javaEclasses);
+        return javaEclasses;
     }
 
     /**
@@ -176,12 +233,21 @@ public class CacheItem {
     }
 
     /**
-     * Getter for {@link #parsedMavenVersion}.
+     * Getter for {@link #parsedMavenVersion}. The version is parsed on the
+     * first call. MavenVersion is immutable so concurrent first calls can at
+     * worst parse the version more than once.
      *
      * @return {@link #parsedMavenVersion}
      */
     public MavenVersion getParsedMavenVersion() {
-        return parsedMavenVersion;
+        MavenVersion result = parsedMavenVersion;
+
+        if (result == null && mavenVersion != null) {
+            result = new MavenVersion(mavenVersion);
+            parsedMavenVersion = result;
+        }
+
+        return result;
     }
 
     /**
@@ -219,4 +285,35 @@ public class CacheItem {
     public String getVersion() {
         return version;
     }
+
+    /**
+     * Writes the cache item in the format of cache file line, without the
+     * trailing new line character.
+     *
+     * @param writer writer to write the line to
+     *
+     * @throws IOException Thrown if problem occurred while writing the line.
+     */
+    public void write(final Writer writer) throws IOException {
+        writer.write(category);
+        writer.write(':');
+        writer.write(pkg);
+        writer.write(':');
+        writer.write(version);
+        writer.write(':');
+        writer.write(slot);
+        writer.write(':');
+        writer.write(useFlag == null ? "" : useFlag);
+        writer.write(':');
+        writer.write(groupId == null ? "" : groupId);
+        writer.write(':');
+        writer.write(artifactId == null ? "" : artifactId);
+        writer.write(':');
+        writer.write(mavenVersion == null ? "" : mavenVersion);
+        writer.write(':');
+
+        if (javaEclasses != null && !javaEclasses.isEmpty()) {
+            writer.write(String.join(",", javaEclasses));
+        }
+    }
 }
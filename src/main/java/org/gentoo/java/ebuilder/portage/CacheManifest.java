@@ -0,0 +1,453 @@
+package org.gentoo.java.ebuilder.portage;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Manifest of parsed ebuilds that is stored next to the cache file. For every
+ * ebuild it records its size, modification time, git blob id if the tree is a
+ * git checkout, size and modification time of its md5-cache entry if the
+ * md5-cache entry was read first and the cache items that were created from
+ * it, so that the next
+ * cache refresh has to parse only the ebuilds that were added or changed
+ * since.
+ */
+class CacheManifest implements Closeable {
+
+    /**
+     * Manifest format version. It has to be changed whenever the format or the
+     * way the ebuilds are parsed changes, so that stale manifests are ignored.
+     */
+    static final String MANIFEST_VERSION = "6";
+    /**
+     * Prefix of line that starts ebuild entry.
+     */
+    private static final char ENTRY_PREFIX = '@';
+
+    /**
+     * Returns path to manifest file for specified cache file.
+     *
+     * @param cacheFile cache file path
+     *
+     * @return manifest file path
+     */
+    static Path getManifestFile(final Path cacheFile) {
+        return cacheFile.resolveSibling(cacheFile.getFileName() + ".manifest");
+    }
+
+    /**
+     * Reads manifest from specified file. If the file does not exist or it is
+     * of different version, empty manifest is returned.
+     *
+     * @param manifestFile manifest file path
+     *
+     * @return manifest
+     */
+    static CacheManifest read(final Path manifestFile) {
+        final CacheManifest manifest = new CacheManifest();
+
+        if (!Files.exists(manifestFile)) {
+            return manifest;
+        }
+
+        try (final BufferedReader reader = new BufferedReader(
+                new InputStreamReader(Files.newInputStream(manifestFile,
+                        StandardOpenOption.READ), StandardCharsets.UTF_8))) {
+            String line = reader.readLine();
+
+            if (!getHeader().equals(line)) {
+                return manifest;
+            }
+
+            final StringPool stringPool = new StringPool();
+            String path = null;
+            long size = 0;
+            long lastModified = 0;
+            long metadataSize = 0;
+            long metadataLastModified = 0;
+            String objectId = null;
+            List<CacheItem> cacheItems = null;
+            line = reader.readLine();
+
+            while (line != null) {
+                if (!line.isEmpty() && line.charAt(0) == ENTRY_PREFIX) {
+                    if (path != null) {
+                        manifest.put(path, new Entry(size, lastModified,
+                                metadataSize, metadataLastModified, objectId,
+                                cacheItems));
+                    }
+
+                    final String[] parts = line.substring(1).split(":", 6);
+                    size = Long.parseLong(parts[0], 10);
+                    lastModified = Long.parseLong(parts[1], 10);
+                    metadataSize = Long.parseLong(parts[2], 10);
+                    metadataLastModified = Long.parseLong(parts[3], 10);
+                    objectId = parts[4].isEmpty() ? null : parts[4];
+                    path = parts[5];
+                    cacheItems = new ArrayList<>(1);
+                } else if (!line.isEmpty() && cacheItems != null) {
+                    cacheItems.add(new CacheItem(line, stringPool));
+                }
+
+                line = reader.readLine();
+            }
+
+            if (path != null) {
+                manifest.put(path, new Entry(size, lastModified, metadataSize,
+                        metadataLastModified, objectId, cacheItems));
+            }
+        } catch (final IOException | RuntimeException ex) {
+            // broken manifest only means that all ebuilds will be parsed
+            manifest.entries.clear();
+        }
+
+        return manifest;
+    }
+
+    /**
+     * Creates new manifest that is written to specified file as the entries
+     * are put into it, so that the entries do not have to be kept in memory.
+     * The manifest is written to temporary file that is moved over the target
+     * file on {@link #commit()}, so that the manifest file is never left
+     * incomplete.
+     *
+     * @param manifestFile manifest file path
+     *
+     * @return manifest
+     */
+    static CacheManifest create(final Path manifestFile) {
+        final Path tmpFile = manifestFile.resolveSibling(
+                manifestFile.getFileName() + ".tmp");
+        final CacheManifest manifest = new CacheManifest(manifestFile, tmpFile);
+
+        try {
+            manifest.writer = new OutputStreamWriter(
+                    Files.newOutputStream(tmpFile, StandardOpenOption.CREATE,
+                            StandardOpenOption.WRITE,
+                            StandardOpenOption.TRUNCATE_EXISTING),
+                    StandardCharsets.UTF_8);
+            manifest.writer.write(getHeader());
+            manifest.writer.write('\n');
+        } catch (final IOException ex) {
+            manifest.close();
+
+            throw new RuntimeException("Failed to write cache manifest @ "
+                    + tmpFile, ex);
+        }
+
+        return manifest;
+    }
+
+    /**
+     * Returns manifest header line.
+     *
+     * @return manifest header line
+     */
+    private static String getHeader() {
+        return MANIFEST_VERSION + ':' + PortageParser.CACHE_VERSION;
+    }
+
+    /**
+     * Map of ebuild paths and corresponding manifest entries. Used only if the
+     * manifest is not written.
+     */
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>(40_000);
+    /**
+     * Manifest file path or null if the manifest is not written.
+     */
+    private final Path manifestFile;
+    /**
+     * Temporary manifest file path or null if the manifest is not written.
+     */
+    private final Path tmpFile;
+    /**
+     * Writer of temporary manifest file or null if the manifest is not
+     * written.
+     */
+    private Writer writer;
+
+    /**
+     * Creates new instance of CacheManifest that is kept in memory.
+     */
+    CacheManifest() {
+        this(null, null);
+    }
+
+    /**
+     * Creates new instance of CacheManifest.
+     *
+     * @param manifestFile {@link #manifestFile}
+     * @param tmpFile      {@link #tmpFile}
+     */
+    private CacheManifest(final Path manifestFile, final Path tmpFile) {
+        this.manifestFile = manifestFile;
+        this.tmpFile = tmpFile;
+    }
+
+    /**
+     * Closes written manifest without committing it, the temporary file is
+     * deleted.
+     */
+    @Override
+    public synchronized void close() {
+        if (writer == null) {
+            return;
+        }
+
+        try {
+            writer.close();
+            Files.deleteIfExists(tmpFile);
+        } catch (final IOException ex) {
+            // leftover temporary file is not worth failing for
+        }
+
+        writer = null;
+    }
+
+    /**
+     * Finishes written manifest and moves it over the manifest file.
+     */
+    synchronized void commit() {
+        try {
+            writer.close();
+            writer = null;
+        } catch (final IOException ex) {
+            close();
+
+            throw new RuntimeException("Failed to write cache manifest @ "
+                    + tmpFile, ex);
+        }
+
+        try {
+            Files.move(tmpFile, manifestFile,
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException ex) {
+            throw new RuntimeException("Failed to move cache manifest to "
+                    + manifestFile, ex);
+        }
+    }
+
+    /**
+     * Puts entry for specified ebuild path into the manifest. Can be called
+     * concurrently.
+     *
+     * @param path  ebuild path
+     * @param entry manifest entry
+     */
+    void put(final String path, final Entry entry) {
+        if (manifestFile == null) {
+            entries.put(path, entry);
+
+            return;
+        }
+
+        synchronized (this) {
+            try {
+                writer.write(ENTRY_PREFIX);
+                writer.write(Long.toString(entry.getSize()));
+                writer.write(':');
+                writer.write(Long.toString(entry.getLastModified()));
+                writer.write(':');
+                writer.write(Long.toString(entry.getMetadataSize()));
+                writer.write(':');
+                writer.write(Long.toString(entry.getMetadataLastModified()));
+                writer.write(':');
+
+                if (entry.getObjectId() != null) {
+                    writer.write(entry.getObjectId());
+                }
+
+                writer.write(':');
+                writer.write(path);
+                writer.write('\n');
+
+                for (final CacheItem cacheItem : entry.getCacheItems()) {
+                    cacheItem.write(writer);
+                    writer.write('\n');
+                }
+            } catch (final IOException ex) {
+                throw new RuntimeException("Failed to write cache manifest @ "
+                        + tmpFile, ex);
+            }
+        }
+    }
+
+    /**
+     * Removes manifest entry for specified ebuild path, so that the memory
+     * is released as the ebuilds are processed.
+     *
+     * @param path ebuild path
+     *
+     * @return manifest entry or null
+     */
+    Entry remove(final String path) {
+        return entries.remove(path);
+    }
+
+    /**
+     * Returns number of entries in the manifest.
+     *
+     * @return number of entries
+     */
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Manifest entry of single ebuild.
+     */
+    static class Entry {
+
+        /**
+         * Cache items created from the ebuild, empty for non-java ebuilds.
+         */
+        private final List<CacheItem> cacheItems;
+        /**
+         * Ebuild modification time in milliseconds.
+         */
+        private final long lastModified;
+        /**
+         * Modification time of md5-cache entry of the ebuild in milliseconds,
+         * 0 if the entry does not exist or -1 if the entry was not read
+         * before the ebuild.
+         */
+        private final long metadataLastModified;
+        /**
+         * Size of md5-cache entry of the ebuild in bytes, 0 if the entry does
+         * not exist or -1 if the entry was not read before the ebuild.
+         */
+        private final long metadataSize;
+        /**
+         * Git blob id of the ebuild or null if the ebuild is not tracked by
+         * git.
+         */
+        private final String objectId;
+        /**
+         * Ebuild size in bytes.
+         */
+        private final long size;
+
+        /**
+         * Creates new instance of Entry.
+         *
+         * @param size                 {@link #size}
+         * @param lastModified         {@link #lastModified}
+         * @param metadataSize         {@link #metadataSize}
+         * @param metadataLastModified {@link #metadataLastModified}
+         * @param objectId             {@link #objectId}
+         * @param cacheItems           {@link #cacheItems}
+         */
+        Entry(final long size, final long lastModified,
+                final long metadataSize, final long metadataLastModified,
+                final String objectId, final List<CacheItem> cacheItems) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.metadataSize = metadataSize;
+            this.metadataLastModified = metadataLastModified;
+            this.objectId = objectId;
+            this.cacheItems = cacheItems;
+        }
+
+        /**
+         * Getter for {@link #cacheItems}.
+         *
+         * @return {@link #cacheItems}
+         */
+        List<CacheItem> getCacheItems() {
+            return cacheItems;
+        }
+
+        /**
+         * Getter for {@link #lastModified}.
+         *
+         * @return {@link #lastModified}
+         */
+        long getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * Getter for {@link #metadataLastModified}.
+         *
+         * @return {@link #metadataLastModified}
+         */
+        long getMetadataLastModified() {
+            return metadataLastModified;
+        }
+
+        /**
+         * Getter for {@link #metadataSize}.
+         *
+         * @return {@link #metadataSize}
+         */
+        long getMetadataSize() {
+            return metadataSize;
+        }
+
+        /**
+         * Getter for {@link #objectId}.
+         *
+         * @return {@link #objectId}
+         */
+        String getObjectId() {
+            return objectId;
+        }
+
+        /**
+         * Getter for {@link #size}.
+         *
+         * @return {@link #size}
+         */
+        long getSize() {
+            return size;
+        }
+
+        /**
+         * Checks whether the entry matches current state of the ebuild and
+         * its md5-cache entry. The md5-cache entry has to match even if the
+         * ebuild blob id matches, as eclass changes regenerate the md5-cache
+         * entry without touching the ebuild.
+         *
+         * @param size                 current ebuild size
+         * @param lastModified         current ebuild modification time
+         * @param metadataSize         current md5-cache entry size, 0 if it
+         *                             does not exist or -1 if it is not read
+         *                             before the ebuild
+         * @param metadataLastModified current md5-cache entry modification
+         *                             time, 0 if it does not exist or -1 if it
+         *                             is not read before the ebuild
+         * @param objectId             current git blob id of the ebuild or
+         *                             null if it is not known
+         *
+         * @return true if the ebuild did not change, otherwise false
+         */
+        boolean matches(final long size, final long lastModified,
+                final long metadataSize, final long metadataLastModified,
+                final String objectId) {
+            if (this.metadataSize != metadataSize
+                    || this.metadataLastModified != metadataLastModified) {
+                return false;
+            }
+
+            if (objectId != null && objectId.equals(this.objectId)) {
+                return true;
+            }
+
+            return this.size == size && this.lastModified == lastModified;
+        }
+    }
+}
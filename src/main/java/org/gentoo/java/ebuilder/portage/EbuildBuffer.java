@@ -0,0 +1,191 @@
+package org.gentoo.java.ebuilder.portage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reusable buffer holding raw bytes of single ebuild. It allows to check
+ * whether the ebuild inherits any java eclass before any characters are
+ * decoded, which is enough to drop most of the ebuilds in the tree. Instances
+ * are not thread safe, each parsing thread should use its own buffer.
+ */
+class EbuildBuffer {
+
+    /**
+     * Initial buffer size. Most of the ebuilds fit in it.
+     */
+    private static final int INITIAL_SIZE = 16 * 1024;
+    /**
+     * Bytes of inherit command.
+     */
+    private static final byte[] INHERIT = {
+        'i', 'n', 'h', 'e', 'r', 'i', 't'};
+    /**
+     * Bytes of java eclass name prefix.
+     */
+    private static final byte[] JAVA_PREFIX = {'j', 'a', 'v', 'a', '-'};
+    /**
+     * Bytes of ant utilities eclass name.
+     */
+    private static final byte[] ANT_TASKS = {
+        'a', 'n', 't', '-', 't', 'a', 's', 'k', 's'};
+
+    /**
+     * Buffer bytes.
+     */
+    private byte[] bytes = new byte[INITIAL_SIZE];
+    /**
+     * Lexer for reading the buffer.
+     */
+    private final EbuildLexer lexer = new EbuildLexer();
+    /**
+     * Number of valid bytes in the buffer.
+     */
+    private int length;
+
+    /**
+     * Reads the whole file into the buffer, growing it if needed.
+     *
+     * @param file file path
+     *
+     * @throws IOException Thrown if problem occurred while reading the file.
+     */
+    void read(final Path file) throws IOException {
+        try (final FileChannel channel
+                = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+
+            if (size > Integer.MAX_VALUE - 8) {
+                throw new IOException("File " + file + " is too big");
+            }
+
+            if (size > bytes.length) {
+                bytes = new byte[Math.max((int) size, bytes.length * 2)];
+            }
+
+            final ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, (int) size);
+
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+                // read until the buffer is full or end of file is reached
+            }
+
+            length = buffer.position();
+        }
+    }
+
+    /**
+     * Checks whether there is any inherit line that mentions java eclass or
+     * ant utilities eclass. The check is conservative, it can return true for
+     * an ebuild that does not inherit any java eclass, but it never returns
+     * false for an ebuild that does.
+     *
+     * @return true if the ebuild might inherit java eclass, otherwise false
+     */
+    boolean mightInheritJavaEclass() {
+        int pos = 0;
+
+        while (pos < length) {
+            pos = skipBlanks(pos);
+
+            if (startsWith(pos, INHERIT) && pos + INHERIT.length < length
+                    && isBlank(bytes[pos + INHERIT.length])) {
+                pos += INHERIT.length;
+
+                while (pos < length && bytes[pos] != '\n'
+                        && bytes[pos] != '#') {
+                    if (startsWith(pos, JAVA_PREFIX)
+                            || startsWith(pos, ANT_TASKS)) {
+                        return true;
+                    }
+
+                    pos++;
+                }
+            }
+
+            while (pos < length && bytes[pos] != '\n') {
+                pos++;
+            }
+
+            pos++;
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns lexer reset to read the buffer as an ebuild. The lexer is valid
+     * only until the buffer is read again.
+     *
+     * @return lexer
+     */
+    EbuildLexer lex() {
+        lexer.reset(bytes, length);
+
+        return lexer;
+    }
+
+    /**
+     * Returns lexer reset to read the buffer as an md5-cache entry. The lexer
+     * is valid only until the buffer is read again.
+     *
+     * @return lexer
+     */
+    EbuildLexer lexMetadata() {
+        lexer.resetMetadata(bytes, length);
+
+        return lexer;
+    }
+
+    /**
+     * Checks whether the byte is a space or tab.
+     *
+     * @param value byte value
+     *
+     * @return true if the byte is blank, otherwise false
+     */
+    private static boolean isBlank(final byte value) {
+        return value == ' ' || value == '\t';
+    }
+
+    /**
+     * Skips spaces and tabs.
+     *
+     * @param pos start position
+     *
+     * @return position of the first non-blank byte
+     */
+    private int skipBlanks(final int pos) {
+        int result = pos;
+
+        while (result < length && isBlank(bytes[result])) {
+            result++;
+        }
+
+        return result;
+    }
+
+    /**
+     * Checks whether the buffer contains specified bytes at the position.
+     *
+     * @param pos    position in the buffer
+     * @param prefix bytes to check
+     *
+     * @return true if the bytes are present at the position, otherwise false
+     */
+    private boolean startsWith(final int pos, final byte[] prefix) {
+        if (pos + prefix.length > length) {
+            return false;
+        }
+
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[pos + i] != prefix[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,726 @@
+package org.gentoo.java.ebuilder.portage;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Single pass lexer of ebuilds and md5-cache entries that works directly on
+ * raw bytes. It reports variable assignments and inherit commands found at the
+ * start of shell statements. Names, values and words are reported as ranges
+ * of the buffer and strings are created only when they are requested, so
+ * skipping uninteresting parts of the ebuild does not allocate anything.
+ * Instances are reusable but not thread safe.
+ */
+class EbuildLexer {
+
+    /**
+     * Token returned when there is nothing more to read.
+     */
+    static final int END = 0;
+    /**
+     * Token returned for variable assignment.
+     */
+    static final int ASSIGNMENT = 1;
+    /**
+     * Token returned for inherit command. Its value are the inherited
+     * eclasses.
+     */
+    static final int INHERIT = 2;
+    /**
+     * Bytes of inherit command.
+     */
+    private static final byte[] INHERIT_COMMAND = {
+        'i', 'n', 'h', 'e', 'r', 'i', 't'};
+
+    /**
+     * Checks whether the byte is a space or tab.
+     *
+     * @param value byte value
+     *
+     * @return true if the byte is blank, otherwise false
+     */
+    private static boolean isBlank(final byte value) {
+        return value == ' ' || value == '\t';
+    }
+
+    /**
+     * Checks whether the byte can be part of variable name.
+     *
+     * @param value byte value
+     * @param first whether it is the first byte of the name
+     *
+     * @return true if the byte can be part of variable name, otherwise false
+     */
+    private static boolean isNameByte(final byte value, final boolean first) {
+        return value >= 'A' && value <= 'Z' || value >= 'a' && value <= 'z'
+                || value == '_' || !first && value >= '0' && value <= '9';
+    }
+
+    /**
+     * Number of open arithmetic expressions, (( or $((, at current position.
+     * Inside them {@code <<} is a shift operator.
+     */
+    private int arithmeticDepth;
+    /**
+     * Buffer bytes.
+     */
+    private byte[] bytes;
+    /**
+     * Whether current position is inside [[ ]] conditional expression.
+     */
+    private boolean conditional;
+    /**
+     * Delimiter of pending here-document, without quotes.
+     */
+    private byte[] heredocDelimiter = new byte[16];
+    /**
+     * Length of {@link #heredocDelimiter}, zero if there is no pending
+     * here-document.
+     */
+    private int heredocDelimiterLength;
+    /**
+     * Whether leading tabs are stripped from lines of pending
+     * here-document.
+     */
+    private boolean heredocStripTabs;
+    /**
+     * Whether md5-cache entry is read. Values of md5-cache entry span till the
+     * end of line and they are not quoted.
+     */
+    private boolean metadata;
+    /**
+     * Number of valid bytes in the buffer.
+     */
+    private int length;
+    /**
+     * End of current name (exclusive).
+     */
+    private int nameEnd;
+    /**
+     * Start of current name.
+     */
+    private int nameStart;
+    /**
+     * Current position in the buffer.
+     */
+    private int position;
+    /**
+     * Scratch buffer used for creating values that contain quotes.
+     */
+    private byte[] scratch = new byte[256];
+    /**
+     * Whether the lexer is at the start of a statement.
+     */
+    private boolean statementStart;
+    /**
+     * End of current value (exclusive).
+     */
+    private int valueEnd;
+    /**
+     * Start of current value.
+     */
+    private int valueStart;
+    /**
+     * End of current word (exclusive).
+     */
+    private int wordEnd;
+    /**
+     * Start of current word.
+     */
+    private int wordStart;
+
+    /**
+     * Resets the lexer to read ebuild from the buffer.
+     *
+     * @param bytes  buffer bytes
+     * @param length number of valid bytes in the buffer
+     */
+    void reset(final byte[] bytes, final int length) {
+        reset(bytes, length, false);
+    }
+
+    /**
+     * Resets the lexer to read md5-cache entry from the buffer.
+     *
+     * @param bytes  buffer bytes
+     * @param length number of valid bytes in the buffer
+     */
+    void resetMetadata(final byte[] bytes, final int length) {
+        reset(bytes, length, true);
+    }
+
+    /**
+     * Reads next token.
+     *
+     * @return {@link #ASSIGNMENT}, {@link #INHERIT} or {@link #END}
+     */
+    int next() {
+        if (metadata) {
+            return nextMetadata();
+        }
+
+        while (position < length) {
+            final byte value = bytes[position];
+
+            if (isBlank(value)) {
+                position++;
+            } else if (value == '\n' && heredocDelimiterLength > 0) {
+                skipHeredoc();
+                statementStart = true;
+            } else if (value == '\n' || value == ';') {
+                position++;
+                statementStart = true;
+            } else if (value == '<' && !statementStart
+                    && arithmeticDepth == 0 && !conditional
+                    && position + 2 < length && bytes[position + 1] == '<'
+                    && bytes[position + 2] != '<') {
+                readHeredocDelimiter();
+                statementStart = false;
+            } else if (value == '#') {
+                skipLine();
+            } else if (!statementStart) {
+                skipWord();
+            } else if (readAssignment()) {
+                return ASSIGNMENT;
+            } else if (readInherit()) {
+                return INHERIT;
+            } else {
+                statementStart = false;
+                skipWord();
+            }
+        }
+
+        return END;
+    }
+
+    /**
+     * Checks whether current assignment is of variable with specified name.
+     *
+     * @param name variable name, must contain only ASCII characters
+     *
+     * @return true if the name matches, otherwise false
+     */
+    boolean isName(final String name) {
+        if (nameEnd - nameStart != name.length()) {
+            return false;
+        }
+
+        for (int i = 0; i < name.length(); i++) {
+            if (bytes[nameStart + i] != name.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns name of current assignment.
+     *
+     * @return variable name
+     */
+    String getName() {
+        return new String(bytes, nameStart, nameEnd - nameStart,
+                StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns value of current assignment with quotes and escaped new lines
+     * removed.
+     *
+     * @return variable value
+     */
+    String getValue() {
+        return createString(valueStart, valueEnd);
+    }
+
+    /**
+     * Moves to the next word of current value. Words are separated by blanks,
+     * new lines and quotes.
+     *
+     * @return true if there is next word, otherwise false
+     */
+    boolean nextWord() {
+        int pos = wordEnd;
+
+        while (pos < valueEnd && isWordSeparator(pos)) {
+            pos++;
+        }
+
+        if (pos >= valueEnd) {
+            wordStart = valueEnd;
+            wordEnd = valueEnd;
+
+            return false;
+        }
+
+        wordStart = pos;
+
+        while (pos < valueEnd && !isWordSeparator(pos)) {
+            pos++;
+        }
+
+        wordEnd = pos;
+
+        return true;
+    }
+
+    /**
+     * Checks whether current word equals to specified string.
+     *
+     * @param word word to compare with, must contain only ASCII characters
+     *
+     * @return true if the word matches, otherwise false
+     */
+    boolean isWord(final String word) {
+        return wordEnd - wordStart == word.length() && wordStartsWith(word);
+    }
+
+    /**
+     * Checks whether current word starts with specified prefix.
+     *
+     * @param prefix prefix to check, must contain only ASCII characters
+     *
+     * @return true if the word starts with the prefix, otherwise false
+     */
+    boolean wordStartsWith(final String prefix) {
+        if (wordEnd - wordStart < prefix.length()) {
+            return false;
+        }
+
+        for (int i = 0; i < prefix.length(); i++) {
+            if (bytes[wordStart + i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns current word.
+     *
+     * @return current word
+     */
+    String getWord() {
+        return new String(bytes, wordStart, wordEnd - wordStart,
+                StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Creates string from the range of the buffer, leaving out quotes and
+     * escaped new lines.
+     *
+     * @param start start of the range
+     * @param end   end of the range (exclusive)
+     *
+     * @return created string
+     */
+    private String createString(final int start, final int end) {
+        boolean plain = true;
+
+        for (int i = start; i < end && plain; i++) {
+            plain = bytes[i] != '"' && bytes[i] != '\'' && bytes[i] != '\\';
+        }
+
+        if (plain) {
+            return new String(bytes, start, end - start,
+                    StandardCharsets.UTF_8);
+        }
+
+        if (scratch.length < end - start) {
+            scratch = new byte[end - start];
+        }
+
+        int count = 0;
+
+        for (int i = start; i < end; i++) {
+            final byte value = bytes[i];
+
+            if (value == '"' || value == '\'') {
+                continue;
+            } else if (value == '\\' && i + 1 < end && bytes[i + 1] == '\n') {
+                i++;
+
+                continue;
+            }
+
+            scratch[count++] = value;
+        }
+
+        return new String(scratch, 0, count, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Checks whether the byte at the position separates words.
+     *
+     * @param pos position in the buffer
+     *
+     * @return true if the byte separates words, otherwise false
+     */
+    private boolean isWordSeparator(final int pos) {
+        final byte value = bytes[pos];
+
+        return isBlank(value) || value == '\n' || value == '"'
+                || value == '\'' || value == '\\' || value == '('
+                || value == ')';
+    }
+
+    /**
+     * Reads next line of md5-cache entry.
+     *
+     * @return {@link #ASSIGNMENT} or {@link #END}
+     */
+    private int nextMetadata() {
+        while (position < length) {
+            final int start = position;
+
+            while (position < length && isNameByte(bytes[position],
+                    position == start)) {
+                position++;
+            }
+
+            if (position > start && position < length
+                    && bytes[position] == '=') {
+                nameStart = start;
+                nameEnd = position;
+                valueStart = position + 1;
+                position = valueStart;
+
+                while (position < length && bytes[position] != '\n') {
+                    position++;
+                }
+
+                valueEnd = position;
+                wordEnd = valueStart;
+                position++;
+
+                return ASSIGNMENT;
+            }
+
+            skipLine();
+        }
+
+        return END;
+    }
+
+    /**
+     * Reads variable assignment at current position if there is one.
+     *
+     * @return true if assignment was read, otherwise false
+     */
+    private boolean readAssignment() {
+        int pos = position;
+
+        while (pos < length && isNameByte(bytes[pos], pos == position)) {
+            pos++;
+        }
+
+        if (pos == position || pos >= length || bytes[pos] != '=') {
+            return false;
+        }
+
+        nameStart = position;
+        nameEnd = pos;
+        valueStart = pos + 1;
+        position = valueStart;
+
+        if (position < length && bytes[position] == '(') {
+            skipArray();
+        } else {
+            skipWord();
+        }
+
+        valueEnd = position;
+        wordEnd = valueStart;
+
+        // further assignments can follow on the same statement
+        return true;
+    }
+
+    /**
+     * Reads delimiter of here-document starting at current position. Body of
+     * the here-document is skipped at the end of current line. Here-document
+     * is recognized only after a command word and outside of arithmetic and
+     * conditional expressions.
+     */
+    private void readHeredocDelimiter() {
+        position += 2;
+        heredocStripTabs = position < length && bytes[position] == '-';
+
+        if (heredocStripTabs) {
+            position++;
+        }
+
+        while (position < length && isBlank(bytes[position])) {
+            position++;
+        }
+
+        final int start = position;
+        skipWord();
+        heredocDelimiterLength = 0;
+
+        if (heredocDelimiter.length < position - start) {
+            heredocDelimiter = new byte[position - start];
+        }
+
+        for (int i = start; i < position; i++) {
+            if (bytes[i] != '"' && bytes[i] != '\'' && bytes[i] != '\\') {
+                heredocDelimiter[heredocDelimiterLength++] = bytes[i];
+            }
+        }
+    }
+
+    /**
+     * Reads inherit command at current position if there is one. Value of the
+     * command spans till the end of the statement.
+     *
+     * @return true if inherit command was read, otherwise false
+     */
+    private boolean readInherit() {
+        final int end = position + INHERIT_COMMAND.length;
+
+        if (end >= length || !isBlank(bytes[end])) {
+            return false;
+        }
+
+        for (int i = 0; i < INHERIT_COMMAND.length; i++) {
+            if (bytes[position + i] != INHERIT_COMMAND[i]) {
+                return false;
+            }
+        }
+
+        position = end;
+        valueStart = end;
+
+        while (position < length) {
+            final byte value = bytes[position];
+
+            if (value == '\\' && position + 1 < length
+                    && bytes[position + 1] == '\n') {
+                position += 2;
+            } else if (value == '\n' || value == ';' || value == '#'
+                    && isBlank(bytes[position - 1])) {
+                break;
+            } else {
+                position++;
+            }
+        }
+
+        valueEnd = position;
+        wordEnd = valueStart;
+        statementStart = false;
+
+        return true;
+    }
+
+    /**
+     * Resets the lexer.
+     *
+     * @param bytes    buffer bytes
+     * @param length   number of valid bytes in the buffer
+     * @param metadata {@link #metadata}
+     */
+    private void reset(final byte[] bytes, final int length,
+            final boolean metadata) {
+        this.bytes = bytes;
+        this.length = length;
+        this.metadata = metadata;
+        position = 0;
+        statementStart = true;
+        heredocDelimiterLength = 0;
+        arithmeticDepth = 0;
+        conditional = false;
+        nameStart = 0;
+        nameEnd = 0;
+        valueStart = 0;
+        valueEnd = 0;
+        wordStart = 0;
+        wordEnd = 0;
+    }
+
+    /**
+     * Skips array value in parentheses, including the parentheses.
+     */
+    private void skipArray() {
+        position++;
+
+        while (position < length && bytes[position] != ')') {
+            skipQuotedOrByte();
+        }
+
+        if (position < length) {
+            position++;
+        }
+    }
+
+    /**
+     * Skips command substitution or parameter expansion starting at current
+     * position, including nested quotes, substitutions and expansions.
+     *
+     * @param open  opening bracket of the expansion
+     * @param close closing bracket of the expansion
+     */
+    private void skipExpansion(final byte open, final byte close) {
+        int depth = 1;
+        position += 2;
+
+        while (position < length) {
+            final byte value = bytes[position];
+
+            if (value == open) {
+                depth++;
+                position++;
+            } else if (value == close) {
+                position++;
+
+                if (--depth == 0) {
+                    break;
+                }
+            } else {
+                skipQuotedOrByte();
+            }
+        }
+    }
+
+    /**
+     * Skips body of pending here-document. Current position has to be at the
+     * new line character that precedes the body. Position is moved to the new
+     * line character of the line containing the delimiter.
+     */
+    private void skipHeredoc() {
+        while (position < length) {
+            position++;
+
+            int start = position;
+
+            if (heredocStripTabs) {
+                while (start < length && bytes[start] == '\t') {
+                    start++;
+                }
+            }
+
+            skipLine();
+
+            if (position - start == heredocDelimiterLength) {
+                boolean matches = true;
+
+                for (int i = 0; i < heredocDelimiterLength && matches; i++) {
+                    matches = bytes[start + i] == heredocDelimiter[i];
+                }
+
+                if (matches) {
+                    break;
+                }
+            }
+        }
+
+        heredocDelimiterLength = 0;
+    }
+
+    /**
+     * Skips to the end of current line. New line character is skipped only in
+     * md5-cache entry.
+     */
+    private void skipLine() {
+        while (position < length && bytes[position] != '\n') {
+            position++;
+        }
+
+        if (metadata && position < length) {
+            position++;
+        }
+    }
+
+    /**
+     * Skips quoted string, backquoted command substitution, command
+     * substitution or parameter expansion starting at current position,
+     * escaped character or single byte.
+     */
+    private void skipQuotedOrByte() {
+        final byte value = bytes[position];
+
+        if (value == '\\') {
+            position += 2;
+        } else if (value == '$' && position + 1 < length
+                && bytes[position + 1] == '(') {
+            skipExpansion((byte) '(', (byte) ')');
+        } else if (value == '$' && position + 1 < length
+                && bytes[position + 1] == '{') {
+            skipExpansion((byte) '{', (byte) '}');
+        } else if (value == '`') {
+            position++;
+
+            while (position < length && bytes[position] != '`') {
+                if (bytes[position] == '\\') {
+                    position++;
+                }
+
+                position++;
+            }
+
+            position++;
+        } else if (value == '\'') {
+            position++;
+
+            while (position < length && bytes[position] != '\'') {
+                position++;
+            }
+
+            position++;
+        } else if (value == '"') {
+            position++;
+
+            while (position < length && bytes[position] != '"') {
+                if (bytes[position] == '\\') {
+                    position++;
+                }
+
+                position++;
+            }
+
+            position++;
+        } else {
+            position++;
+        }
+
+        if (position > length) {
+            position = length;
+        }
+    }
+
+    /**
+     * Skips shell word starting at current position. Quoted parts, command
+     * substitutions and parameter expansions of the word can contain blanks
+     * and span several lines. Opening and closing of arithmetic and
+     * conditional expressions is tracked.
+     */
+    private void skipWord() {
+        final int start = position;
+
+        while (position < length) {
+            final byte value = bytes[position];
+
+            if (isBlank(value) || value == '\n' || value == ';') {
+                break;
+            } else if (value == '(' && position + 1 < length
+                    && bytes[position + 1] == '(') {
+                arithmeticDepth++;
+                position += 2;
+            } else if (value == ')' && arithmeticDepth > 0
+                    && position + 1 < length && bytes[position + 1] == ')') {
+                arithmeticDepth--;
+                position += 2;
+            } else {
+                skipQuotedOrByte();
+            }
+        }
+
+        if (position - start == 2 && bytes[start] == bytes[start + 1]) {
+            if (bytes[start] == '[') {
+                conditional = true;
+            } else if (bytes[start] == ']') {
+                conditional = false;
+            }
+        }
+    }
+}
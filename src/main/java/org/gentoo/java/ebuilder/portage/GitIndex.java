@@ -0,0 +1,539 @@
+package org.gentoo.java.ebuilder.portage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Ebuild entries of git index of portage tree that is a git checkout. The
+ * index is read directly from the .git directory, git itself is not needed.
+ * For every tracked ebuild the index contains id of its blob, which
+ * identifies the ebuild content regardless of its modification time, so
+ * ebuilds that did not change since the previous refresh can be recognized
+ * even if checkout or sync touched them. The tree directories are still
+ * walked, the index is only looked up for the ebuilds found there.
+ */
+class GitIndex {
+
+    /**
+     * Index file signature ("DIRC").
+     */
+    private static final int SIGNATURE = 0x44495243;
+    /**
+     * Entry flag marking entry with extended flags.
+     */
+    private static final int FLAG_EXTENDED = 0x4000;
+    /**
+     * Entry flags mask of merge stage.
+     */
+    private static final int FLAG_STAGE = 0x3000;
+    /**
+     * Entry mode mask of object type.
+     */
+    private static final int MODE_TYPE = 0xf000;
+    /**
+     * Entry mode object type of regular file.
+     */
+    private static final int MODE_TYPE_FILE = 0x8000;
+    /**
+     * Size of entry fields that precede object id.
+     */
+    private static final int STAT_SIZE = 40;
+    /**
+     * Bytes of ebuild file name suffix.
+     */
+    private static final byte[] EBUILD_SUFFIX
+            = ".ebuild".getBytes(StandardCharsets.US_ASCII);
+    /**
+     * Hexadecimal digits.
+     */
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * Reads git index of the portage tree. Only version 2, 3 and 4 indexes
+     * are supported. Split and sparse indexes are not supported as they do
+     * not list all the files.
+     *
+     * @param treePath portage tree path
+     *
+     * @return git index or null if the tree is not a git checkout or the
+     *         index cannot be used
+     */
+    static GitIndex read(final Path treePath) {
+        try {
+            final Path gitDir = getGitDir(treePath);
+
+            if (gitDir == null) {
+                return null;
+            }
+
+            final Path indexFile = gitDir.resolve("index");
+
+            if (!Files.isRegularFile(indexFile)) {
+                return null;
+            }
+
+            final String commit = readHead(gitDir);
+
+            if (commit == null) {
+                return null;
+            }
+
+            return parse(Files.readAllBytes(indexFile), commit,
+                    Files.getLastModifiedTime(indexFile).toMillis());
+        } catch (final IOException | RuntimeException ex) {
+            // unusable index only means that the tree is scanned
+            return null;
+        }
+    }
+
+    /**
+     * Returns git directory of the tree. The .git can be either the directory
+     * itself or a file pointing to it.
+     *
+     * @param treePath portage tree path
+     *
+     * @return git directory or null if the tree is not a git checkout
+     *
+     * @throws IOException Thrown if .git file could not be read.
+     */
+    private static Path getGitDir(final Path treePath) throws IOException {
+        final Path dotGit = treePath.resolve(".git");
+
+        if (Files.isDirectory(dotGit)) {
+            return dotGit;
+        } else if (Files.isRegularFile(dotGit)) {
+            final String line = readFirstLine(dotGit);
+
+            if (line != null && line.startsWith("gitdir:")) {
+                return treePath.resolve(line.substring("gitdir:".length()).
+                        trim()).normalize();
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns position of the first NUL byte starting at specified position.
+     *
+     * @param bytes bytes
+     * @param pos   start position
+     *
+     * @return position of NUL byte
+     */
+    private static int indexOfNul(final byte[] bytes, final int pos) {
+        int result = pos;
+
+        while (bytes[result] != 0) {
+            result++;
+        }
+
+        return result;
+    }
+
+    /**
+     * Checks whether the path in the entry name buffer is an ebuild directly
+     * in package directory.
+     *
+     * @param name   name buffer
+     * @param length name length
+     *
+     * @return true if the path is an ebuild path, otherwise false
+     */
+    private static boolean isEbuildPath(final byte[] name, final int length) {
+        if (length <= EBUILD_SUFFIX.length) {
+            return false;
+        }
+
+        for (int i = 0; i < EBUILD_SUFFIX.length; i++) {
+            if (name[length - EBUILD_SUFFIX.length + i] != EBUILD_SUFFIX[i]) {
+                return false;
+            }
+        }
+
+        int slashes = 0;
+
+        for (int i = 0; i < length; i++) {
+            if (name[i] == '/') {
+                slashes++;
+            }
+        }
+
+        return slashes == 2;
+    }
+
+    /**
+     * Checks whether the string is a valid object id.
+     *
+     * @param id object id
+     *
+     * @return true if the id is valid, otherwise false
+     */
+    private static boolean isObjectId(final String id) {
+        if (id.length() != 40 && id.length() != 64) {
+            return false;
+        }
+
+        for (int i = 0; i < id.length(); i++) {
+            if (Character.digit(id.charAt(i), 16) == -1) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Parses index file content.
+     *
+     * @param bytes     index file content
+     * @param commit    HEAD commit id
+     * @param timestamp index file modification time
+     *
+     * @return git index or null if the index is not supported
+     */
+    private static GitIndex parse(final byte[] bytes, final String commit,
+            final long timestamp) {
+        final int hashLength = commit.length() / 2;
+
+        if (bytes.length < 12 + hashLength || !verifyChecksum(bytes,
+                hashLength)) {
+            return null;
+        }
+
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+        if (buffer.getInt(0) != SIGNATURE) {
+            return null;
+        }
+
+        final int version = buffer.getInt(4);
+
+        if (version < 2 || version > 4) {
+            return null;
+        }
+
+        final int count = buffer.getInt(8);
+        final Map<String, Entry> ebuilds = new HashMap<>(count / 2);
+        byte[] name = new byte[256];
+        int nameLength = 0;
+        int pos = 12;
+
+        for (int i = 0; i < count; i++) {
+            final int start = pos;
+            final long mtimeSeconds = buffer.getInt(pos + 8) & 0xffffffffL;
+            final long mtimeNanos = buffer.getInt(pos + 12) & 0xffffffffL;
+            final int mode = buffer.getInt(pos + 24);
+            final long size = buffer.getInt(pos + 36) & 0xffffffffL;
+            final int idPos = pos + STAT_SIZE;
+            final int flags = buffer.getShort(idPos + hashLength) & 0xffff;
+            pos = idPos + hashLength + 2;
+
+            if ((flags & FLAG_EXTENDED) != 0) {
+                if (version < 3) {
+                    return null;
+                }
+
+                pos += 2;
+            }
+
+            if (version == 4) {
+                // name is stored as number of bytes to remove from the end
+                // of previous name followed by the suffix to append
+                int value = bytes[pos++] & 0xff;
+                int strip = value & 0x7f;
+
+                while ((value & 0x80) != 0) {
+                    value = bytes[pos++] & 0xff;
+                    strip = ((strip + 1) << 7) | (value & 0x7f);
+                }
+
+                final int nameEnd = indexOfNul(bytes, pos);
+                nameLength -= strip;
+                name = ensureCapacity(name, nameLength + nameEnd - pos);
+                System.arraycopy(bytes, pos, name, nameLength, nameEnd - pos);
+                nameLength += nameEnd - pos;
+                pos = nameEnd + 1;
+            } else {
+                nameLength = indexOfNul(bytes, pos) - pos;
+                name = ensureCapacity(name, nameLength);
+                System.arraycopy(bytes, pos, name, 0, nameLength);
+                // entries are padded with 1-8 NUL bytes to multiple of 8
+                pos = start + ((pos - start + nameLength + 8) & ~7);
+            }
+
+            if ((flags & FLAG_STAGE) == 0
+                    && (mode & MODE_TYPE) == MODE_TYPE_FILE
+                    && isEbuildPath(name, nameLength)) {
+                final long lastModified
+                        = mtimeSeconds * 1000 + mtimeNanos / 1_000_000;
+                ebuilds.put(
+                        new String(name, 0, nameLength, StandardCharsets.UTF_8),
+                        new Entry(toHex(bytes, idPos, hashLength), size,
+                                lastModified, lastModified >= timestamp));
+            }
+        }
+
+        final int end = bytes.length - hashLength;
+
+        while (pos + 8 <= end) {
+            final String signature = new String(bytes, pos, 4,
+                    StandardCharsets.US_ASCII);
+
+            if ("link".equals(signature) || "sdir".equals(signature)) {
+                return null;
+            }
+
+            pos += 8 + buffer.getInt(pos + 4);
+        }
+
+        return new GitIndex(commit, ebuilds);
+    }
+
+    /**
+     * Makes sure the buffer has at least specified capacity.
+     *
+     * @param buffer   buffer
+     * @param capacity required capacity
+     *
+     * @return the buffer or bigger copy of it
+     */
+    private static byte[] ensureCapacity(final byte[] buffer,
+            final int capacity) {
+        if (capacity <= buffer.length) {
+            return buffer;
+        }
+
+        return Arrays.copyOf(buffer, Math.max(capacity, buffer.length * 2));
+    }
+
+    /**
+     * Reads first line of the file.
+     *
+     * @param file file path
+     *
+     * @return first line of the file without surrounding white space or null
+     *         if the file does not exist
+     *
+     * @throws IOException Thrown if the file could not be read.
+     */
+    private static String readFirstLine(final Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+
+        final String content
+                = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        final int pos = content.indexOf('\n');
+
+        return (pos == -1 ? content : content.substring(0, pos)).trim();
+    }
+
+    /**
+     * Resolves id of HEAD commit.
+     *
+     * @param gitDir git directory
+     *
+     * @return commit id or null if it could not be resolved
+     *
+     * @throws IOException Thrown if git files could not be read.
+     */
+    private static String readHead(final Path gitDir) throws IOException {
+        final String head = readFirstLine(gitDir.resolve("HEAD"));
+
+        if (head == null) {
+            return null;
+        } else if (!head.startsWith("ref:")) {
+            return isObjectId(head) ? head : null;
+        }
+
+        final String ref = head.substring("ref:".length()).trim();
+        final String commonDirLine = readFirstLine(gitDir.resolve("commondir"));
+        final Path commonDir = commonDirLine == null
+                ? gitDir : gitDir.resolve(commonDirLine).normalize();
+
+        for (final Path dir : Arrays.asList(gitDir, commonDir)) {
+            final String id = readFirstLine(dir.resolve(ref));
+
+            if (id != null) {
+                return isObjectId(id) ? id : null;
+            }
+        }
+
+        final Path packedRefs = commonDir.resolve("packed-refs");
+
+        if (Files.isRegularFile(packedRefs)) {
+            for (final String line : Files.readAllLines(packedRefs,
+                    StandardCharsets.UTF_8)) {
+                final int pos = line.indexOf(' ');
+
+                if (pos != -1 && ref.equals(line.substring(pos + 1))) {
+                    final String id = line.substring(0, pos);
+
+                    return isObjectId(id) ? id : null;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Converts bytes to hexadecimal string.
+     *
+     * @param bytes  bytes
+     * @param offset offset of the first byte
+     * @param length number of bytes
+     *
+     * @return hexadecimal string
+     */
+    private static String toHex(final byte[] bytes, final int offset,
+            final int length) {
+        final char[] result = new char[length * 2];
+
+        for (int i = 0; i < length; i++) {
+            result[i * 2] = HEX_DIGITS[(bytes[offset + i] >> 4) & 0xf];
+            result[i * 2 + 1] = HEX_DIGITS[bytes[offset + i] & 0xf];
+        }
+
+        return new String(result);
+    }
+
+    /**
+     * Verifies checksum at the end of the index file.
+     *
+     * @param bytes      index file content
+     * @param hashLength length of hash
+     *
+     * @return true if the checksum is valid, otherwise false
+     */
+    private static boolean verifyChecksum(final byte[] bytes,
+            final int hashLength) {
+        final MessageDigest digest;
+
+        try {
+            digest = MessageDigest.getInstance(
+                    hashLength == 20 ? "SHA-1" : "SHA-256");
+        } catch (final NoSuchAlgorithmException ex) {
+            throw new RuntimeException("Hash algorithm is not available", ex);
+        }
+
+        digest.update(bytes, 0, bytes.length - hashLength);
+
+        return Arrays.equals(digest.digest(), Arrays.copyOfRange(bytes,
+                bytes.length - hashLength, bytes.length));
+    }
+
+    /**
+     * HEAD commit id.
+     */
+    private final String commit;
+    /**
+     * Entries of tracked ebuilds by path relative to the tree root.
+     */
+    private final Map<String, Entry> ebuilds;
+
+    /**
+     * Creates new instance of GitIndex.
+     *
+     * @param commit  {@link #commit}
+     * @param ebuilds {@link #ebuilds}
+     */
+    private GitIndex(final String commit, final Map<String, Entry> ebuilds) {
+        this.commit = commit;
+        this.ebuilds = ebuilds;
+    }
+
+    /**
+     * Getter for {@link #commit}.
+     *
+     * @return {@link #commit}
+     */
+    String getCommit() {
+        return commit;
+    }
+
+    /**
+     * Returns index entry of the ebuild.
+     *
+     * @param path ebuild path relative to the tree root, with / as separator
+     *
+     * @return index entry or null if the ebuild is not tracked
+     */
+    Entry getEbuild(final String path) {
+        return ebuilds.get(path);
+    }
+
+    /**
+     * Index entry of single ebuild.
+     */
+    static class Entry {
+
+        /**
+         * Ebuild modification time in milliseconds as recorded in the index.
+         */
+        private final long lastModified;
+        /**
+         * Blob id of the ebuild.
+         */
+        private final String objectId;
+        /**
+         * Whether the ebuild was modified after the index was written, in
+         * which case the recorded modification time cannot tell whether the
+         * ebuild changed.
+         */
+        private final boolean racy;
+        /**
+         * Lower 32 bits of ebuild size as recorded in the index.
+         */
+        private final long size;
+
+        /**
+         * Creates new instance of Entry.
+         *
+         * @param objectId     {@link #objectId}
+         * @param size         {@link #size}
+         * @param lastModified {@link #lastModified}
+         * @param racy         {@link #racy}
+         */
+        Entry(final String objectId, final long size,
+                final long lastModified, final boolean racy) {
+            this.objectId = objectId;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.racy = racy;
+        }
+
+        /**
+         * Getter for {@link #objectId}.
+         *
+         * @return {@link #objectId}
+         */
+        String getObjectId() {
+            return objectId;
+        }
+
+        /**
+         * Checks whether the ebuild in working tree has the content recorded
+         * in the index, that is whether it was not modified locally.
+         *
+         * @param size         current ebuild size
+         * @param lastModified current ebuild modification time
+         *
+         * @return true if the ebuild content matches the blob, otherwise
+         *         false
+         */
+        boolean isClean(final long size, final long lastModified) {
+            return !racy && this.size == (size & 0xffffffffL)
+                    && this.lastModified == lastModified;
+        }
+    }
+}
@@ -15,11 +15,6 @@ public class MavenVersion implements Comparable<MavenVersion> {
      */
     private static final Pattern PATTERN_VERSION = Pattern.compile(
             "^[vr]?(\\d+)(?:\\.(\\d+))?(?:(?:\\.|b|beta)(\\d+))?(?:[\\.-]?(.*))?$");
-    /**
-     * Pattern for parsing maven version range.
-     */
-    private static final Pattern PATTERN_VERSION_RANGE
-            = Pattern.compile("[\\[\\(](.*), ?(.*?)[\\]\\)]");
     /**
      * Incremental version number.
      */
@@ -49,20 +44,11 @@ public class MavenVersion implements Comparable<MavenVersion> {
     public MavenVersion(final String version) {
         this.version = version;
 
-        final Matcher matcherRange = PATTERN_VERSION_RANGE.matcher(version);
-        final String useVersion;
-
-        if (matcherRange.matches()) {
-            useVersion = matcherRange.group(1);
-        } else {
-            useVersion = version;
-        }
-
-        final Matcher matcher = PATTERN_VERSION.matcher(useVersion);
+        final Matcher matcher = PATTERN_VERSION.matcher(version);
 
         if (!matcher.matches()) {
             throw new RuntimeException(
-                    "Maven version " + useVersion + " is not valid.");
+                    "Maven version " + version + " is not valid.");
         }
 
         majorVersion = Integer.parseInt(matcher.group(1), 10);
@@ -70,7 +56,28 @@ public class MavenVersion implements Comparable<MavenVersion> {
                 ? 0 : Integer.parseInt(matcher.group(2), 10);
         incrementalVersion = matcher.group(3) == null
                 ? 0 : Integer.parseInt(matcher.group(3), 10);
-        qualifier = matcher.group(4) == null ? "" : matcher.group(4).toLowerCase();
+        qualifier = matcher.group(4) == null
+                ? "" : matcher.group(4).toLowerCase();
+    }
+
+    /**
+     * Creates new instance of MavenVersion from already parsed version
+     * components.
+     *
+     * @param version            {@link #version}
+     * @param majorVersion       {@link #majorVersion}
+     * @param minorVersion       {@link #minorVersion}
+     * @param incrementalVersion {@link #incrementalVersion}
+     * @param qualifier          {@link #qualifier}
+     */
+    MavenVersion(final String version, final int majorVersion,
+            final int minorVersion, final int incrementalVersion,
+            final String qualifier) {
+        this.version = version;
+        this.majorVersion = majorVersion;
+        this.minorVersion = minorVersion;
+        this.incrementalVersion = incrementalVersion;
+        this.qualifier = qualifier;
     }
 
     @Override
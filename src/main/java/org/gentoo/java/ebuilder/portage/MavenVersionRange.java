@@ -0,0 +1,313 @@
+package org.gentoo.java.ebuilder.portage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maven version requirement, either soft requirement like {@code 1.0} or
+ * version ranges like {@code [1.0]}, {@code [1.0,2.0)}, {@code (,1.0]} or
+ * {@code (,1.0],[1.2,)}. Soft requirement is treated as range without upper
+ * bound.
+ */
+public final class MavenVersionRange {
+
+    /**
+     * Restrictions sorted by their lower bounds.
+     */
+    private final List<Restriction> restrictions;
+    /**
+     * Whether the requirement is soft requirement without range.
+     */
+    private final boolean soft;
+    /**
+     * Original version requirement string.
+     */
+    private final String version;
+
+    /**
+     * Creates new instance of MavenVersionRange.
+     *
+     * @param version version requirement string
+     */
+    public MavenVersionRange(final String version) {
+        this.version = version;
+
+        final String spec = version.trim();
+
+        if (spec.isEmpty() || spec.charAt(0) != '[' && spec.charAt(0) != '(') {
+            soft = true;
+            restrictions = List.of(new Restriction(new MavenVersion(spec),
+                    true, null, false));
+
+            return;
+        }
+
+        final List<Restriction> result = new ArrayList<>(2);
+        int pos = 0;
+
+        while (pos < spec.length()) {
+            final int end = indexOfRangeEnd(spec, pos);
+
+            if (end == -1) {
+                throw new RuntimeException(
+                        "Maven version range " + version + " is not valid.");
+            }
+
+            final Restriction restriction
+                    = parseRestriction(spec.substring(pos, end + 1));
+
+            if (!result.isEmpty() && result.get(result.size() - 1)
+                    .compareLowerBound(restriction) > 0) {
+                throw new RuntimeException("Ranges of maven version range "
+                        + version + " are not sorted.");
+            }
+
+            result.add(restriction);
+            pos = end + 1;
+
+            while (pos < spec.length()
+                    && (spec.charAt(pos) == ',' || spec.charAt(pos) == ' ')) {
+                pos++;
+            }
+
+            if (pos < spec.length() && spec.charAt(pos) != '['
+                    && spec.charAt(pos) != '(') {
+                throw new RuntimeException(
+                        "Maven version range " + version + " is not valid.");
+            }
+        }
+
+        soft = false;
+        restrictions = List.copyOf(result);
+    }
+
+    /**
+     * Checks whether the version is within the range.
+     *
+     * @param mavenVersion maven version
+     *
+     * @return true if the version is within any of the restrictions,
+     *         otherwise false
+     */
+    public boolean containsVersion(final MavenVersion mavenVersion) {
+        for (final Restriction restriction : restrictions) {
+            if (restriction.containsVersion(mavenVersion)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Getter for {@link #restrictions}.
+     *
+     * @return {@link #restrictions}
+     */
+    public List<Restriction> getRestrictions() {
+        return restrictions;
+    }
+
+    /**
+     * Getter for {@link #version}.
+     *
+     * @return {@link #version}
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * Getter for {@link #soft}.
+     *
+     * @return {@link #soft}
+     */
+    public boolean isSoft() {
+        return soft;
+    }
+
+    /**
+     * Returns position of the character that ends range starting at
+     * specified position.
+     *
+     * @param spec version requirement
+     * @param pos  start position of the range
+     *
+     * @return position of ] or ) or -1 if the range is not closed
+     */
+    private static int indexOfRangeEnd(final String spec, final int pos) {
+        for (int i = pos + 1; i < spec.length(); i++) {
+            if (spec.charAt(i) == ']' || spec.charAt(i) == ')') {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Parses single range.
+     *
+     * @param range range including the brackets
+     *
+     * @return restriction
+     */
+    private Restriction parseRestriction(final String range) {
+        final boolean lowerInclusive = range.charAt(0) == '[';
+        final boolean upperInclusive = range.charAt(range.length() - 1) == ']';
+        final String content = range.substring(1, range.length() - 1).trim();
+        final int comma = content.indexOf(',');
+
+        if (comma == -1) {
+            if (!lowerInclusive || !upperInclusive || content.isEmpty()) {
+                throw new RuntimeException(
+                        "Maven version range " + version + " is not valid.");
+            }
+
+            final MavenVersion mavenVersion = new MavenVersion(content);
+
+            return new Restriction(mavenVersion, true, mavenVersion, true);
+        }
+
+        final String lower = content.substring(0, comma).trim();
+        final String upper = content.substring(comma + 1).trim();
+        final Restriction restriction = new Restriction(
+                lower.isEmpty() ? null : new MavenVersion(lower),
+                lowerInclusive,
+                upper.isEmpty() ? null : new MavenVersion(upper),
+                upperInclusive);
+
+        if (restriction.getLowerBound() != null
+                && restriction.getUpperBound() != null
+                && restriction.getLowerBound().compareTo(
+                        restriction.getUpperBound()) > 0) {
+            throw new RuntimeException("Maven version range " + version
+                    + " has lower bound greater than upper bound.");
+        }
+
+        return restriction;
+    }
+
+    /**
+     * Single interval of versions.
+     */
+    public static final class Restriction {
+
+        /**
+         * Lower bound or null if there is no lower bound.
+         */
+        private final MavenVersion lowerBound;
+        /**
+         * Whether lower bound is part of the interval.
+         */
+        private final boolean lowerBoundInclusive;
+        /**
+         * Upper bound or null if there is no upper bound.
+         */
+        private final MavenVersion upperBound;
+        /**
+         * Whether upper bound is part of the interval.
+         */
+        private final boolean upperBoundInclusive;
+
+        /**
+         * Creates new instance of Restriction.
+         *
+         * @param lowerBound          {@link #lowerBound}
+         * @param lowerBoundInclusive {@link #lowerBoundInclusive}
+         * @param upperBound          {@link #upperBound}
+         * @param upperBoundInclusive {@link #upperBoundInclusive}
+         */
+        Restriction(final MavenVersion lowerBound,
+                final boolean lowerBoundInclusive,
+                final MavenVersion upperBound,
+                final boolean upperBoundInclusive) {
+            this.lowerBound = lowerBound;
+            this.lowerBoundInclusive = lowerBoundInclusive;
+            this.upperBound = upperBound;
+            this.upperBoundInclusive = upperBoundInclusive;
+        }
+
+        /**
+         * Checks whether the version is within the interval.
+         *
+         * @param mavenVersion maven version
+         *
+         * @return true if the version is within the interval, otherwise false
+         */
+        public boolean containsVersion(final MavenVersion mavenVersion) {
+            if (lowerBound != null) {
+                final int result = lowerBound.compareTo(mavenVersion);
+
+                if (result > 0 || result == 0 && !lowerBoundInclusive) {
+                    return false;
+                }
+            }
+
+            if (upperBound != null) {
+                final int result = upperBound.compareTo(mavenVersion);
+
+                if (result < 0 || result == 0 && !upperBoundInclusive) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * Getter for {@link #lowerBound}.
+         *
+         * @return {@link #lowerBound}
+         */
+        public MavenVersion getLowerBound() {
+            return lowerBound;
+        }
+
+        /**
+         * Getter for {@link #upperBound}.
+         *
+         * @return {@link #upperBound}
+         */
+        public MavenVersion getUpperBound() {
+            return upperBound;
+        }
+
+        /**
+         * Getter for {@link #lowerBoundInclusive}.
+         *
+         * @return {@link #lowerBoundInclusive}
+         */
+        public boolean isLowerBoundInclusive() {
+            return lowerBoundInclusive;
+        }
+
+        /**
+         * Getter for {@link #upperBoundInclusive}.
+         *
+         * @return {@link #upperBoundInclusive}
+         */
+        public boolean isUpperBoundInclusive() {
+            return upperBoundInclusive;
+        }
+
+        /**
+         * Compares lower bound of this restriction with lower bound of other
+         * restriction, missing lower bound is the lowest.
+         *
+         * @param other other restriction
+         *
+         * @return negative number, zero or positive number if this lower bound
+         *         is less than, equal to or greater than the other one
+         */
+        private int compareLowerBound(final Restriction other) {
+            if (lowerBound == null) {
+                return other.lowerBound == null ? 0 : -1;
+            } else if (other.lowerBound == null) {
+                return 1;
+            }
+
+            return lowerBound.compareTo(other.lowerBound);
+        }
+    }
+}
@@ -1,15 +1,10 @@
 package org.gentoo.java.ebuilder.portage;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -17,9 +12,13 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.gentoo.java.ebuilder.Config;
 
 /**
@@ -41,6 +40,18 @@ public class PortageParser {
      * Current java optional package eclass name.
      */
     private static final String ECLASS_JAVA_PKG_OPT = "java-pkg-opt-2";
+    /**
+     * Key of directly inherited eclasses in md5-cache entry.
+     */
+    private static final String METADATA_INHERIT = "INHERIT";
+    /**
+     * Key of all inherited eclasses and their checksums in md5-cache entry.
+     */
+    private static final String METADATA_ECLASSES = "_eclasses_";
+    /**
+     * Key of SLOT in md5-cache entry.
+     */
+    private static final String METADATA_SLOT = "SLOT";
     /**
      * Pattern for parsing ebuild file name.
      */
@@ -57,13 +68,6 @@ public class PortageParser {
     private static final Pattern PATTERN_SLOT_VERSION_COMPOPONENT_RANGE
             = Pattern.compile(
                     "^\\$\\(get_version_component_range (\\d+)-(\\d+)\\)$");
-    /**
-     * Pattern for checking whether the line contains variable declaration. It
-     * does not handle correctly variables spread across several lines but we
-     * most probably do not care about these.
-     */
-    private static final Pattern PATTERN_VARIABLE = Pattern.compile(
-            "^(\\S+?)=(.*)$");
 
     /**
      * Parses ebuild name into map. Keys are:
@@ -105,77 +109,187 @@ public class PortageParser {
     }
 
     /**
-     * List of cache items. This list is populated during parsing the tree.
+     * Writer of cache items found during parsing the tree.
+     */
+    private SortedCacheWriter cacheWriter;
+    /**
+     * Ebuild buffers of parsing threads.
+     */
+    private final ThreadLocal<EbuildBuffer> ebuildBuffers
+            = ThreadLocal.withInitial(EbuildBuffer::new);
+    /**
+     * Buffers of parsing threads for md5-cache entries.
+     */
+    private final ThreadLocal<EbuildBuffer> metadataBuffers
+            = ThreadLocal.withInitial(EbuildBuffer::new);
+    /**
+     * Used for cellecting counts of java eclasses. The map and the counters
+     * are updated concurrently when the tree is parsed using several jobs.
+     */
+    private final Map<String, LongAdder> eclassesCounts
+            = new ConcurrentHashMap<>(10);
+    /**
+     * Manifest of ebuilds parsed during this refresh.
+     */
+    private CacheManifest manifest;
+    /**
+     * Whether md5-cache entries should be read before ebuilds.
      */
-    private final List<CacheItem> cacheItems = new ArrayList<>(40_000);
+    private boolean md5CacheFirst;
     /**
-     * Used for cellecting counts of java eclasses.
+     * Number of ebuilds that were actually parsed because they were not found
+     * in the previous manifest or they changed since.
      */
-    private final Map<String, Integer> eclassesCounts = new HashMap<>(10);
+    private final LongAdder parsedEbuilds = new LongAdder();
+    /**
+     * Manifest from the previous refresh.
+     */
+    private CacheManifest previousManifest;
     /**
      * Number of processed categories. Updated during parsing the tree.
      */
-    private int processedCategories;
+    private final LongAdder processedCategories = new LongAdder();
     /**
      * Number of processed ebuilds. Updated during parsing the tree.
      */
-    private int processedEbuilds;
+    private final LongAdder processedEbuilds = new LongAdder();
     /**
      * Number of processed packages. Updated during parsing the tree.
      */
-    private int processedPackages;
+    private final LongAdder processedPackages = new LongAdder();
 
     /**
      * Parses portage tree at specified path and create ebuild cache at
-     * ~/.java-ebuilder/cache.
+     * ~/.java-ebuilder/cache. If more than one job is configured, all trees
+     * and their packages are parsed in parallel using fork-join pool of that
+     * size. Trees specified later have higher priority, their ebuilds shadow
+     * the same ebuild versions and the same provided maven artifacts from
+     * trees specified earlier. Unless full
+     * refresh is requested, only ebuilds that changed since the previous
+     * refresh are parsed, the rest is taken from the cache manifest. For
+     * trees that are git checkouts, blob ids from the git index tell whether
+     * tracked ebuilds changed.
      *
      * @param config application configuration
      */
     public void parseTree(final Config config) {
         final long startTimestamp = System.currentTimeMillis();
-        cacheItems.clear();
-        processedCategories = 0;
-        processedPackages = 0;
-        processedEbuilds = 0;
-        eclassesCounts.clear();
+        final Path manifestFile
+                = CacheManifest.getManifestFile(config.getCacheFile());
+        final File cacheDir = config.getCacheFile().getParent().toFile();
 
-        for (Path portageTree : config.getPortageTree()) {
-            config.getStdoutWriter().println("Parsing portage tree @ "
-                    + portageTree + " ...");
-            parseCategories(portageTree);
+        if (!cacheDir.exists()) {
+            cacheDir.mkdirs();
         }
 
-        final long endTimestamp = System.currentTimeMillis();
+        previousManifest = config.isFullRefresh()
+                ? new CacheManifest() : CacheManifest.read(manifestFile);
+        md5CacheFirst = config.isMd5CacheFirst();
+        parsedEbuilds.reset();
+        processedCategories.reset();
+        processedPackages.reset();
+        processedEbuilds.reset();
+        eclassesCounts.clear();
+
+        final int previousManifestSize = previousManifest.size();
+        final ForkJoinPool pool = config.getJobs() > 1
+                ? new ForkJoinPool(config.getJobs()) : null;
+
+        try (final SortedCacheWriter writer
+                = new SortedCacheWriter(config.getCacheFile());
+                final CacheManifest newManifest
+                = CacheManifest.create(manifestFile)) {
+            cacheWriter = writer;
+            manifest = newManifest;
+
+            final List<ForkJoinTask<?>> tasks
+                    = new ArrayList<>(config.getPortageTree().size());
+            int tree = 0;
+
+            for (Path portageTree : config.getPortageTree()) {
+                config.getStdoutWriter().println("Parsing portage tree @ "
+                        + portageTree + " ...");
+
+                final int treeIndex = tree++;
+                final GitIndex gitIndex = config.isFullRefresh()
+                        ? null : GitIndex.read(portageTree);
+
+                if (gitIndex != null) {
+                    config.getStdoutWriter().println(MessageFormat.format(
+                            "Using git index @ commit {0}",
+                            gitIndex.getCommit()));
+                }
+
+                final Runnable task = () -> parseCategories(portageTree,
+                        treeIndex, gitIndex, pool != null);
+
+                if (pool == null) {
+                    task.run();
+                } else {
+                    tasks.add(pool.submit(task));
+                }
+            }
+
+            tasks.forEach(ForkJoinTask::join);
+
+            final long endTimestamp = System.currentTimeMillis();
+
+            config.getStdoutWriter().print(MessageFormat.format(
+                    "Parsed {0} categories {1} packages {2} ebuilds in {3}ms "
+                    + "and found {4} java ebuilds",
+                    processedCategories.sum(), processedPackages.sum(),
+                    processedEbuilds.sum(), endTimestamp - startTimestamp,
+                    writer.getCount()));
+
+            final List<String> sortedEclasses
+                    = new ArrayList<>(eclassesCounts.keySet());
+            Collections.sort(sortedEclasses);
 
-        config.getStdoutWriter().print(MessageFormat.format(
-                "Parsed {0} categories {1} packages {2} ebuilds in {3}ms and "
-                + "found {4} java ebuilds",
-                processedCategories, processedPackages, processedEbuilds,
-                endTimestamp - startTimestamp, cacheItems.size()));
+            config.getStdoutWriter().print((" (used java eclasses: "));
 
-        final List<String> sortedEclasses
-                = new ArrayList<>(eclassesCounts.keySet());
-        Collections.sort(sortedEclasses);
+            for (int i = 0; i < sortedEclasses.size(); i++) {
+                if (i > 0) {
+                    config.getStdoutWriter().print(", ");
+                }
 
-        config.getStdoutWriter().print((" (used java eclasses: "));
+                final String eclass = sortedEclasses.get(i);
 
-        for (int i = 0; i < sortedEclasses.size(); i++) {
-            if (i > 0) {
-                config.getStdoutWriter().print(", ");
+                config.getStdoutWriter().print(eclass);
+                config.getStdoutWriter().print(" = ");
+                config.getStdoutWriter().print(
+                        eclassesCounts.get(eclass).sum());
             }
 
-            final String eclass = sortedEclasses.get(i);
+            config.getStdoutWriter().println(")");
 
-            config.getStdoutWriter().print(eclass);
-            config.getStdoutWriter().print(" = ");
-            config.getStdoutWriter().print(eclassesCounts.get(eclass));
-        }
+            if (previousManifestSize > 0) {
+                config.getStdoutWriter().println(MessageFormat.format(
+                        "Parsed {0} new or changed ebuilds, {1} ebuilds were "
+                        + "taken from cache manifest",
+                        parsedEbuilds.sum(),
+                        processedEbuilds.sum() - parsedEbuilds.sum()));
+            }
 
-        config.getStdoutWriter().println(")");
+            config.getStdoutWriter().print("Writing cache file...");
+            writer.write(config.getCacheFormat());
+            newManifest.commit();
+            config.getResolutionMemoFile().toFile().delete();
+            config.getStdoutWriter().println("done");
 
-        config.getStdoutWriter().print("Writing cache file...");
-        writeCacheFile(config);
-        config.getStdoutWriter().println("done");
+            if (writer.getDropped() > 0) {
+                config.getStdoutWriter().println(MessageFormat.format(
+                        "Dropped {0} cache items shadowed by portage trees "
+                        + "with higher priority", writer.getDropped()));
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+
+            cacheWriter = null;
+            previousManifest = null;
+            manifest = null;
+        }
     }
 
     /**
@@ -185,77 +299,133 @@ public class PortageParser {
      */
     private void countEclasses(final List<String> eclasses) {
         eclasses.forEach((eclass) -> {
-            final Integer count = eclassesCounts.get(eclass);
-
-            if (count == null) {
-                eclassesCounts.put(eclass, 1);
-            } else {
-                eclassesCounts.put(eclass, count + 1);
-            }
+            eclassesCounts.computeIfAbsent(eclass, (key) -> new LongAdder()).
+                    increment();
         });
     }
 
     /**
-     * Extracts the most important java eclass from ebuild inherit line.
+     * Returns path to md5-cache entry of the ebuild.
      *
-     * @param inheritLine ebuild inherit line
+     * @param ebuild ebuild path
      *
-     * @return list of inherited java eclasses or null
+     * @return md5-cache entry path
      */
-    private List<String> getJavaInheritEclasses(final String inheritLine) {
-        final String[] lines
-                = inheritLine.replaceAll("^inherit\\s+", "").split("\\s+");
+    private Path getMetadataFile(final File ebuild) {
+        final String filename = ebuild.getName().substring(0,
+                ebuild.getName().length() - ".ebuild".length());
 
-        return Arrays.stream(lines).
-                filter((line) -> line.startsWith("java-")
-                || ECLASS_ANT_TASKS.equals(line)).
-                collect(Collectors.toList());
+        return Paths.get(ebuild.getParent(), "..", "..", "metadata",
+                "md5-cache", ebuild.getParentFile().getParentFile().getName(),
+                filename).normalize();
     }
 
     /**
-     * Parses categories in the portage tree root.
+     * Extracts java eclasses from the value of current lexer token.
+     *
+     * @param lexer     lexer positioned at inherit command or at md5-cache
+     *                  value with eclasses
+     * @param checksums whether every eclass name is followed by its checksum
+     *                  like in _eclasses_ value of md5-cache entry
+     *
+     * @return list of java eclasses, empty list if there is none
+     */
+    private List<String> getJavaEclasses(final EbuildLexer lexer,
+            final boolean checksums) {
+        List<String> result = null;
+        boolean eclassName = true;
+
+        while (lexer.nextWord()) {
+            if (eclassName && (lexer.wordStartsWith("java-")
+                    || lexer.isWord(ECLASS_ANT_TASKS))) {
+                if (result == null) {
+                    result = new ArrayList<>(3);
+                }
+
+                result.add(lexer.getWord());
+            }
+
+            eclassName = !checksums || !eclassName;
+        }
+
+        return result == null ? Collections.emptyList() : result;
+    }
+
+    /**
+     * Parses categories in the portage tree root. Packages of all categories
+     * are collected first so that the work can be split evenly when parsing in
+     * parallel. Found cache items are passed to the cache writer, which
+     * orders them the same way regardless of whether the packages were parsed
+     * in parallel, so that the cache file is identical.
      *
      * @param treePath portage tree path
+     * @param tree     index of the tree
+     * @param gitIndex git index of the tree or null if the tree is not a git
+     *                 checkout
+     * @param parallel whether packages should be parsed in parallel
      */
-    private void parseCategories(final Path treePath) {
+    private void parseCategories(final Path treePath, final int tree,
+            final GitIndex gitIndex, final boolean parallel) {
         final File[] categories = treePath.toFile().listFiles(
                 (final File pathname) -> pathname.isDirectory());
+        final List<File> packages = new ArrayList<>(20_000);
 
         for (final File category : categories) {
-            parseCategory(category);
-            processedCategories++;
+            packages.addAll(parseCategory(category));
+            processedCategories.increment();
         }
+
+        final Stream<File> stream = parallel
+                ? packages.parallelStream() : packages.stream();
+
+        stream.forEach((pkg) -> parsePackage(pkg, tree, gitIndex));
     }
 
     /**
-     * Parses category and its packages.
+     * Lists packages of the category.
      *
      * @param category category path
+     *
+     * @return list of package paths
      */
-    private void parseCategory(final File category) {
+    private List<File> parseCategory(final File category) {
         final File[] packages = category.listFiles(
                 (final File pathname) -> pathname.isDirectory());
 
-        for (final File pkg : packages) {
-            parsePackage(pkg);
-            processedPackages++;
+        if (packages == null) {
+            return Collections.emptyList();
         }
+
+        processedPackages.add(packages.length);
+
+        return Arrays.asList(packages);
     }
 
     /**
-     * Parses single ebuild.
+     * Parses single ebuild. In md5-cache first mode, md5-cache entry of the
+     * ebuild is read first and if it does not inherit any java eclass, the
+     * ebuild is skipped without being read. Otherwise the ebuild itself is
+     * read only for the variables that are not part of md5-cache entry.
+     * Without md5-cache entry, the raw bytes of the ebuild are checked for
+     * inherited java eclasses first and the ebuild is lexed only if it might
+     * inherit some.
      *
      * @param ebuild ebuild path
+     *
+     * @return list of cache items for the ebuild, empty list if it is not a
+     *         java ebuild
      */
-    private void parseEbuild(final File ebuild) {
-        final String filename = ebuild.getName().replaceAll("\\.ebuild$", "");
+    private List<CacheItem> parseEbuild(final File ebuild) {
+        final String filename = ebuild.getName().substring(0,
+                ebuild.getName().length() - ".ebuild".length());
         final String category
                 = ebuild.getParentFile().getParentFile().getName();
         final String pkg = ebuild.getParentFile().getName();
         final String version = filename.substring(pkg.length() + 1);
-        final Map<String, String> variables = new HashMap<>(20);
-        final Path ebuildMetadata = Paths.get(ebuild.getParent(), "..", "..",
-                "metadata", "md5-cache", category, filename).normalize();
+        final Path ebuildMetadata = getMetadataFile(ebuild);
+        EbuildMetadata metadata
+                = md5CacheFirst && Files.exists(ebuildMetadata)
+                ? readMetadata(ebuildMetadata) : null;
         List<String> eclasses = null;
         String slot = "0";
         String useFlag = null;
@@ -263,86 +433,59 @@ public class PortageParser {
         String groupId = null;
         String artifactId = null;
         String mavenVersion = null;
-        List<String> mavenProvide = new ArrayList<>();
+        final List<String> mavenProvide = new ArrayList<>(0);
 
-        boolean readingMultiLineMavenProvide = false;
-        try (final BufferedReader reader = new BufferedReader(
-                new InputStreamReader(Files.newInputStream(ebuild.toPath(),
-                        StandardOpenOption.READ)))) {
-            String line = reader.readLine();
+        if (metadata != null) {
+            eclasses = metadata.getEclasses();
 
-            while (line != null) {
-                line = line.trim();
+            if (eclasses.isEmpty()) {
+                return Collections.emptyList();
+            }
+        }
 
-                if (!line.isEmpty()) {
-                    final int pos = line.indexOf('#');
+        final EbuildBuffer buffer = ebuildBuffers.get();
 
-                    if (pos != -1) {
-                        line = line.substring(0, pos).trim();
-                    }
-                }
+        try {
+            buffer.read(ebuild.toPath());
+        } catch (final IOException ex) {
+            throw new RuntimeException("Failed to read ebuild", ex);
+        }
+
+        // most of the ebuilds are dropped here without decoding them
+        if (metadata == null && !buffer.mightInheritJavaEclass()) {
+            return Collections.emptyList();
+        }
+
+        final EbuildLexer lexer = buffer.lex();
+        int token = lexer.next();
+
+        while (token != EbuildLexer.END) {
+            if (token == EbuildLexer.INHERIT) {
+                // eclasses might be known from md5-cache entry
+                if (metadata == null) {
+                    eclasses = getJavaEclasses(lexer, false);
 
-                if (!line.isEmpty()) {
-                    // Check if a multi-line MAVEN_PROVIDES declaration is
-                    // being read
-                    if (readingMultiLineMavenProvide) {
-                        if (!line.startsWith("\"")) {
-                            // Line contains an artifact ID
-                            mavenProvide.add(line.replace("\"", ""));
-                        }
-                        if (line.contains("\"")) {
-                            // Closing double quote
-                            readingMultiLineMavenProvide = false;
-                        }
-                    } else {
-                        // Check if the line contains variable declaration
-                        final Matcher matcher = PATTERN_VARIABLE.matcher(line);
-
-                        if (matcher.matches()) {
-                            variables.put(matcher.group(1),
-                                    matcher.group(2).replaceAll("(^\"|\"$)", ""));
-                        }
-
-                        if (line.startsWith("inherit ")) {
-                            eclasses = getJavaInheritEclasses(line);
-
-                            if (eclasses == null || eclasses.isEmpty()) {
-                                return;
-                            }
-                        } else if (line.startsWith("SLOT=")) {
-                            slot = line.substring("SLOT=".length()).replace(
-                                    "\"", "").replaceAll("/.*", "");
-                        } else if (line.startsWith("JAVA_PKG_OPT_USE=")) {
-                            useFlag = line.substring("JAVA_PKG_OPT_USE=".length()).
-                                    replace("\"", "");
-                        } else if (line.startsWith("MAVEN_ID=")) {
-                            mavenId = line.substring("MAVEN_ID=".length()).
-                                    replace("\"", "");
-                        } else if (line.startsWith("MAVEN_PROVIDES=")) {
-                            boolean atMostOneDoubleQuote =
-                                    line.indexOf("\"") == line.lastIndexOf("\"");
-                            line = line.substring("MAVEN_PROVIDES=".length());
-                            if (!atMostOneDoubleQuote || !line.endsWith("\"")) {
-                                // Line contains an artifact ID
-                                mavenProvide.addAll(Arrays.asList(
-                                        line.replace("\"", "").split(" ")));
-                            }
-                            if (atMostOneDoubleQuote && line.contains("\"")) {
-                                // Only one double quote -- multi-line declaration
-                                readingMultiLineMavenProvide = true;
-                            }
-                        }
+                    if (eclasses.isEmpty()) {
+                        return Collections.emptyList();
                     }
                 }
-
-                line = reader.readLine();
+            } else if (lexer.isName("SLOT")) {
+                slot = stripSubslot(lexer.getValue());
+            } else if (lexer.isName("JAVA_PKG_OPT_USE")) {
+                useFlag = lexer.getValue();
+            } else if (lexer.isName("MAVEN_ID")) {
+                mavenId = lexer.getValue();
+            } else if (lexer.isName("MAVEN_PROVIDES")) {
+                while (lexer.nextWord()) {
+                    mavenProvide.add(lexer.getWord());
+                }
             }
-        } catch (final IOException ex) {
-            throw new RuntimeException("Failed to read ebuild", ex);
+
+            token = lexer.next();
         }
 
         if (eclasses == null) {
-            return;
+            return Collections.emptyList();
         }
 
         if (eclasses.contains(ECLASS_JAVA_PKG_OPT) && useFlag == null) {
@@ -358,16 +501,18 @@ public class PortageParser {
             pv = version.substring(0, pos);
         }
 
-        if (Files.exists(ebuildMetadata)) {
-            slot = processSlot(slot, ebuildMetadata);
+        if (metadata == null && Files.exists(ebuildMetadata)) {
+            metadata = readMetadata(ebuildMetadata);
         }
-        else {
-            slot = processSlot(slot, pv, variables);
+
+        if (metadata == null) {
+            slot = processSlot(slot, pv, buffer);
+        } else if (metadata.getSlot() != null) {
+            slot = stripSubslot(metadata.getSlot());
         }
 
         if (mavenId != null) {
-            mavenId = mavenId.replaceAll("\\$(\\{PN\\}|PN)", pkg).
-                    replaceAll("\\$(\\{PV\\}|PV)", pv);
+            mavenId = replacePnPv(mavenId, pkg, pv);
 
             final String[] parts = mavenId.split(":");
 
@@ -390,26 +535,32 @@ public class PortageParser {
             }
         }
 
-        cacheItems.add(new CacheItem(category, pkg, version, slot, useFlag,
+        final List<CacheItem> result = new ArrayList<>(1 + mavenProvide.size());
+        result.add(new CacheItem(category, pkg, version, slot, useFlag,
                 groupId, artifactId, mavenVersion, eclasses));
 
         for (String providedId: mavenProvide) {
             // Allow declarations like MAVEN_PROVIDES="groupId:${PN}:${PV}"
-            providedId = providedId.replaceAll("\\$(\\{PN\\}|PN)", pkg).
-                    replaceAll("\\$(\\{PV\\}|PV)", pv);
+            providedId = replacePnPv(providedId, pkg, pv);
             final String[] parts = providedId.split(":");
-            cacheItems.add(new CacheItem(category, pkg, version, slot, useFlag,
+            result.add(new CacheItem(category, pkg, version, slot, useFlag,
                     parts[0], parts[1], parts[2], eclasses));
         }
         countEclasses(eclasses);
+
+        return result;
     }
 
     /**
      * Parses package and its ebuilds.
      *
-     * @param pkg package path
+     * @param pkg      package path
+     * @param tree     index of the tree
+     * @param gitIndex git index of the tree or null if the tree is not a git
+     *                 checkout
      */
-    private void parsePackage(final File pkg) {
+    private void parsePackage(final File pkg, final int tree,
+            final GitIndex gitIndex) {
         final File[] ebuilds = pkg.listFiles(
                 (final File pathname) -> pathname.isFile()
                 && pathname.getName().endsWith(".ebuild"));
@@ -418,60 +569,158 @@ public class PortageParser {
             return;
         }
 
+        final String pkgPath = pkg.getParentFile().getName() + '/'
+                + pkg.getName() + '/';
+
         for (final File ebuild : ebuilds) {
-            parseEbuild(ebuild);
-            processedEbuilds++;
+            final GitIndex.Entry indexEntry = gitIndex == null
+                    ? null : gitIndex.getEbuild(pkgPath + ebuild.getName());
+            cacheWriter.add(tree, processEbuild(ebuild, indexEntry));
+            processedEbuilds.increment();
         }
     }
 
     /**
-     * Processes various instructions in SLOT string.
+     * Processes single ebuild. If the ebuild did not change since the previous
+     * refresh, its cache items are taken from the previous manifest, otherwise
+     * the ebuild is parsed. Either way the ebuild is recorded in the new
+     * manifest. Blob id from git index identifies the ebuild content only if
+     * the ebuild was not modified locally, otherwise its size and
+     * modification time are compared. In md5-cache first mode, size and
+     * modification time of the md5-cache entry are compared too, as the
+     * entry decides whether the ebuild is parsed.
      *
-     * @param slot           SLOT string
-     * @param ebuildMetadata path to the metadata of the Gentoo package
+     * @param ebuild     ebuild path
+     * @param indexEntry git index entry of the ebuild or null if the ebuild
+     *                   is not tracked by git
      *
-     * @return processed SLOT string
+     * @return list of cache items for the ebuild
      */
-    private String processSlot(final String slot,
-            final Path ebuildMetadata) {
-        //final metadata = new File(ebuildMetadata.toString());
-        String result = slot;
-        try (final BufferedReader reader = new BufferedReader(
-                new InputStreamReader(Files.newInputStream(ebuildMetadata,
-                        StandardOpenOption.READ)))) {
-            String line = reader.readLine();
-            while (line != null) {
-                line = line.trim();
-
-                if (!line.isEmpty()) {
-                    if (line.startsWith("SLOT=")) {
-                        result = line.substring("SLOT=".length()).replace(
-                                "\"", "").replaceAll("/.*", "");
-                    }
-
-                line = reader.readLine();
-                }
+    private List<CacheItem> processEbuild(final File ebuild,
+            final GitIndex.Entry indexEntry) {
+        final String path = ebuild.getPath();
+        final long size = ebuild.length();
+        final long lastModified = ebuild.lastModified();
+        final String objectId
+                = indexEntry != null && indexEntry.isClean(size, lastModified)
+                ? indexEntry.getObjectId() : null;
+        final File metadataFile
+                = md5CacheFirst ? getMetadataFile(ebuild).toFile() : null;
+        final long metadataSize
+                = metadataFile == null ? -1 : metadataFile.length();
+        final long metadataLastModified
+                = metadataFile == null ? -1 : metadataFile.lastModified();
+        final CacheManifest.Entry entry = previousManifest.remove(path);
+        final List<CacheItem> result;
+
+        if (entry != null && entry.matches(size, lastModified, metadataSize,
+                metadataLastModified, objectId)) {
+            result = entry.getCacheItems();
+
+            if (!result.isEmpty()) {
+                countEclasses(result.get(0).getJavaEclasses());
             }
-        } catch (final IOException ex) {
-            throw new RuntimeException("Failed to read ebuild", ex);
+        } else {
+            result = parseEbuild(ebuild);
+            parsedEbuilds.increment();
         }
+
+        manifest.put(path, new CacheManifest.Entry(size, lastModified,
+                metadataSize, metadataLastModified, objectId, result));
+
         return result;
     }
 
     /**
-     * Processes various instructions in SLOT string.
+     * Reads values from md5-cache entry that are needed to decide whether the
+     * ebuild is a java ebuild and what its SLOT is.
      *
-     * @param slot      SLOT string
-     * @param pv        PV variable
-     * @param variables map of collected variables and their values
+     * @param ebuildMetadata path to the md5-cache entry of the ebuild
+     *
+     * @return ebuild metadata
+     */
+    private EbuildMetadata readMetadata(final Path ebuildMetadata) {
+        final EbuildBuffer buffer = metadataBuffers.get();
+
+        try {
+            buffer.read(ebuildMetadata);
+        } catch (final IOException ex) {
+            throw new RuntimeException("Failed to read ebuild metadata", ex);
+        }
+
+        final EbuildLexer lexer = buffer.lexMetadata();
+        List<String> inheritedEclasses = null;
+        List<String> allEclasses = null;
+        String slot = null;
+
+        while (lexer.next() != EbuildLexer.END) {
+            if (lexer.isName(METADATA_INHERIT)) {
+                inheritedEclasses = getJavaEclasses(lexer, false);
+            } else if (lexer.isName(METADATA_ECLASSES)) {
+                allEclasses = getJavaEclasses(lexer, true);
+            } else if (lexer.isName(METADATA_SLOT)) {
+                slot = lexer.getValue();
+            }
+        }
+
+        // directly inherited eclasses are preferred as that is what is
+        // found on inherit line of the ebuild
+        if (inheritedEclasses != null) {
+            return new EbuildMetadata(inheritedEclasses, slot);
+        } else if (allEclasses != null) {
+            return new EbuildMetadata(allEclasses, slot);
+        } else {
+            return new EbuildMetadata(Collections.emptyList(), slot);
+        }
+    }
+
+    /**
+     * Replaces PN and PV variables in the string.
+     *
+     * @param value string value
+     * @param pn    PN variable
+     * @param pv    PV variable
+     *
+     * @return string with replaced variables
+     */
+    private String replacePnPv(final String value, final String pn,
+            final String pv) {
+        if (value.indexOf('$') == -1) {
+            return value;
+        }
+
+        return value.replace("${PN}", pn).replace("$PN", pn).
+                replace("${PV}", pv).replace("$PV", pv);
+    }
+
+    /**
+     * Processes various instructions in SLOT string. Other variables of the
+     * ebuild are collected only if the SLOT refers to some.
+     *
+     * @param slot   SLOT string
+     * @param pv     PV variable
+     * @param buffer buffer containing the ebuild
      *
      * @return processed SLOT string
      */
     private String processSlot(final String slot, final String pv,
-            final Map<String, String> variables) {
-        String result = slot.replaceAll("\\$(\\{PV\\}|PV)", pv);
+            final EbuildBuffer buffer) {
+        String result = slot.indexOf('$') == -1
+                ? slot : slot.replace("${PV}", pv).replace("$PV", pv);
 
         if (result.indexOf('$') != -1) {
+            final Map<String, String> variables = new HashMap<>(20);
+            final EbuildLexer lexer = buffer.lex();
+            int token = lexer.next();
+
+            while (token != EbuildLexer.END) {
+                if (token == EbuildLexer.ASSIGNMENT) {
+                    variables.put(lexer.getName(), lexer.getValue());
+                }
+
+                token = lexer.next();
+            }
+
             for (final Map.Entry<String, String> variable
                     : variables.entrySet()) {
                 result = result.
@@ -517,70 +766,59 @@ public class PortageParser {
     }
 
     /**
-     * Writes cache items to the cache file.
+     * Strips sub-slot from SLOT string.
      *
-     * @param config application configuration
+     * @param slot SLOT string
+     *
+     * @return SLOT string without sub-slot
      */
-    private void writeCacheFile(final Config config) {
-        final File cacheDir = config.getCacheFile().getParent().toFile();
+    private String stripSubslot(final String slot) {
+        final int pos = slot.indexOf('/');
 
-        if (!cacheDir.exists()) {
-            cacheDir.mkdirs();
-        }
+        return pos == -1 ? slot : slot.substring(0, pos);
+    }
 
-        cacheItems.sort((
-                final CacheItem o1,
-                final CacheItem o2) -> {
-            if (o1.getCategory().compareTo(o2.getCategory()) != 0) {
-                return o1.getCategory().compareTo(o2.getCategory());
-            } else if (o1.getPkg().compareTo(o2.getPkg()) != 0) {
-                return o1.getPkg().compareTo(o2.getPkg());
-            } else {
-                return o1.getVersion().compareTo(o2.getVersion());
-            }
-        });
+    /**
+     * Values read from md5-cache entry of an ebuild.
+     */
+    private static class EbuildMetadata {
+
+        /**
+         * Inherited java eclasses.
+         */
+        private final List<String> eclasses;
+        /**
+         * Ebuild SLOT or null if not present.
+         */
+        private final String slot;
+
+        /**
+         * Creates new instance of EbuildMetadata.
+         *
+         * @param eclasses {@link #eclasses}
+         * @param slot     {@link #slot}
+         */
+        EbuildMetadata(final List<String> eclasses, final String slot) {
+            this.eclasses = eclasses;
+            this.slot = slot;
+        }
 
-        try (final OutputStreamWriter writer = new OutputStreamWriter(
-                Files.newOutputStream(config.getCacheFile(),
-                        StandardOpenOption.CREATE, StandardOpenOption.WRITE,
-                        StandardOpenOption.TRUNCATE_EXISTING),
-                Charset.forName("UTF-8"))) {
-            writer.write(CACHE_VERSION);
-            writer.write("\n#category:pkg:version:slot:useFlag:groupId:"
-                    + "artifactId:mavenVersion:javaEclass\n");
-
-            for (final CacheItem cacheItem : cacheItems) {
-                writer.write(cacheItem.getCategory());
-                writer.write(':');
-                writer.write(cacheItem.getPkg());
-                writer.write(':');
-                writer.write(cacheItem.getVersion());
-                writer.write(':');
-                writer.write(cacheItem.getSlot());
-                writer.write(':');
-                writer.write(cacheItem.getUseFlag() == null
-                        ? "" : cacheItem.getUseFlag());
-                writer.write(':');
-                writer.write(cacheItem.getGroupId() == null
-                        ? "" : cacheItem.getGroupId());
-                writer.write(':');
-                writer.write(cacheItem.getArtifactId() == null
-                        ? "" : cacheItem.getArtifactId());
-                writer.write(':');
-                writer.write(cacheItem.getMavenVersion() == null
-                        ? "" : cacheItem.getMavenVersion());
-                writer.write(':');
-
-                if (cacheItem.getJavaEclasses() != null
-                        && !cacheItem.getJavaEclasses().isEmpty()) {
-                    writer.write(String.join(",", cacheItem.getJavaEclasses()));
-                }
+        /**
+         * Getter for {@link #eclasses}.
+         *
+         * @return {@link #eclasses}
+         */
+        List<String> getEclasses() {
+            return eclasses;
+        }
 
-                writer.write('\n');
-            }
-        } catch (final IOException ex) {
-            throw new RuntimeException("Failed to write cache file @ "
-                    + config.getCacheFile(), ex);
+        /**
+         * Getter for {@link #slot}.
+         *
+         * @return {@link #slot}
+         */
+        String getSlot() {
+            return slot;
         }
     }
 }
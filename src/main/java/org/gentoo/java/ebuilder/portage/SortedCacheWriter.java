@@ -0,0 +1,821 @@
+package org.gentoo.java.ebuilder.portage;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Writer of cache file that does not need to keep all cache items in memory.
+ * Cache items are collected into a buffer of limited size. Whenever the buffer
+ * is full, it is sorted and spilled to temporary run file next to the cache
+ * file. At the end, the runs are merged into the cache file. Items with the
+ * same category, package and version are ordered by the index of the tree
+ * they come from and by their position within the ebuild, so the cache file
+ * is the same regardless of the order in which the items were added.
+ * <p>
+ * Trees with higher index have higher priority. Items of an ebuild are
+ * dropped if the same category, package and version is found in a tree with
+ * higher priority, like portage does. Items providing groupId:artifactId:version
+ * are dropped if the same groupId:artifactId:version is provided by an ebuild
+ * from a tree with higher priority. Provided artifacts are sorted into runs
+ * the same way as the items, so memory use does not grow with the number of
+ * provided artifacts either.
+ */
+class SortedCacheWriter implements Closeable {
+
+    /**
+     * Default maximum number of cache items kept in memory.
+     */
+    private static final int RUN_SIZE = 10_000;
+    /**
+     * Comparator of cache items in the cache file.
+     */
+    private static final Comparator<Item> ITEM_COMPARATOR
+            = Comparator.comparing((Item item) -> item.category).
+                    thenComparing((Item item) -> item.pkg).
+                    thenComparing((Item item) -> item.version).
+                    thenComparingInt((Item item) -> item.tree).
+                    thenComparingInt((Item item) -> item.position);
+
+    /**
+     * Buffer of cache items that were not spilled yet.
+     */
+    private final List<Item> buffer;
+    /**
+     * Cache file path.
+     */
+    private final Path cacheFile;
+    /**
+     * Number of added cache items.
+     */
+    private int count;
+    /**
+     * Highest index of tree that cache items were added from.
+     */
+    private int maxTree;
+    /**
+     * Spilled run files.
+     */
+    private final List<Path> runs = new ArrayList<>(10);
+    /**
+     * Maximum number of cache items kept in memory.
+     */
+    private final int runSize;
+    /**
+     * Number of cache items written to the cache file.
+     */
+    private int written;
+
+    /**
+     * Creates new instance of SortedCacheWriter.
+     *
+     * @param cacheFile {@link #cacheFile}
+     */
+    SortedCacheWriter(final Path cacheFile) {
+        this(cacheFile, RUN_SIZE);
+    }
+
+    /**
+     * Creates new instance of SortedCacheWriter.
+     *
+     * @param cacheFile {@link #cacheFile}
+     * @param runSize   {@link #runSize}
+     */
+    SortedCacheWriter(final Path cacheFile, final int runSize) {
+        this.cacheFile = cacheFile;
+        this.runSize = runSize;
+        buffer = new ArrayList<>(runSize);
+    }
+
+    /**
+     * Adds cache items of single ebuild. Can be called concurrently.
+     *
+     * @param tree       index of the tree the ebuild comes from
+     * @param cacheItems cache items of the ebuild
+     */
+    void add(final int tree, final List<CacheItem> cacheItems) {
+        if (cacheItems.isEmpty()) {
+            return;
+        }
+
+        synchronized (this) {
+            for (int i = 0; i < cacheItems.size(); i++) {
+                buffer.add(new Item(tree, i, cacheItems.get(i)));
+            }
+
+            count += cacheItems.size();
+            maxTree = Math.max(maxTree, tree);
+
+            if (buffer.size() >= runSize) {
+                spill();
+            }
+        }
+    }
+
+    /**
+     * Deletes run files. Runs are not kept for resuming interrupted refresh,
+     * the next refresh parses only ebuilds missing from the cache manifest
+     * anyway.
+     */
+    @Override
+    public synchronized void close() {
+        for (final Path run : runs) {
+            try {
+                Files.deleteIfExists(run);
+            } catch (final IOException ex) {
+                // leftover temporary file is not worth failing for
+            }
+        }
+
+        runs.clear();
+        buffer.clear();
+    }
+
+    /**
+     * Getter for {@link #count}.
+     *
+     * @return {@link #count}
+     */
+    synchronized int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns number of cache items that were not written because they were
+     * shadowed by items from tree with higher priority.
+     *
+     * @return number of dropped cache items
+     */
+    synchronized int getDropped() {
+        return count - written;
+    }
+
+    /**
+     * Writes sorted cache items to the cache file, leaving out shadowed
+     * items. The cache file is first written to temporary file that is then
+     * moved over the cache file.
+     *
+     * @param format cache file format
+     */
+    synchronized void write(final CacheFormat format) {
+        final Path tmpFile = cacheFile.resolveSibling(
+                cacheFile.getFileName() + ".tmp");
+
+        if (!runs.isEmpty()) {
+            spill();
+        } else {
+            buffer.sort(ITEM_COMPARATOR);
+        }
+
+        try {
+            if (format == CacheFormat.BINARY) {
+                try (final BinaryCacheWriter writer
+                        = new BinaryCacheWriter(tmpFile)) {
+                    writeItems((item) -> writer.write(item.line));
+                    writer.finish();
+                }
+            } else {
+                try (final Writer writer = new OutputStreamWriter(
+                        Files.newOutputStream(tmpFile,
+                                StandardOpenOption.CREATE,
+                                StandardOpenOption.WRITE,
+                                StandardOpenOption.TRUNCATE_EXISTING),
+                        StandardCharsets.UTF_8)) {
+                    writer.write(PortageParser.CACHE_VERSION);
+                    writer.write("\n#category:pkg:version:slot:useFlag:"
+                            + "groupId:artifactId:mavenVersion:javaEclass\n");
+                    writeItems((item) -> {
+                        writer.write(item.line);
+                        writer.write('\n');
+                    });
+                }
+            }
+        } catch (final IOException ex) {
+            throw new RuntimeException("Failed to write cache file @ "
+                    + tmpFile, ex);
+        }
+
+        try {
+            Files.move(tmpFile, cacheFile, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException ex) {
+            throw new RuntimeException("Failed to move cache file to "
+                    + cacheFile, ex);
+        }
+
+        close();
+    }
+
+    /**
+     * Passes sorted items that are not shadowed to the output.
+     *
+     * @param output cache file output
+     *
+     * @throws IOException Thrown if problem occurred while reading the runs or
+     *                     writing the output.
+     */
+    private void writeItems(final ItemConsumer output) throws IOException {
+        if (maxTree == 0) {
+            forEachSorted((item) -> {
+                output.accept(item);
+                written++;
+            });
+        } else {
+            // items shadowed by artifact from tree with higher priority have
+            // to be known before the first item is written
+            final BitSet shadowed = findShadowedItems();
+            final int[] sequence = {0};
+
+            forEachVisible((item) -> {
+                if (!shadowed.get(sequence[0]++)) {
+                    output.accept(item);
+                    written++;
+                }
+            });
+        }
+    }
+
+    /**
+     * Finds visible items that provide artifact that is provided by item
+     * from tree with higher priority too. Provided artifacts of visible items
+     * are written to sorted runs as "artifact tree sequence" lines, so items
+     * providing the same artifact come together when the runs are merged.
+     *
+     * @return set of sequence numbers of the shadowed items within visible
+     *         items
+     *
+     * @throws IOException Thrown if problem occurred while reading or writing
+     *                     the runs.
+     */
+    private BitSet findShadowedItems() throws IOException {
+        final BitSet result = new BitSet();
+
+        try (final ArtifactRuns artifactRuns = new ArtifactRuns()) {
+            final int[] sequence = {0};
+
+            forEachVisible((item) -> {
+                if (item.artifact != null) {
+                    artifactRuns.add(item.artifact + ' ' + item.tree + ' '
+                            + sequence[0]);
+                }
+
+                sequence[0]++;
+            });
+
+            final List<String> group = new ArrayList<>(4);
+
+            artifactRuns.forEachSorted((line) -> {
+                if (!group.isEmpty() && !getArtifact(group.get(0)).equals(
+                        getArtifact(line))) {
+                    markShadowed(group, result);
+                }
+
+                group.add(line);
+            });
+
+            markShadowed(group, result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns artifact from line of artifact run.
+     *
+     * @param line artifact run line
+     *
+     * @return groupId:artifactId:version
+     */
+    private static String getArtifact(final String line) {
+        return line.substring(0,
+                line.lastIndexOf(' ', line.lastIndexOf(' ') - 1));
+    }
+
+    /**
+     * Returns tree index from line of artifact run.
+     *
+     * @param line artifact run line
+     *
+     * @return index of the tree
+     */
+    private static int getTree(final String line) {
+        final int end = line.lastIndexOf(' ');
+
+        return Integer.parseInt(
+                line.substring(line.lastIndexOf(' ', end - 1) + 1, end), 10);
+    }
+
+    /**
+     * Marks items of the artifact that do not come from the tree with the
+     * highest priority as shadowed and clears the list.
+     *
+     * @param group    artifact run lines of the same artifact
+     * @param shadowed set of sequence numbers of shadowed items
+     */
+    private static void markShadowed(final List<String> group,
+            final BitSet shadowed) {
+        int maxTree = -1;
+
+        for (final String line : group) {
+            maxTree = Math.max(maxTree, getTree(line));
+        }
+
+        for (final String line : group) {
+            if (getTree(line) < maxTree) {
+                shadowed.set(Integer.parseInt(
+                        line.substring(line.lastIndexOf(' ') + 1), 10));
+            }
+        }
+
+        group.clear();
+    }
+
+    /**
+     * Passes sorted items to the consumer. If there are no run files, items
+     * are taken from the sorted buffer, otherwise the run files are merged.
+     *
+     * @param consumer item consumer
+     *
+     * @throws IOException Thrown if problem occurred while reading the runs or
+     *                     in the consumer.
+     */
+    private void forEachSorted(final ItemConsumer consumer)
+            throws IOException {
+        if (runs.isEmpty()) {
+            for (final Item item : buffer) {
+                consumer.accept(item);
+            }
+
+            return;
+        }
+
+        final List<BufferedReader> readers = new ArrayList<>(runs.size());
+        final PriorityQueue<Item> queue = new PriorityQueue<>(runs.size(),
+                ITEM_COMPARATOR);
+
+        try {
+            for (final Path run : runs) {
+                final BufferedReader reader
+                        = Files.newBufferedReader(run, StandardCharsets.UTF_8);
+                readers.add(reader);
+
+                final Item item = Item.read(reader);
+
+                if (item != null) {
+                    queue.add(item);
+                }
+            }
+
+            Item item = queue.poll();
+
+            while (item != null) {
+                consumer.accept(item);
+
+                final Item next = Item.read(item.reader);
+
+                if (next != null) {
+                    queue.add(next);
+                }
+
+                item = queue.poll();
+            }
+        } finally {
+            for (final BufferedReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * Passes sorted items to the consumer, leaving out items of ebuilds that
+     * are shadowed by the same ebuild version from tree with higher priority.
+     *
+     * @param consumer item consumer
+     *
+     * @throws IOException Thrown if problem occurred while reading the runs or
+     *                     in the consumer.
+     */
+    private void forEachVisible(final ItemConsumer consumer)
+            throws IOException {
+        final List<Item> ebuildItems = new ArrayList<>(10);
+
+        forEachSorted((item) -> {
+            if (!ebuildItems.isEmpty()
+                    && !ebuildItems.get(0).isSameEbuildVersion(item)) {
+                acceptVisible(ebuildItems, consumer);
+            }
+
+            ebuildItems.add(item);
+        });
+
+        acceptVisible(ebuildItems, consumer);
+    }
+
+    /**
+     * Passes items of the ebuild version from the tree with the highest
+     * priority to the consumer and clears the list.
+     *
+     * @param ebuildItems items with the same category, package and version,
+     *                    sorted by tree
+     * @param consumer    item consumer
+     *
+     * @throws IOException Thrown if problem occurred in the consumer.
+     */
+    private void acceptVisible(final List<Item> ebuildItems,
+            final ItemConsumer consumer) throws IOException {
+        if (ebuildItems.isEmpty()) {
+            return;
+        }
+
+        final int tree = ebuildItems.get(ebuildItems.size() - 1).tree;
+
+        for (final Item item : ebuildItems) {
+            if (item.tree == tree) {
+                consumer.accept(item);
+            }
+        }
+
+        ebuildItems.clear();
+    }
+
+    /**
+     * Creates new temporary run file next to the cache file.
+     *
+     * @return run file path
+     */
+    private Path createRunFile() {
+        try {
+            return Files.createTempFile(
+                    cacheFile.toAbsolutePath().getParent(),
+                    cacheFile.getFileName() + ".run", ".tmp");
+        } catch (final IOException ex) {
+            throw new RuntimeException("Failed to create cache run file", ex);
+        }
+    }
+
+    /**
+     * Sorts the buffer and writes it to new run file.
+     */
+    private void spill() {
+        if (buffer.isEmpty()) {
+            return;
+        }
+
+        buffer.sort(ITEM_COMPARATOR);
+
+        final Path run = createRunFile();
+        runs.add(run);
+
+        try (final Writer writer = Files.newBufferedWriter(run,
+                StandardCharsets.UTF_8)) {
+            for (final Item item : buffer) {
+                writer.write(Integer.toString(item.tree));
+                writer.write(':');
+                writer.write(Integer.toString(item.position));
+                writer.write(':');
+                writer.write(item.line);
+                writer.write('\n');
+            }
+        } catch (final IOException ex) {
+            throw new RuntimeException("Failed to write cache run file @ "
+                    + run, ex);
+        }
+
+        buffer.clear();
+    }
+
+    /**
+     * Lines of provided artifacts sorted through run files, so that at most
+     * {@link #runSize} of them are kept in memory.
+     */
+    private final class ArtifactRuns implements Closeable {
+
+        /**
+         * Buffer of lines that were not spilled yet.
+         */
+        private final List<String> lines = new ArrayList<>(16);
+        /**
+         * Spilled run files.
+         */
+        private final List<Path> files = new ArrayList<>(4);
+
+        /**
+         * Adds line.
+         *
+         * @param line artifact run line
+         */
+        void add(final String line) {
+            lines.add(line);
+
+            if (lines.size() >= runSize) {
+                spillLines();
+            }
+        }
+
+        /**
+         * Deletes run files.
+         */
+        @Override
+        public void close() {
+            for (final Path file : files) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (final IOException ex) {
+                    // leftover temporary file is not worth failing for
+                }
+            }
+
+            files.clear();
+        }
+
+        /**
+         * Passes sorted lines to the consumer.
+         *
+         * @param consumer line consumer
+         *
+         * @throws IOException Thrown if problem occurred while reading the
+         *                     runs or in the consumer.
+         */
+        void forEachSorted(final LineConsumer consumer) throws IOException {
+            if (files.isEmpty()) {
+                lines.sort(null);
+
+                for (final String line : lines) {
+                    consumer.accept(line);
+                }
+
+                return;
+            }
+
+            spillLines();
+
+            final BufferedReader[] readers = new BufferedReader[files.size()];
+            final String[] heads = new String[files.size()];
+            final PriorityQueue<Integer> queue = new PriorityQueue<>(
+                    files.size(), Comparator.comparing((Integer run)
+                            -> heads[run]));
+
+            try {
+                for (int i = 0; i < readers.length; i++) {
+                    readers[i] = Files.newBufferedReader(files.get(i),
+                            StandardCharsets.UTF_8);
+                    heads[i] = readers[i].readLine();
+
+                    if (heads[i] != null) {
+                        queue.add(i);
+                    }
+                }
+
+                Integer run = queue.poll();
+
+                while (run != null) {
+                    consumer.accept(heads[run]);
+                    heads[run] = readers[run].readLine();
+
+                    if (heads[run] != null) {
+                        queue.add(run);
+                    }
+
+                    run = queue.poll();
+                }
+            } finally {
+                for (final BufferedReader reader : readers) {
+                    if (reader != null) {
+                        reader.close();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Sorts the buffered lines and writes them to new run file.
+         */
+        private void spillLines() {
+            if (lines.isEmpty()) {
+                return;
+            }
+
+            lines.sort(null);
+
+            final Path file = createRunFile();
+            files.add(file);
+
+            try (final Writer writer = Files.newBufferedWriter(file,
+                    StandardCharsets.UTF_8)) {
+                for (final String line : lines) {
+                    writer.write(line);
+                    writer.write('\n');
+                }
+            } catch (final IOException ex) {
+                throw new RuntimeException("Failed to write cache run file @ "
+                        + file, ex);
+            }
+
+            lines.clear();
+        }
+    }
+
+    /**
+     * Cache item with its sort keys.
+     */
+    private static class Item {
+
+        /**
+         * Reads item from run file.
+         *
+         * @param reader run file reader
+         *
+         * @return item or null if end of the run was reached
+         *
+         * @throws IOException Thrown if problem occurred while reading the
+         *                     run.
+         */
+        static Item read(final BufferedReader reader) throws IOException {
+            final String runLine = reader.readLine();
+
+            if (runLine == null) {
+                return null;
+            }
+
+            final String[] parts = runLine.split(":", 11);
+
+            return new Item(Integer.parseInt(parts[0], 10),
+                    Integer.parseInt(parts[1], 10), parts[2], parts[3],
+                    parts[4], toArtifact(parts[7], parts[8], parts[9]),
+                    runLine.substring(parts[0].length() + parts[1].length()
+                            + 2), reader);
+        }
+
+        /**
+         * Provided groupId:artifactId:version or null if the item does not
+         * provide any.
+         */
+        private final String artifact;
+        /**
+         * Portage category.
+         */
+        private final String category;
+        /**
+         * Cache file line.
+         */
+        private final String line;
+        /**
+         * Portage package.
+         */
+        private final String pkg;
+        /**
+         * Position of the item within its ebuild.
+         */
+        private final int position;
+        /**
+         * Run file reader the item was read from.
+         */
+        private final BufferedReader reader;
+        /**
+         * Index of the tree.
+         */
+        private final int tree;
+        /**
+         * Portage ebuild version.
+         */
+        private final String version;
+
+        /**
+         * Creates new instance of Item from cache item.
+         *
+         * @param tree      {@link #tree}
+         * @param position  {@link #position}
+         * @param cacheItem cache item
+         */
+        Item(final int tree, final int position, final CacheItem cacheItem) {
+            this(tree, position, cacheItem.getCategory(), cacheItem.getPkg(),
+                    cacheItem.getVersion(), toArtifact(cacheItem.getGroupId(),
+                            cacheItem.getArtifactId(),
+                            cacheItem.getMavenVersion()),
+                    toLine(cacheItem), null);
+        }
+
+        /**
+         * Creates new instance of Item.
+         *
+         * @param tree     {@link #tree}
+         * @param position {@link #position}
+         * @param category {@link #category}
+         * @param pkg      {@link #pkg}
+         * @param version  {@link #version}
+         * @param artifact {@link #artifact}
+         * @param line     {@link #line}
+         * @param reader   {@link #reader}
+         */
+        private Item(final int tree, final int position, final String category,
+                final String pkg, final String version, final String artifact,
+                final String line, final BufferedReader reader) {
+            this.tree = tree;
+            this.position = position;
+            this.category = category;
+            this.pkg = pkg;
+            this.version = version;
+            this.artifact = artifact;
+            this.line = line;
+            this.reader = reader;
+        }
+
+        /**
+         * Creates groupId:artifactId:version string.
+         *
+         * @param groupId    maven group id
+         * @param artifactId maven artifact id
+         * @param version    maven version
+         *
+         * @return groupId:artifactId:version or null if group id is not set
+         */
+        private static String toArtifact(final String groupId,
+                final String artifactId, final String version) {
+            if (groupId == null || groupId.isEmpty()) {
+                return null;
+            }
+
+            return groupId + ':' + artifactId + ':' + version;
+        }
+
+        /**
+         * Checks whether the other item comes from the same version of the
+         * same package, possibly from different tree.
+         *
+         * @param other other item
+         *
+         * @return true if category, package and version are the same,
+         *         otherwise false
+         */
+        boolean isSameEbuildVersion(final Item other) {
+            return category.equals(other.category) && pkg.equals(other.pkg)
+                    && version.equals(other.version);
+        }
+
+        /**
+         * Converts cache item to cache file line.
+         *
+         * @param cacheItem cache item
+         *
+         * @return cache file line
+         */
+        private static String toLine(final CacheItem cacheItem) {
+            final StringWriter writer = new StringWriter(128);
+
+            try {
+                cacheItem.write(writer);
+            } catch (final IOException ex) {
+                throw new RuntimeException("Failed to write cache item", ex);
+            }
+
+            return writer.toString();
+        }
+    }
+
+    /**
+     * Consumer of sorted items.
+     */
+    @FunctionalInterface
+    private interface ItemConsumer {
+
+        /**
+         * Accepts the item.
+         *
+         * @param item item
+         *
+         * @throws IOException Thrown if problem occurred while processing the
+         *                     item.
+         */
+        void accept(Item item) throws IOException;
+    }
+
+    /**
+     * Consumer of sorted artifact run lines.
+     */
+    @FunctionalInterface
+    private interface LineConsumer {
+
+        /**
+         * Accepts the line.
+         *
+         * @param line artifact run line
+         *
+         * @throws IOException Thrown if problem occurred while processing the
+         *                     line.
+         */
+        void accept(String line) throws IOException;
+    }
+}
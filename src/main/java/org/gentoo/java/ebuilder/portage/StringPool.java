@@ -0,0 +1,76 @@
+package org.gentoo.java.ebuilder.portage;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pool of canonical instances of strings and eclass lists that repeat across
+ * cache items, like categories, slots, group ids or inherited eclasses. A
+ * pool is created for a single load of cache file or cache manifest and is
+ * dropped when the load is finished, so it holds only values of the loaded
+ * items and does not grow across loads. Instances are not thread safe.
+ */
+public final class StringPool {
+
+    /**
+     * Splits comma separated list of eclasses.
+     *
+     * @param eclasses comma separated list of eclasses, empty string for
+     *                 empty list
+     *
+     * @return immutable list of eclasses
+     */
+    static List<String> splitEclasses(final String eclasses) {
+        return eclasses.isEmpty() ? List.of() : List.of(eclasses.split(","));
+    }
+
+    /**
+     * Canonical eclass lists by their comma separated form.
+     */
+    private final Map<String, List<String>> eclasses = new HashMap<>(100);
+    /**
+     * Canonical strings.
+     */
+    private final Map<String, String> strings = new HashMap<>(10_000);
+
+    /**
+     * Returns canonical instance of the string.
+     *
+     * @param string string or null
+     *
+     * @return canonical string or null if the string is null
+     */
+    String get(final String string) {
+        if (string == null) {
+            return null;
+        }
+
+        final String result = strings.putIfAbsent(string, string);
+
+        return result == null ? string : result;
+    }
+
+    /**
+     * Returns canonical immutable list of eclasses.
+     *
+     * @param eclasses comma separated list of eclasses, empty string for
+     *                 empty list
+     *
+     * @return canonical immutable list
+     */
+    List<String> getEclasses(final String eclasses) {
+        final List<String> result = this.eclasses.get(eclasses);
+
+        if (result != null) {
+            return result;
+        }
+
+        final List<String> list = eclasses.isEmpty() ? List.of()
+                : Arrays.stream(eclasses.split(",")).map(this::get).toList();
+        this.eclasses.put(eclasses, list);
+
+        return list;
+    }
+}
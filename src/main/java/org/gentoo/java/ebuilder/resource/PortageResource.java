@@ -1,7 +1,12 @@
 package org.gentoo.java.ebuilder.resource;
 
+import io.quarkus.logging.Log;
+import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.gentoo.java.ebuilder.configuration.PortageConfiguration;
+import org.gentoo.java.ebuilder.maven.MavenCache;
 
 import java.util.Collections;
 import java.util.List;
@@ -11,14 +16,44 @@ import java.util.List;
 @Consumes(MediaType.APPLICATION_JSON)
 public class PortageResource {
 
+    @Inject
+    MavenCache mavenCache;
+
+    @Inject
+    PortageConfiguration configuration;
+
     @GET
     public List get() {
         return Collections.emptyList();
     }
 
+    @GET
+    @Path("/maven_ids/{category}/{pkg}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public List<String> getMavenIds(@PathParam("category") String category,
+                                    @PathParam("pkg") String pkg,
+                                    @QueryParam("slot") String slot) {
+        String atom = category + "/" + pkg;
+
+        return mavenCache.getMavenIds(slot == null ? atom : atom + ":" + slot);
+    }
+
     @POST
     @Path("/update_cache")
-    public void updateCache() {
-        //portageModel.updateCache();
+    public Response updateCache() {
+        if (configuration.cacheFile().isEmpty()) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+
+        mavenCache.reloadCache(configuration.cacheFile().get(), configuration.cacheBackend())
+                .whenComplete((snapshot, ex) -> {
+                    if (ex != null) {
+                        Log.error("Reloading Maven cache failed", ex);
+                    } else {
+                        Log.info("Maven cache reloaded.");
+                    }
+                });
+
+        return Response.accepted().build();
     }
 }
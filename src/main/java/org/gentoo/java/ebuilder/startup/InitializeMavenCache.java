@@ -0,0 +1,27 @@
+package org.gentoo.java.ebuilder.startup;
+
+import io.quarkus.logging.Log;
+import io.quarkus.runtime.Startup;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.gentoo.java.ebuilder.configuration.PortageConfiguration;
+import org.gentoo.java.ebuilder.maven.MavenCache;
+
+@ApplicationScoped
+public class InitializeMavenCache {
+
+    @Inject
+    MavenCache mavenCache;
+
+    @Inject
+    PortageConfiguration configuration;
+
+    @Startup
+    void init() {
+        configuration.cacheFile().ifPresent(cacheFile -> {
+            Log.info("Loading Maven cache from " + cacheFile + " ...");
+            mavenCache.reloadCache(cacheFile, configuration.cacheBackend()).join();
+            Log.info("... loading Maven cache done.");
+        });
+    }
+}
@@ -0,0 +1,45 @@
+package org.gentoo.java.ebuilder.maven;
+
+import io.quarkus.test.junit.QuarkusTest;
+import org.gentoo.java.ebuilder.portage.CacheItem;
+import org.gentoo.java.ebuilder.portage.MavenVersionRange;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+@QuarkusTest
+class ArtifactVersionsTest {
+
+    private final ArtifactVersions versions = new ArtifactVersions(List.of(
+            new CacheItem("dev-java:foo:1.0:1::org.foo:foo:1.0:java-pkg-2"),
+            new CacheItem("dev-java:foo:1.0_beta-r2:0::org.foo:foo:1.0-beta:java-pkg-2"),
+            new CacheItem("dev-java:foo:1.2.3:1.2:test:org.foo:foo:1.2.3:java-pkg-2"),
+            new CacheItem("java-virtuals:foo:2:2::org.foo:foo:2.0:java-pkg-2")));
+
+    @Test
+    public void firstVersionNotLessThanRequestedShouldBeReturned() {
+        Assertions.assertEquals(">=dev-java/foo-1.0:1", versions.getDependency(new MavenVersionRange("0.9")));
+        Assertions.assertEquals(">=dev-java/foo-1.0:1", versions.getDependency(new MavenVersionRange("1.0")));
+        Assertions.assertEquals(">=dev-java/foo-1.0_beta:0", versions.getDependency(new MavenVersionRange("1.0-alpha")));
+        Assertions.assertEquals(">=dev-java/foo-1.2.3[test]:1.2", versions.getDependency(new MavenVersionRange("1.0.1")));
+        Assertions.assertEquals(">=dev-java/foo-1.2.3[test]:1.2", versions.getDependency(new MavenVersionRange("1.2.3")));
+        Assertions.assertEquals("java-virtuals/foo:2", versions.getDependency(new MavenVersionRange("1.3")));
+    }
+
+    @Test
+    public void higherVersionThanAvailableShouldNotBeFound() {
+        Assertions.assertNull(versions.getDependency(new MavenVersionRange("2.0.1")));
+        Assertions.assertNull(versions.getDependency(new MavenVersionRange("3")));
+    }
+
+    @Test
+    public void bestSlotWithinRangeShouldBeReturned() {
+        Assertions.assertEquals(">=dev-java/foo-1.0:1", versions.getDependency(new MavenVersionRange("[1.0]")));
+        Assertions.assertEquals(">=dev-java/foo-1.2.3[test]:1.2", versions.getDependency(new MavenVersionRange("[1.0,2.0)")));
+        Assertions.assertEquals(">=dev-java/foo-1.0_beta:0", versions.getDependency(new MavenVersionRange("(,1.0-beta]")));
+        Assertions.assertEquals("java-virtuals/foo:2", versions.getDependency(new MavenVersionRange("(,1.0],[1.5,)")));
+        Assertions.assertEquals(">=dev-java/foo-1.0:1", versions.getDependency(new MavenVersionRange("(,1.0],[3,)")));
+        Assertions.assertNull(versions.getDependency(new MavenVersionRange("(1.0-beta,1.2)")));
+    }
+}
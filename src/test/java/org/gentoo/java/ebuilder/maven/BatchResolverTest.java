@@ -0,0 +1,80 @@
+package org.gentoo.java.ebuilder.maven;
+
+import io.quarkus.test.junit.QuarkusTest;
+import org.gentoo.java.ebuilder.Config;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+@QuarkusTest
+class BatchResolverTest {
+
+    private static final String INPUT = "# comment\n"
+            + "org.foo:foo:1.0\n"
+            + "\n"
+            + "org.foo:foo:3.0\n"
+            + "org.foo:bar:1.0\n"
+            + "org.baz:baz:1.0\n"
+            + "org.foo:foo\n"
+            + "org.foo:foo:LATEST\n"
+            + "org.foo:foo:${project.version}\n"
+            + "org.foo:foo:[1.0,2.0)\n";
+
+    private static String resolve(final ResolutionFormat format) throws Exception {
+        final Path cacheFile = Files.createTempFile("java-ebuilder", ".cache");
+
+        try {
+            Files.writeString(cacheFile, "1.1\n# comment\n"
+                    + "dev-java:foo:2:2::org.foo:foo:2.0:java-pkg-2\n"
+                    + "java-virtuals:foo-api:1:0::org.foo:foo-api:1.0:java-pkg-2\n");
+
+            final Config config = new Config(new PrintWriter(new StringWriter()),
+                    new PrintWriter(new StringWriter()));
+            config.setCacheFile(cacheFile);
+
+            final MavenCache mavenCache = new MavenCache();
+            mavenCache.loadCache(config);
+
+            final StringWriter writer = new StringWriter();
+            Assertions.assertEquals(8, new BatchResolver().resolve(
+                    new BufferedReader(new StringReader(INPUT)), writer, mavenCache, format));
+
+            return writer.toString();
+        } finally {
+            Files.delete(cacheFile);
+        }
+    }
+
+    @Test
+    public void resultsShouldBeWrittenAsTsv() throws Exception {
+        Assertions.assertEquals("org.foo:foo:1.0\tRESOLVED\t>=dev-java/foo-2:2\n"
+                + "org.foo:foo:3.0\tVERSION_NOT_FOUND\t\n"
+                + "org.foo:bar:1.0\tARTIFACT_ID_NOT_FOUND\t\n"
+                + "org.baz:baz:1.0\tGROUP_ID_NOT_FOUND\t\n"
+                + "org.foo:foo\tINVALID_COORDINATES\t\n"
+                + "org.foo:foo:LATEST\tINVALID_VERSION\t\n"
+                + "org.foo:foo:${project.version}\tINVALID_VERSION\t\n"
+                + "org.foo:foo:[1.0,2.0)\tVERSION_NOT_FOUND\t\n",
+                resolve(ResolutionFormat.TSV));
+    }
+
+    @Test
+    public void resultsShouldBeWrittenAsJson() throws Exception {
+        Assertions.assertEquals("{\"coordinates\":\"org.foo:foo:1.0\",\"status\":\"RESOLVED\",\"dependency\":\">=dev-java/foo-2:2\"}\n"
+                + "{\"coordinates\":\"org.foo:foo:3.0\",\"status\":\"VERSION_NOT_FOUND\",\"dependency\":null}\n"
+                + "{\"coordinates\":\"org.foo:bar:1.0\",\"status\":\"ARTIFACT_ID_NOT_FOUND\",\"dependency\":null}\n"
+                + "{\"coordinates\":\"org.baz:baz:1.0\",\"status\":\"GROUP_ID_NOT_FOUND\",\"dependency\":null}\n"
+                + "{\"coordinates\":\"org.foo:foo\",\"status\":\"INVALID_COORDINATES\",\"dependency\":null}\n"
+                + "{\"coordinates\":\"org.foo:foo:LATEST\",\"status\":\"INVALID_VERSION\",\"dependency\":null}\n"
+                + "{\"coordinates\":\"org.foo:foo:${project.version}\",\"status\":\"INVALID_VERSION\","
+                + "\"dependency\":null}\n"
+                + "{\"coordinates\":\"org.foo:foo:[1.0,2.0)\",\"status\":\"VERSION_NOT_FOUND\",\"dependency\":null}\n",
+                resolve(ResolutionFormat.JSON));
+    }
+}
@@ -0,0 +1,85 @@
+package org.gentoo.java.ebuilder.maven;
+
+import io.quarkus.test.junit.QuarkusTest;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Plugin;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+@QuarkusTest
+class EffectiveModelBuilderTest {
+
+    @Test
+    public void modelShouldBeBuiltWithoutMaven() {
+        Path pomXmlPath = Path.of("src/test/resources/maven/simple-project/pom.xml");
+        Model model = new EffectiveModelBuilder().build(pomXmlPath);
+
+        Assertions.assertEquals("org.gentoo", model.getGroupId());
+        Assertions.assertEquals("java-ebuilder", model.getArtifactId());
+        Assertions.assertEquals("0.5.2-SNAPSHOT", model.getVersion());
+        Assertions.assertEquals("1.8", model.getProperties().getProperty("maven.compiler.source"));
+        Assertions.assertEquals(pomXmlPath.toAbsolutePath().getParent().resolve("src/main/java").toString(),
+                model.getBuild().getSourceDirectory());
+
+        Plugin jarPlugin = model.getBuild().getPluginsAsMap().get("org.apache.maven.plugins:maven-jar-plugin");
+        Xpp3Dom configuration = (Xpp3Dom) jarPlugin.getConfiguration();
+        Assertions.assertEquals("org.gentoo.java.ebuilder.Main",
+                configuration.getChild("archive").getChild("manifest").getChild("mainClass").getValue());
+    }
+
+    @Test
+    public void parentShouldBeResolvedFromLocalRepository() throws Exception {
+        Path dir = Files.createTempDirectory("java-ebuilder");
+        String localRepository = System.getProperty("maven.repo.local");
+
+        try {
+            for (String version : new String[]{"1.0", "1.5", "2.0"}) {
+                Path parentPom = dir.resolve("repository/org/foo/parent/" + version + "/parent-" + version + ".pom");
+                Files.createDirectories(parentPom.getParent());
+                Files.writeString(parentPom, "<project><modelVersion>4.0.0</modelVersion><groupId>org.foo</groupId>"
+                        + "<artifactId>parent</artifactId><version>" + version + "</version><packaging>pom</packaging>"
+                        + "<url>https://foo.org/" + version + "</url></project>");
+            }
+
+            Path pom = dir.resolve("project/pom.xml");
+            Files.createDirectories(pom.getParent());
+            Files.writeString(pom, "<project><modelVersion>4.0.0</modelVersion><parent><groupId>org.foo</groupId>"
+                    + "<artifactId>parent</artifactId><version>[1.0,2.0)</version><relativePath/></parent>"
+                    + "<artifactId>child</artifactId><version>1.0</version><packaging>pom</packaging>"
+                    + "<modules><module>module</module></modules>"
+                    + "</project>");
+            Path modulePom = dir.resolve("project/module/pom.xml");
+            Files.createDirectories(modulePom.getParent());
+            Files.writeString(modulePom, "<project><modelVersion>4.0.0</modelVersion><parent><groupId>org.foo</groupId>"
+                    + "<artifactId>child</artifactId><version>1.0</version></parent><artifactId>module</artifactId>"
+                    + "</project>");
+
+            System.setProperty("maven.repo.local", dir.resolve("repository").toString());
+            Model model = new EffectiveModelBuilder().build(pom);
+            Assertions.assertEquals("org.foo", model.getGroupId());
+            Assertions.assertEquals("https://foo.org/1.5/child", model.getUrl());
+            Assertions.assertEquals(2, new EffectiveModelBuilder().buildReactor(pom).size());
+
+            Files.writeString(pom, Files.readString(pom).replace("[1.0,2.0)", "3.0"));
+            Assertions.assertThrows(RuntimeException.class, () -> new EffectiveModelBuilder().build(pom));
+        } finally {
+            if (localRepository == null) {
+                System.clearProperty("maven.repo.local");
+            } else {
+                System.setProperty("maven.repo.local", localRepository);
+            }
+
+            try (Stream<Path> paths = Files.walk(dir)) {
+                for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+}
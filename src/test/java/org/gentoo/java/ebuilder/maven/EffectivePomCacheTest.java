@@ -0,0 +1,133 @@
+package org.gentoo.java.ebuilder.maven;
+
+import io.quarkus.test.junit.QuarkusTest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+@QuarkusTest
+class EffectivePomCacheTest {
+
+    private static final String PARENT = "<project><groupId>org.foo</groupId><artifactId>parent</artifactId>"
+            + "<version>1.0</version><modules><module>child</module></modules></project>";
+
+    private static final String CHILD = "<project><parent><groupId>org.foo</groupId><artifactId>parent</artifactId>"
+            + "<version>1.0</version></parent><artifactId>child</artifactId></project>";
+
+    @Test
+    public void keyShouldChangeWithParentAndModules() throws Exception {
+        Path dir = Files.createTempDirectory("java-ebuilder");
+
+        try {
+            Path parentPom = dir.resolve("pom.xml");
+            Path childPom = dir.resolve("child/pom.xml");
+            Files.createDirectories(childPom.getParent());
+            Files.writeString(parentPom, PARENT);
+            Files.writeString(childPom, CHILD);
+
+            EffectivePomCache cache = new EffectivePomCache(dir.resolve("cache"));
+            String parentKey = cache.getKey(parentPom);
+            String childKey = cache.getKey(childPom);
+            Assertions.assertNotNull(parentKey);
+            Assertions.assertNotNull(childKey);
+            Assertions.assertNotEquals(parentKey, childKey);
+            Assertions.assertEquals(parentKey, cache.getKey(parentPom));
+
+            Files.writeString(childPom, CHILD.replace("<artifactId>child", "<artifactId>child2"));
+            Assertions.assertNotEquals(parentKey, cache.getKey(parentPom));
+            String newChildKey = cache.getKey(childPom);
+            Assertions.assertNotEquals(childKey, newChildKey);
+
+            Files.writeString(parentPom, PARENT.replace("1.0", "1.1"));
+            Assertions.assertNotEquals(newChildKey, cache.getKey(childPom));
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void remoteSnapshotParentShouldNotBeCached() throws Exception {
+        Path dir = Files.createTempDirectory("java-ebuilder");
+
+        try {
+            Path pom = dir.resolve("pom.xml");
+            Files.writeString(pom, CHILD.replace("1.0", "1.0-SNAPSHOT"));
+
+            EffectivePomCache cache = new EffectivePomCache(dir.resolve("cache"));
+            Assertions.assertNull(cache.getKey(pom));
+
+            Files.writeString(dir.resolveSibling(dir.getFileName() + "-parent.xml"), PARENT);
+            Files.writeString(pom, CHILD.replace("1.0", "1.0-SNAPSHOT").replace("</parent>",
+                    "<relativePath>../" + dir.getFileName() + "-parent.xml</relativePath></parent>"));
+            Assertions.assertNotNull(cache.getKey(pom));
+        } finally {
+            Files.deleteIfExists(dir.resolveSibling(dir.getFileName() + "-parent.xml"));
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void importedPomsShouldBePartOfKey() throws Exception {
+        Path dir = Files.createTempDirectory("java-ebuilder");
+
+        try {
+            Path pom = dir.resolve("pom.xml");
+            String bom = "<project><artifactId>foo</artifactId><dependencyManagement><dependencies><dependency>"
+                    + "<groupId>org.bom</groupId><artifactId>bom</artifactId><version>1.0</version><type>pom</type>"
+                    + "<scope>import</scope><exclusions><exclusion><groupId>org.x</groupId>"
+                    + "<artifactId>x</artifactId></exclusion></exclusions></dependency></dependencies>"
+                    + "</dependencyManagement></project>";
+            Files.writeString(pom, bom);
+
+            EffectivePomCache cache = new EffectivePomCache(dir.resolve("cache"));
+            Assertions.assertNotNull(cache.getKey(pom));
+
+            Files.writeString(pom, bom.replace("<scope>import</scope>", ""));
+            Assertions.assertNotNull(cache.getKey(pom));
+            Files.writeString(pom, bom.replace("<scope>import</scope>", "").replace("1.0", "1.0-SNAPSHOT"));
+            Assertions.assertNotNull(cache.getKey(pom));
+
+            Files.writeString(pom, bom.replace("1.0", "1.0-SNAPSHOT"));
+            Assertions.assertNull(cache.getKey(pom));
+            Files.writeString(pom, bom.replace("1.0", "${bom.version}"));
+            Assertions.assertNull(cache.getKey(pom));
+            Files.writeString(pom, CHILD.replace("1.0", "${revision}"));
+            Assertions.assertNull(cache.getKey(pom));
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void storedEffectivePomShouldBeReturned() throws Exception {
+        Path dir = Files.createTempDirectory("java-ebuilder");
+
+        try {
+            Path pom = dir.resolve("pom.xml");
+            Path effectivePom = dir.resolve("effective-pom.xml");
+            Files.writeString(pom, PARENT);
+            Files.writeString(effectivePom, "<project/>");
+
+            EffectivePomCache cache = new EffectivePomCache(dir.resolve("cache"));
+            String key = cache.getKey(pom);
+            Assertions.assertNull(cache.get(key));
+
+            cache.put(key, effectivePom);
+            Assertions.assertEquals("<project/>", Files.readString(cache.get(key)));
+        } finally {
+            delete(dir);
+        }
+    }
+
+    private static void delete(Path dir) throws Exception {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package org.gentoo.java.ebuilder.maven;
+
+import io.quarkus.test.junit.QuarkusTest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+@QuarkusTest
+class MavenCacheTest {
+
+    @Test
+    public void reloadShouldPublishNewSnapshot() throws Exception {
+        final Path cacheFile = Files.createTempFile("java-ebuilder", ".cache");
+
+        try {
+            Files.writeString(cacheFile, "1.1\n# comment\n"
+                    + "dev-java:foo:1:0::org.foo:foo:1.0:java-pkg-2\n");
+
+            final MavenCache mavenCache = new MavenCache();
+            Assertions.assertEquals(ResolutionStatus.GROUP_ID_NOT_FOUND,
+                    mavenCache.resolve("org.foo", "foo", "1.0").getStatus());
+
+            final MavenCacheSnapshot oldSnapshot = mavenCache.reloadCache(cacheFile, CacheBackend.MAPS).get();
+            Assertions.assertSame(oldSnapshot, mavenCache.getSnapshot());
+            Assertions.assertEquals(">=dev-java/foo-1:0", mavenCache.getDependency("org.foo", "foo", "1.0"));
+            Assertions.assertEquals("!!!suitable-mavenVersion-not-found!!!", mavenCache.getDependency("org.foo", "foo", "2.0"));
+            Assertions.assertEquals(ResolutionStatus.INVALID_VERSION,
+                    mavenCache.resolve("org.baz", "baz", "${project.version}").getStatus());
+
+            Files.writeString(cacheFile, "1.1\n# comment\n"
+                    + "dev-java:foo:2:2::org.foo:foo:2.0:java-pkg-2\n");
+
+            final MavenCacheSnapshot newSnapshot = mavenCache.reloadCache(cacheFile, CacheBackend.ARRAYS).get();
+            Assertions.assertSame(newSnapshot, mavenCache.getSnapshot());
+            Assertions.assertEquals(">=dev-java/foo-2:2", mavenCache.getDependency("org.foo", "foo", "2.0"));
+            Assertions.assertEquals(">=dev-java/foo-1:0", oldSnapshot.resolve("org.foo", "foo", "1.0").getDependency());
+        } finally {
+            Files.delete(cacheFile);
+        }
+    }
+}
@@ -7,6 +7,7 @@ import org.apache.maven.model.Model;
 import org.apache.maven.model.Plugin;
 import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
 import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+import org.gentoo.java.ebuilder.Config;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.xml.sax.SAXException;
@@ -16,10 +17,15 @@ import javax.xml.stream.XMLStreamException;
 import javax.xml.transform.TransformerException;
 import java.io.File;
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 @QuarkusTest
 class MavenParserTest {
@@ -43,6 +49,147 @@ class MavenParserTest {
         Assertions.assertEquals(1, mavenModels.size());
     }
 
+    @Test
+    public void pomFilesShouldBeParsedConcurrentlyInArgumentOrder() throws IOException {
+        Path dir = Files.createTempDirectory("java-ebuilder");
+        Config config = new Config(new PrintWriter(new StringWriter()), new PrintWriter(new StringWriter()));
+        config.setJobs(4);
+        config.setPomTimeout(60);
+
+        try {
+            for (int i = 0; i < 8; i++) {
+                Path pom = dir.resolve("module" + i + "/pom.xml");
+                Files.createDirectories(pom.getParent());
+                Files.writeString(pom, "<project><modelVersion>4.0.0</modelVersion><groupId>org.foo</groupId>"
+                        + "<artifactId>module" + i + "</artifactId><version>1.0</version></project>");
+                config.addPomFile(pom);
+            }
+
+            List<MavenProject> mavenProjects = mavenParser.parsePomFiles(config, new MavenCache());
+
+            Assertions.assertEquals(8, mavenProjects.size());
+
+            for (int i = 0; i < 8; i++) {
+                Assertions.assertEquals("module" + i, mavenProjects.get(i).getArtifactId());
+            }
+        } finally {
+            for (Path pom : config.getPomFiles()) {
+                Files.delete(pom);
+                Files.delete(pom.getParent());
+            }
+
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    public void pomFileProcessingShouldBeInterruptedAfterTimeout() throws InterruptedException {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        MavenParser blockingParser = new MavenParser() {
+            @Override
+            MavenProject processPomFile(Config config, MavenCache mavenCache, Path pomFile,
+                    EffectivePomCache effectivePomCache, EffectiveModelBuilder effectiveModelBuilder) {
+                try {
+                    Thread.sleep(60_000);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+
+                return null;
+            }
+        };
+        Config config = new Config(new PrintWriter(new StringWriter()), new PrintWriter(new StringWriter()));
+        config.setPomTimeout(1);
+        config.addPomFile(Path.of("pom.xml"));
+
+        long start = System.nanoTime();
+        RuntimeException exception = Assertions.assertThrows(RuntimeException.class,
+                () -> blockingParser.parsePomFiles(config, new MavenCache()));
+
+        Assertions.assertTrue(exception.getMessage().contains("timed out after 1 seconds"), exception.getMessage());
+        Assertions.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(30));
+        Assertions.assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void modelEnginesShouldCollectTheSameProject() throws IOException {
+        Path dir = Files.createTempDirectory("java-ebuilder");
+        Path pom = dir.resolve("pom.xml");
+        Path modulePomA = dir.resolve("a/pom.xml");
+        Path modulePomB = dir.resolve("b/pom.xml");
+        String parent = "<parent><groupId>org.foo</groupId><artifactId>parent</artifactId><version>1.0-SNAPSHOT</version>"
+                + "</parent>";
+
+        try {
+            Files.createDirectories(modulePomA.getParent());
+            Files.createDirectories(modulePomB.getParent());
+            Files.writeString(pom, "<project><modelVersion>4.0.0</modelVersion><groupId>org.foo</groupId>"
+                    + "<artifactId>parent</artifactId><version>1.0-SNAPSHOT</version><packaging>pom</packaging>"
+                    + "<description>Foo\n  parent</description><url>https://foo.org</url><properties>"
+                    + "<maven.compiler.source>11</maven.compiler.source><maven.compiler.target>11</maven.compiler.target>"
+                    + "<project.build.sourceEncoding>UTF-8</project.build.sourceEncoding></properties>"
+                    + "<modules><module>b</module><module>a</module></modules></project>");
+            // b depends on a, so the reactor builds a first
+            Files.writeString(modulePomB, "<project><modelVersion>4.0.0</modelVersion>" + parent
+                    + "<artifactId>b</artifactId><dependencies><dependency><groupId>org.foo</groupId>"
+                    + "<artifactId>a</artifactId><version>${project.version}</version></dependency><dependency>"
+                    + "<groupId>junit</groupId><artifactId>junit</artifactId><version>4.13.2</version>"
+                    + "<scope>test</scope></dependency></dependencies></project>");
+            Files.writeString(modulePomA, "<project><modelVersion>4.0.0</modelVersion>" + parent
+                    + "<artifactId>a</artifactId><dependencies><dependency><groupId>org.bar</groupId>"
+                    + "<artifactId>bar</artifactId><version>[1.0,2.0)</version></dependency></dependencies></project>");
+
+            List<String> dumps = new ArrayList<>();
+
+            for (ModelEngine modelEngine : ModelEngine.values()) {
+                Config config = new Config(new PrintWriter(new StringWriter()), new PrintWriter(new StringWriter()));
+                config.setModelEngine(modelEngine);
+                config.addPomFile(pom);
+
+                StringWriter dump = new StringWriter();
+                mavenParser.parsePomFiles(config, new MavenCache()).get(0).dump(new PrintWriter(dump));
+                dumps.add(dump.toString());
+            }
+
+            Assertions.assertTrue(dumps.get(0).contains("artifactId: b\n"), dumps.get(0));
+            Assertions.assertTrue(dumps.get(0).contains("version: [1.0,2.0)\n"), dumps.get(0));
+            Assertions.assertEquals(dumps.get(0), dumps.get(1));
+        } finally {
+            Files.delete(modulePomA);
+            Files.delete(modulePomA.getParent());
+            Files.delete(modulePomB);
+            Files.delete(modulePomB.getParent());
+            Files.delete(pom);
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    public void effectivePomWithMultipleProjectsShouldBeSplit() throws IOException {
+        Path effectivePom = Files.createTempFile("effective-pom-", ".xml");
+
+        try {
+            Files.writeString(effectivePom, "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                    + "<!-- Generated by Maven Help Plugin -->\n<projects>\n"
+                    + "  <!-- Effective POM for project 'org.foo:a:jar:1.0' -->\n"
+                    + "  <project xmlns=\"http://maven.apache.org/POM/4.0.0\"><modelVersion>4.0.0</modelVersion>"
+                    + "<groupId>org.foo</groupId><artifactId>a</artifactId><version>1.0</version>"
+                    + "<description>caf\u00e9 &amp; bar</description></project>\n"
+                    + "  <project xmlns=\"http://maven.apache.org/POM/4.0.0\"><modelVersion>4.0.0</modelVersion>"
+                    + "<groupId>org.foo</groupId><artifactId>b</artifactId><version>1.0</version></project>\n"
+                    + "</projects>\n");
+
+            List<Model> mavenModels = mavenParser.readEffectiveModels(effectivePom.toFile());
+
+            Assertions.assertEquals(2, mavenModels.size());
+            Assertions.assertEquals("a", mavenModels.get(0).getArtifactId());
+            Assertions.assertEquals("caf\u00e9 & bar", mavenModels.get(0).getDescription());
+            Assertions.assertEquals("b", mavenModels.get(1).getArtifactId());
+        } finally {
+            Files.delete(effectivePom);
+        }
+    }
+
     @Test
     public void testMavenXpp3Parser() throws IOException, XmlPullParserException {
         MavenXpp3Reader mavenXpp3Reader = new MavenXpp3Reader();
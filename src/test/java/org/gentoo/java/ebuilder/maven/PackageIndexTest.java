@@ -0,0 +1,35 @@
+package org.gentoo.java.ebuilder.maven;
+
+import io.quarkus.test.junit.QuarkusTest;
+import org.gentoo.java.ebuilder.portage.CacheItem;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+@QuarkusTest
+class PackageIndexTest {
+
+    private final PackageIndex index = new PackageIndex(List.of(
+            new CacheItem("dev-java:foo:10:2::org.foo:foo:10.0:java-pkg-2"),
+            new CacheItem("dev-java:foo:9:2::org.foo:foo:9.0:java-pkg-2"),
+            new CacheItem("dev-java:foo:9-r1:2::org.foo:foo:9.0:java-pkg-2"),
+            new CacheItem("dev-java:foo:9:2::org.foo:foo-api:9.0:java-pkg-2"),
+            new CacheItem("dev-java:foo:1:1::org.foo:foo:1.0:java-pkg-2"),
+            new CacheItem("dev-java:bar:1:0:::::java-pkg-2")));
+
+    @Test
+    public void packageShouldBeFoundWithAndWithoutSlot() {
+        Assertions.assertEquals(List.of("org.foo:foo:1.0", "org.foo:foo:9.0", "org.foo:foo:10.0", "org.foo:foo-api:9.0"),
+                index.getMavenIds("dev-java/foo"));
+        Assertions.assertEquals(List.of("org.foo:foo:9.0", "org.foo:foo:10.0", "org.foo:foo-api:9.0"),
+                index.getMavenIds("dev-java/foo:2"));
+        Assertions.assertEquals(List.of("org.foo:foo:1.0"), index.getMavenIds("dev-java/foo:1"));
+    }
+
+    @Test
+    public void packageWithoutMavenIdShouldBeEmpty() {
+        Assertions.assertEquals(List.of(), index.getMavenIds("dev-java/bar"));
+        Assertions.assertEquals(List.of(), index.getMavenIds("dev-java/foo:3"));
+    }
+}
@@ -0,0 +1,60 @@
+package org.gentoo.java.ebuilder.maven;
+
+import io.quarkus.test.junit.QuarkusTest;
+import org.gentoo.java.ebuilder.portage.CacheItem;
+import org.gentoo.java.ebuilder.portage.MavenVersionRange;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+@QuarkusTest
+class PackedCacheTest {
+
+    private final PackedCache cache = new PackedCache(Map.of(
+            "org.foo", Map.of(
+                    "foo", List.of(
+                            new CacheItem("dev-java:foo:1.0_rc2:1::org.foo:foo:1.0-rc2:java-pkg-2"),
+                            new CacheItem("dev-java:foo:1.0_beta:1::org.foo:foo:1.0-beta:java-pkg-2"),
+                            new CacheItem("dev-java:foo:2:2::org.foo:foo:2.0:java-pkg-2")),
+                    "foo-core", List.of(
+                            new CacheItem("dev-java:foo-core:1:0::org.foo:foo-core:1.0:java-pkg-2"))),
+            "org.bar", Map.of(
+                    "bar", List.of(
+                            new CacheItem("dev-java:bar:3:0::org.bar:bar:3.0:java-pkg-2")))));
+
+    private String getDependency(String groupId, String artifactId, String version) {
+        return cache.getDependency(cache.findArtifact(groupId, artifactId), new MavenVersionRange(version));
+    }
+
+    @Test
+    public void missingArtifactsShouldBeReported() {
+        Assertions.assertEquals(PackedCache.GROUP_ID_NOT_FOUND, cache.findArtifact("org.baz", "foo"));
+        Assertions.assertEquals(PackedCache.ARTIFACT_ID_NOT_FOUND, cache.findArtifact("org.foo", "bar"));
+        Assertions.assertTrue(cache.findArtifact("org.bar", "bar") >= 0);
+    }
+
+    @Test
+    public void qualifiersShouldBeComparedAsStrings() {
+        Assertions.assertEquals(">=dev-java/foo-1.0_beta:1", getDependency("org.foo", "foo", "1.0"));
+        Assertions.assertEquals(">=dev-java/foo-1.0_beta:1", getDependency("org.foo", "foo", "1.0-alpha"));
+        Assertions.assertEquals(">=dev-java/foo-1.0_beta:1", getDependency("org.foo", "foo", "1.0-beta"));
+        Assertions.assertEquals(">=dev-java/foo-1.0_rc2:1", getDependency("org.foo", "foo", "1.0-m1"));
+        Assertions.assertEquals(">=dev-java/foo-2:2", getDependency("org.foo", "foo", "1.0-snapshot"));
+        Assertions.assertEquals(">=dev-java/foo-core-1:0", getDependency("org.foo", "foo-core", "1.0"));
+        Assertions.assertNull(getDependency("org.foo", "foo-core", "1.0-beta"));
+        Assertions.assertNull(getDependency("org.bar", "bar", "3.1"));
+    }
+
+    @Test
+    public void lowestVersionOfBestSlotWithinRangeShouldBeReturned() {
+        int artifact = cache.findArtifact("org.foo", "foo");
+
+        Assertions.assertEquals(">=dev-java/foo-1.0_beta:1", cache.getDependency(artifact, new MavenVersionRange("[1.0-alpha,2.0)")));
+        Assertions.assertEquals(">=dev-java/foo-1.0_rc2:1", cache.getDependency(artifact, new MavenVersionRange("(1.0-beta,2.0)")));
+        Assertions.assertEquals(">=dev-java/foo-2:2", cache.getDependency(artifact, new MavenVersionRange("[1.0-beta,2.0]")));
+        Assertions.assertEquals(">=dev-java/foo-2:2", cache.getDependency(artifact, new MavenVersionRange("[2.0]")));
+        Assertions.assertNull(cache.getDependency(artifact, new MavenVersionRange("(,1.0]")));
+    }
+}
@@ -0,0 +1,70 @@
+package org.gentoo.java.ebuilder.maven;
+
+import io.quarkus.test.junit.QuarkusTest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+@QuarkusTest
+class ResolutionMemoTest {
+
+    @Test
+    public void resultsShouldBeKeptUntilCacheContentChanges() throws Exception {
+        Path dir = Files.createTempDirectory("java-ebuilder");
+        Path cacheFile = dir.resolve("cache");
+        Path memoFile = dir.resolve("cache.memo");
+
+        try {
+            Files.writeString(cacheFile, "1.1\n# comment\ndev-java:foo:1:0::org.foo:foo:1.0:java-pkg-2\n");
+
+            ResolutionMemo memo = ResolutionMemo.open(memoFile, cacheFile);
+            Assertions.assertNull(memo.get("org.foo", "foo", "1.0"));
+            memo.put("org.foo", "foo", "1.0", ">=dev-java/foo-1:0");
+            memo.put("org.foo", "bar", "1.0", "!!!artifactId-not-found!!!");
+
+            memo = ResolutionMemo.open(memoFile, cacheFile);
+            Assertions.assertEquals(">=dev-java/foo-1:0", memo.get("org.foo", "foo", "1.0"));
+            Assertions.assertEquals("!!!artifactId-not-found!!!", memo.get("org.foo", "bar", "1.0"));
+
+            Files.setLastModifiedTime(cacheFile, FileTime.fromMillis(0));
+            memo = ResolutionMemo.open(memoFile, cacheFile);
+            Assertions.assertEquals(">=dev-java/foo-1:0", memo.get("org.foo", "foo", "1.0"));
+
+            Files.writeString(cacheFile, "1.1\n# comment\ndev-java:foo:2:0::org.foo:foo:2.0:java-pkg-2\n");
+            memo = ResolutionMemo.open(memoFile, cacheFile);
+            Assertions.assertNull(memo.get("org.foo", "foo", "1.0"));
+        } finally {
+            Files.deleteIfExists(memoFile);
+            Files.deleteIfExists(cacheFile);
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    public void incompleteLineShouldBeIgnored() throws Exception {
+        Path dir = Files.createTempDirectory("java-ebuilder");
+        Path cacheFile = dir.resolve("cache");
+        Path memoFile = dir.resolve("cache.memo");
+
+        try {
+            Files.writeString(cacheFile, "1.1\n# comment\n");
+            ResolutionMemo.open(memoFile, cacheFile).put("org.foo", "foo", "1.0", ">=dev-java/foo-1:0");
+            Files.writeString(memoFile, Files.readString(memoFile) + "org.foo\tbar\t1.0\t>=dev-java/ba");
+
+            ResolutionMemo memo = ResolutionMemo.open(memoFile, cacheFile);
+            Assertions.assertNull(memo.get("org.foo", "bar", "1.0"));
+            memo.put("org.foo", "baz", "1.0", ">=dev-java/baz-1:0");
+
+            memo = ResolutionMemo.open(memoFile, cacheFile);
+            Assertions.assertEquals(">=dev-java/foo-1:0", memo.get("org.foo", "foo", "1.0"));
+            Assertions.assertEquals(">=dev-java/baz-1:0", memo.get("org.foo", "baz", "1.0"));
+        } finally {
+            Files.deleteIfExists(memoFile);
+            Files.deleteIfExists(cacheFile);
+            Files.delete(dir);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package org.gentoo.java.ebuilder.portage;
+
+import io.quarkus.test.junit.QuarkusTest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+@QuarkusTest
+class BinaryCacheTest {
+
+    @Test
+    public void binaryCacheShouldReadWrittenLines() throws Exception {
+        Path file = Files.createTempFile("java-ebuilder", ".cache");
+
+        try {
+            try (BinaryCacheWriter writer = new BinaryCacheWriter(file)) {
+                writer.write("dev-java:foo:1.2.3:1:::::java-pkg-2");
+                writer.write("dev-java:bar:2.0-r1:0:test:org.bar:bar:2.0-beta-1:java-pkg-2,java-pkg-simple");
+                writer.write("dev-java:baz:3:0::org.bar:baz:3:java-pkg-2,java-pkg-simple");
+                writer.finish();
+            }
+
+            Assertions.assertTrue(BinaryCache.isBinaryCache(file));
+
+            List<CacheItem> items = BinaryCache.read(file);
+            Assertions.assertEquals(3, items.size());
+
+            CacheItem foo = items.get(0);
+            Assertions.assertEquals("foo", foo.getPkg());
+            Assertions.assertEquals("1", foo.getSlot());
+            Assertions.assertNull(foo.getUseFlag());
+            Assertions.assertNull(foo.getGroupId());
+            Assertions.assertNull(foo.getParsedMavenVersion());
+            Assertions.assertEquals(List.of("java-pkg-2"), foo.getJavaEclasses());
+
+            CacheItem bar = items.get(1);
+            Assertions.assertEquals("2.0-r1", bar.getVersion());
+            Assertions.assertEquals("test", bar.getUseFlag());
+            Assertions.assertEquals("org.bar", bar.getGroupId());
+            Assertions.assertEquals("2.0-beta-1", bar.getMavenVersion());
+            Assertions.assertEquals(0, new MavenVersion("2.0-beta-1").compareTo(bar.getParsedMavenVersion()));
+            Assertions.assertEquals(List.of("java-pkg-2", "java-pkg-simple"), bar.getJavaEclasses());
+
+            Assertions.assertSame(bar.getJavaEclasses(), items.get(2).getJavaEclasses());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void artifactIndexShouldReturnItemsSortedByMavenVersion() throws Exception {
+        Path file = Files.createTempFile("java-ebuilder", ".cache");
+
+        try {
+            try (BinaryCacheWriter writer = new BinaryCacheWriter(file)) {
+                writer.write("dev-java:foo:10:10::foo:foo:10.0:java-pkg-2");
+                writer.write("dev-java:foo:2:2::foo:foo:2.0:java-pkg-2");
+                writer.write("dev-java:foo-core:1:0::foo:foo-core:1.0:java-pkg-2");
+                writer.write("dev-java:zoo:1:0::org.zoo:zoo:1.0:java-pkg-2");
+                writer.finish();
+            }
+
+            BinaryCache cache = BinaryCache.open(file);
+            Assertions.assertTrue(cache.hasIndex());
+            Assertions.assertTrue(cache.containsGroupId("foo"));
+            Assertions.assertTrue(cache.containsGroupId("org.zoo"));
+            Assertions.assertFalse(cache.containsGroupId("fo"));
+            Assertions.assertFalse(cache.containsGroupId("org.zoo2"));
+            Assertions.assertNull(cache.getCacheItems("foo", "bar"));
+
+            List<CacheItem> items = cache.getCacheItems("foo", "foo");
+            Assertions.assertEquals(2, items.size());
+            Assertions.assertEquals("2.0", items.get(0).getMavenVersion());
+            Assertions.assertEquals("10.0", items.get(1).getMavenVersion());
+            Assertions.assertSame(items, cache.getCacheItems("foo", "foo"));
+            Assertions.assertEquals("foo-core", cache.getCacheItems("foo", "foo-core").get(0).getPkg());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void textCacheShouldNotBeDetectedAsBinary() throws Exception {
+        Path file = Files.createTempFile("java-ebuilder", ".cache");
+
+        try {
+            Files.writeString(file, "1.1\n# comment\n");
+            Assertions.assertFalse(BinaryCache.isBinaryCache(file));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
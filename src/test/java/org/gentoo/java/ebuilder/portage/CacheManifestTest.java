@@ -0,0 +1,75 @@
+package org.gentoo.java.ebuilder.portage;
+
+import io.quarkus.test.junit.QuarkusTest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+@QuarkusTest
+class CacheManifestTest {
+
+    @Test
+    public void manifestShouldReadWrittenEntries() throws Exception {
+        Path dir = Files.createTempDirectory("java-ebuilder");
+        Path manifestFile = CacheManifest.getManifestFile(dir.resolve("cache"));
+
+        try {
+            try (CacheManifest manifest = CacheManifest.create(manifestFile)) {
+                manifest.put("/var/db/repos/gentoo/dev-java/foo/foo-1.ebuild", new CacheManifest.Entry(100, 1000,
+                        50, 2000, "89abcdef0123456789abcdef0123456789abcdef",
+                        List.of(new CacheItem("dev-java:foo:1:1::org.foo:foo:1:java-pkg-2"))));
+                manifest.put("/var/db/repos/gentoo/dev-libs/bar/bar-2.ebuild", new CacheManifest.Entry(200, 3000,
+                        -1, -1, null, List.of()));
+                manifest.commit();
+            }
+
+            CacheManifest manifest = CacheManifest.read(manifestFile);
+            Assertions.assertEquals(2, manifest.size());
+
+            CacheManifest.Entry foo = manifest.remove("/var/db/repos/gentoo/dev-java/foo/foo-1.ebuild");
+            Assertions.assertEquals(100, foo.getSize());
+            Assertions.assertEquals(1000, foo.getLastModified());
+            Assertions.assertEquals(50, foo.getMetadataSize());
+            Assertions.assertEquals(2000, foo.getMetadataLastModified());
+            Assertions.assertEquals("89abcdef0123456789abcdef0123456789abcdef", foo.getObjectId());
+            Assertions.assertEquals(1, foo.getCacheItems().size());
+            Assertions.assertEquals("org.foo", foo.getCacheItems().get(0).getGroupId());
+
+            CacheManifest.Entry bar = manifest.remove("/var/db/repos/gentoo/dev-libs/bar/bar-2.ebuild");
+            Assertions.assertNull(bar.getObjectId());
+            Assertions.assertTrue(bar.getCacheItems().isEmpty());
+            Assertions.assertEquals(0, manifest.size());
+        } finally {
+            Files.deleteIfExists(manifestFile);
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    public void manifestOfDifferentVersionShouldBeIgnored() throws Exception {
+        Path file = Files.createTempFile("java-ebuilder", ".manifest");
+
+        try {
+            Files.writeString(file, "3:" + PortageParser.CACHE_VERSION + "\n@100:1000::/a/b/c/c-1.ebuild\n");
+            Assertions.assertEquals(0, CacheManifest.read(file).size());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void changedEbuildOrMetadataShouldNotMatch() {
+        CacheManifest.Entry entry = new CacheManifest.Entry(100, 1000, 50, 2000, "abc", List.of());
+
+        Assertions.assertTrue(entry.matches(100, 1000, 50, 2000, null));
+        Assertions.assertFalse(entry.matches(101, 1000, 50, 2000, null));
+        Assertions.assertFalse(entry.matches(100, 1001, 50, 2000, null));
+        Assertions.assertTrue(entry.matches(101, 1001, 50, 2000, "abc"));
+        Assertions.assertFalse(entry.matches(100, 1000, 51, 2000, "abc"));
+        Assertions.assertFalse(entry.matches(100, 1000, 50, 2001, "abc"));
+        Assertions.assertFalse(entry.matches(100, 1000, -1, -1, "abc"));
+    }
+}
@@ -0,0 +1,135 @@
+package org.gentoo.java.ebuilder.portage;
+
+import io.quarkus.test.junit.QuarkusTest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+@QuarkusTest
+class EbuildLexerTest {
+
+    private static EbuildLexer lex(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        EbuildLexer lexer = new EbuildLexer();
+        lexer.reset(bytes, bytes.length);
+
+        return lexer;
+    }
+
+    private static List<String> words(EbuildLexer lexer) {
+        List<String> words = new ArrayList<>();
+
+        while (lexer.nextWord()) {
+            words.add(lexer.getWord());
+        }
+
+        return words;
+    }
+
+    @Test
+    public void assignmentsAndInheritShouldBeRecognized() {
+        EbuildLexer lexer = lex("# Copyright\nEAPI=8\n\ninherit java-pkg-2 java-pkg-simple # comment\n"
+                + "SLOT=\"2/1.2\"\n");
+
+        Assertions.assertEquals(EbuildLexer.ASSIGNMENT, lexer.next());
+        Assertions.assertTrue(lexer.isName("EAPI"));
+        Assertions.assertEquals("8", lexer.getValue());
+
+        Assertions.assertEquals(EbuildLexer.INHERIT, lexer.next());
+        Assertions.assertEquals(List.of("java-pkg-2", "java-pkg-simple"), words(lexer));
+
+        Assertions.assertEquals(EbuildLexer.ASSIGNMENT, lexer.next());
+        Assertions.assertEquals("SLOT", lexer.getName());
+        Assertions.assertEquals("2/1.2", lexer.getValue());
+
+        Assertions.assertEquals(EbuildLexer.END, lexer.next());
+    }
+
+    @Test
+    public void multiLineQuotedValueShouldBeSplitIntoWords() {
+        EbuildLexer lexer = lex("MAVEN_PROVIDES=\"\n\torg.a:a:1\n\torg.b:b:${PV}\n\"\nKEYWORDS=\"~amd64\"\n");
+
+        Assertions.assertEquals(EbuildLexer.ASSIGNMENT, lexer.next());
+        Assertions.assertTrue(lexer.isName("MAVEN_PROVIDES"));
+        Assertions.assertEquals(List.of("org.a:a:1", "org.b:b:${PV}"), words(lexer));
+
+        Assertions.assertEquals(EbuildLexer.ASSIGNMENT, lexer.next());
+        Assertions.assertTrue(lexer.isName("KEYWORDS"));
+        Assertions.assertEquals(EbuildLexer.END, lexer.next());
+    }
+
+    @Test
+    public void hashInsideValueShouldNotStartComment() {
+        EbuildLexer lexer = lex("DESCRIPTION=\"C# and F# # bindings\"\nSLOT=0\n");
+
+        Assertions.assertEquals(EbuildLexer.ASSIGNMENT, lexer.next());
+        Assertions.assertEquals("C# and F# # bindings", lexer.getValue());
+
+        Assertions.assertEquals(EbuildLexer.ASSIGNMENT, lexer.next());
+        Assertions.assertEquals("0", lexer.getValue());
+    }
+
+    @Test
+    public void heredocShouldBeSkipped() {
+        EbuildLexer lexer = lex("src_prepare() {\n\tcat > a <<-EOF || die\n\tSLOT=1\n\tinherit java-pkg-2\n\tEOF\n}\n"
+                + "SLOT=2\n");
+
+        Assertions.assertEquals(EbuildLexer.ASSIGNMENT, lexer.next());
+        Assertions.assertEquals("2", lexer.getValue());
+        Assertions.assertEquals(EbuildLexer.END, lexer.next());
+    }
+
+    @Test
+    public void shiftOperatorShouldNotStartHeredoc() {
+        EbuildLexer lexer = lex("src_prepare() {\n\tlocal a=$(( 1 << 2 ))\n\t(( a <<= 1 ))\n"
+                + "\tif [[ $(( a << 1 )) -gt 1 ]]; then\n\t\tSLOT=1\n\tfi\n}\n<<EOF cat\nSLOT=2\n");
+
+        Assertions.assertEquals(EbuildLexer.ASSIGNMENT, lexer.next());
+        Assertions.assertEquals("1", lexer.getValue());
+        Assertions.assertEquals(EbuildLexer.ASSIGNMENT, lexer.next());
+        Assertions.assertEquals("2", lexer.getValue());
+        Assertions.assertEquals(EbuildLexer.END, lexer.next());
+    }
+
+    @Test
+    public void unquotedSubstitutionsShouldBePartOfValue() {
+        List<String> lines = List.of("SLOT=$(get_version_component_range 1-2)", "SLOT=${PV%.*}",
+                "SLOT=\"$(ver_cut 1-2)\"/${PV}", "SLOT=`echo 1 2`", "SLOT=$(( $(ver_cut 1) + 1 )).${PV:0:1}");
+        EbuildLexer lexer = lex(String.join("\n", lines) + "\ninherit java-pkg-2\n");
+
+        for (String line : lines) {
+            // the same as the line based parser read SLOT
+            String expected = line.substring("SLOT=".length()).replace("\"", "").replaceAll("/.*", "");
+
+            Assertions.assertEquals(EbuildLexer.ASSIGNMENT, lexer.next());
+            Assertions.assertEquals(expected, lexer.getValue().replaceAll("/.*", ""), line);
+        }
+
+        Assertions.assertEquals(EbuildLexer.INHERIT, lexer.next());
+        Assertions.assertEquals(EbuildLexer.END, lexer.next());
+
+        lexer = lex("SLOT=$(get_version_component_range 1-2)\n");
+        Assertions.assertEquals(EbuildLexer.ASSIGNMENT, lexer.next());
+        Assertions.assertEquals("$(get_version_component_range 1-2)", lexer.getValue());
+    }
+
+    @Test
+    public void metadataShouldBeReadAsKeyValueLines() {
+        byte[] bytes = "EAPI=8\nSLOT=0/1\n_eclasses_=java-pkg-2\tabc\tjava-utils-2\tdef\n"
+                .getBytes(StandardCharsets.UTF_8);
+        EbuildLexer lexer = new EbuildLexer();
+        lexer.resetMetadata(bytes, bytes.length);
+
+        Assertions.assertEquals(EbuildLexer.ASSIGNMENT, lexer.next());
+        Assertions.assertTrue(lexer.isName("EAPI"));
+        Assertions.assertEquals(EbuildLexer.ASSIGNMENT, lexer.next());
+        Assertions.assertEquals("0/1", lexer.getValue());
+        Assertions.assertEquals(EbuildLexer.ASSIGNMENT, lexer.next());
+        Assertions.assertTrue(lexer.isName("_eclasses_"));
+        Assertions.assertEquals(List.of("java-pkg-2", "abc", "java-utils-2", "def"), words(lexer));
+        Assertions.assertEquals(EbuildLexer.END, lexer.next());
+    }
+}
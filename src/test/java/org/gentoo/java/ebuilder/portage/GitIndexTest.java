@@ -0,0 +1,104 @@
+package org.gentoo.java.ebuilder.portage;
+
+import io.quarkus.test.junit.QuarkusTest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+@QuarkusTest
+class GitIndexTest {
+
+    private static final String COMMIT = "0ec338a052be8ac7d29eded69bed811f6d86976c";
+
+    // all files in the fixtures have mtime 1700000000 seconds
+    private static final long MTIME = 1_700_000_000_000L;
+
+    @Test
+    public void version2IndexShouldBeRead() throws Exception {
+        checkIndex("index-v2");
+    }
+
+    @Test
+    public void version4IndexShouldBeRead() throws Exception {
+        checkIndex("index-v4");
+    }
+
+    @Test
+    public void racilyCleanEntryShouldNotBeTrusted() throws Exception {
+        Path tree = createTree("index-v4", MTIME);
+
+        try {
+            GitIndex gitIndex = GitIndex.read(tree);
+            Assertions.assertNotNull(gitIndex);
+            Assertions.assertFalse(gitIndex.getEbuild("dev-java/foo/foo-1.0.ebuild").isClean(33, MTIME));
+        } finally {
+            delete(tree);
+        }
+    }
+
+    @Test
+    public void brokenIndexShouldBeIgnored() throws Exception {
+        Path tree = createTree("index-v2", MTIME + 1000);
+
+        try {
+            Path index = tree.resolve(".git/index");
+            byte[] bytes = Files.readAllBytes(index);
+            bytes[20] ^= 1;
+            Files.write(index, bytes);
+            Assertions.assertNull(GitIndex.read(tree));
+        } finally {
+            delete(tree);
+        }
+    }
+
+    private static void checkIndex(String fixture) throws Exception {
+        Path tree = createTree(fixture, MTIME + 1000);
+
+        try {
+            GitIndex gitIndex = GitIndex.read(tree);
+            Assertions.assertNotNull(gitIndex);
+            Assertions.assertEquals(COMMIT, gitIndex.getCommit());
+
+            GitIndex.Entry foo = gitIndex.getEbuild("dev-java/foo/foo-1.0.ebuild");
+            Assertions.assertEquals("1fef7f5e11d10452ea0136c27818686b7e6bf72c", foo.getObjectId());
+            Assertions.assertTrue(foo.isClean(33, MTIME));
+            Assertions.assertFalse(foo.isClean(34, MTIME));
+            Assertions.assertFalse(foo.isClean(33, MTIME + 1000));
+
+            Assertions.assertEquals("ae5dbcaa765b6ccfef0a928ddf7b4c9f75ee01e6",
+                    gitIndex.getEbuild("dev-java/foo/foo-1.1.ebuild").getObjectId());
+            Assertions.assertEquals("7721abafa13275ccf6fced207d210ac323328d2e",
+                    gitIndex.getEbuild("dev-java/foo-bar/foo-bar-2.ebuild").getObjectId());
+            Assertions.assertNull(gitIndex.getEbuild("dev-java/foo/metadata.xml"));
+            Assertions.assertNull(gitIndex.getEbuild("dev-java/foo/foo-2.0.ebuild"));
+        } finally {
+            delete(tree);
+        }
+    }
+
+    private static Path createTree(String fixture, long indexMtime) throws Exception {
+        Path tree = Files.createTempDirectory("java-ebuilder");
+        Path index = tree.resolve(".git/index");
+        Files.createDirectories(index.getParent());
+        Files.copy(Path.of("src/test/resources/git").resolve(fixture), index);
+        Files.setLastModifiedTime(index, FileTime.fromMillis(indexMtime));
+        Files.writeString(tree.resolve(".git/HEAD"), "ref: refs/heads/master\n");
+        Files.createDirectories(tree.resolve(".git/refs/heads"));
+        Files.writeString(tree.resolve(".git/refs/heads/master"), COMMIT + "\n");
+
+        return tree;
+    }
+
+    private static void delete(Path dir) throws Exception {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
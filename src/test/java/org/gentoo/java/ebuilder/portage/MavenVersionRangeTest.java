@@ -0,0 +1,58 @@
+package org.gentoo.java.ebuilder.portage;
+
+import io.quarkus.test.junit.QuarkusTest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+@QuarkusTest
+class MavenVersionRangeTest {
+
+    private static boolean contains(String range, String version) {
+        return new MavenVersionRange(range).containsVersion(new MavenVersion(version));
+    }
+
+    @Test
+    public void softRequirementShouldHaveNoUpperBound() {
+        MavenVersionRange range = new MavenVersionRange("1.2");
+
+        Assertions.assertTrue(range.isSoft());
+        Assertions.assertFalse(contains("1.2", "1.1"));
+        Assertions.assertTrue(contains("1.2", "1.2"));
+        Assertions.assertTrue(contains("1.2", "99"));
+    }
+
+    @Test
+    public void rangeBoundsShouldBeRespected() {
+        Assertions.assertTrue(contains("[1.0]", "1.0"));
+        Assertions.assertFalse(contains("[1.0]", "1.0.1"));
+        Assertions.assertTrue(contains("[1.0,2.0)", "1.0"));
+        Assertions.assertTrue(contains("[1.0,2.0)", "1.9.9"));
+        Assertions.assertFalse(contains("[1.0,2.0)", "2.0"));
+        Assertions.assertFalse(contains("(1.0,2.0]", "1.0"));
+        Assertions.assertTrue(contains("(1.0,2.0]", "2.0"));
+        Assertions.assertTrue(contains("(,1.0]", "0.1"));
+        Assertions.assertFalse(contains("(,1.0]", "1.1"));
+        Assertions.assertTrue(contains("[1.5, )", "100"));
+    }
+
+    @Test
+    public void multipleRangesShouldBeUnited() {
+        MavenVersionRange range = new MavenVersionRange("(,1.0],[1.2,)");
+
+        Assertions.assertFalse(range.isSoft());
+        Assertions.assertEquals(2, range.getRestrictions().size());
+        Assertions.assertTrue(contains("(,1.0],[1.2,)", "1.0"));
+        Assertions.assertFalse(contains("(,1.0],[1.2,)", "1.1"));
+        Assertions.assertTrue(contains("(,1.0],[1.2,)", "1.2"));
+    }
+
+    @Test
+    public void invalidRangesShouldBeRejected() {
+        Assertions.assertThrows(RuntimeException.class, () -> new MavenVersionRange("[1.0"));
+        Assertions.assertThrows(RuntimeException.class, () -> new MavenVersionRange("(1.0)"));
+        Assertions.assertThrows(RuntimeException.class, () -> new MavenVersionRange("[2.0,1.0]"));
+        Assertions.assertThrows(RuntimeException.class, () -> new MavenVersionRange("[1.2,),(,1.0]"));
+        Assertions.assertThrows(RuntimeException.class, () -> new MavenVersionRange("[1.0,2.0)x"));
+        Assertions.assertThrows(RuntimeException.class, () -> new MavenVersion("[1.0,2.0)"));
+    }
+}
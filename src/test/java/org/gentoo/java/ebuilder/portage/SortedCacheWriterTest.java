@@ -0,0 +1,107 @@
+package org.gentoo.java.ebuilder.portage;
+
+import io.quarkus.test.junit.QuarkusTest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+@QuarkusTest
+class SortedCacheWriterTest {
+
+    @Test
+    public void spilledRunsShouldBeMergedInOrder() throws Exception {
+        List<List<CacheItem>> ebuilds = new ArrayList<>();
+
+        for (int i = 0; i < 25; i++) {
+            ebuilds.add(List.of(new CacheItem("dev-java:p" + (i % 7) + ":" + i + ":0::org.p:p:" + i + ":java-pkg-2"),
+                    new CacheItem("dev-java:p" + (i % 7) + ":" + i + ":0::org.q:q:" + i + ":java-pkg-2")));
+        }
+
+        List<String> expected = writeCache(ebuilds, new int[25], 1000);
+        Assertions.assertEquals(50, expected.size());
+
+        // exactly full buffer, one item less, one ebuild per run and uneven runs
+        for (int runSize : new int[]{50, 49, 1, 3, 10}) {
+            List<List<CacheItem>> shuffled = new ArrayList<>(ebuilds);
+            Collections.shuffle(shuffled, new Random(runSize));
+            Assertions.assertEquals(expected, writeCache(shuffled, new int[25], runSize), "run size " + runSize);
+        }
+    }
+
+    @Test
+    public void equalKeysAcrossRunsShouldBeOrderedByTreeAndPosition() throws Exception {
+        List<List<CacheItem>> ebuilds = List.of(
+                List.of(new CacheItem("dev-java:a:1:0::org.a:a:1:java-pkg-2"),
+                        new CacheItem("dev-java:a:1:0::org.a:b:1:java-pkg-2"),
+                        new CacheItem("dev-java:a:1:0::org.a:c:1:java-pkg-2")),
+                List.of(new CacheItem("dev-java:a:0.9:0::org.a:a:0.9:java-pkg-2")),
+                List.of(new CacheItem("dev-java:a:1:0::org.a:x:1:java-pkg-2"),
+                        new CacheItem("dev-java:a:1:0::org.a:y:1:java-pkg-2")));
+
+        // every ebuild is spilled to its own run, dev-java/a-1 is in two runs from two trees
+        Assertions.assertEquals(List.of("dev-java:a:0.9:0::org.a:a:0.9:java-pkg-2",
+                "dev-java:a:1:0::org.a:a:1:java-pkg-2", "dev-java:a:1:0::org.a:b:1:java-pkg-2",
+                "dev-java:a:1:0::org.a:c:1:java-pkg-2"), writeCache(ebuilds, new int[]{1, 0, 0}, 1));
+        Assertions.assertEquals(List.of("dev-java:a:0.9:0::org.a:a:0.9:java-pkg-2",
+                "dev-java:a:1:0::org.a:x:1:java-pkg-2", "dev-java:a:1:0::org.a:y:1:java-pkg-2"),
+                writeCache(ebuilds, new int[]{0, 0, 1}, 1));
+    }
+
+    @Test
+    public void higherPriorityTreeShouldShadowVersionsAndArtifacts() throws Exception {
+        List<List<CacheItem>> ebuilds = List.of(
+                List.of(new CacheItem("dev-java:a:1:0::org.a:a:1:java-pkg-2"),
+                        new CacheItem("dev-java:a:1:0::org.b:b:1:java-pkg-2")),
+                List.of(new CacheItem("dev-java:a:2:0::org.a:a:2:java-pkg-2")),
+                List.of(new CacheItem("dev-java:a:2:0::org.a:a:2:java-pkg-2")),
+                List.of(new CacheItem("dev-java:b:1:0::org.b:b:1:java-pkg-2")),
+                List.of(new CacheItem("dev-java:c:1:0::org.b:b:1:java-pkg-2")),
+                List.of(new CacheItem("dev-java:d:1:0::org.d:d:1:java-pkg-2")));
+        // dev-java/a-2 is in trees 0 and 2, org.b:b:1 is provided from trees 0, 2 and 1
+        int[] trees = {0, 0, 2, 2, 1, 1};
+        List<String> expected = List.of("dev-java:a:1:0::org.a:a:1:java-pkg-2",
+                "dev-java:a:2:0::org.a:a:2:java-pkg-2", "dev-java:b:1:0::org.b:b:1:java-pkg-2",
+                "dev-java:d:1:0::org.d:d:1:java-pkg-2");
+
+        Assertions.assertEquals(expected, writeCache(ebuilds, trees, 1000));
+        Assertions.assertEquals(expected, writeCache(ebuilds, trees, 1));
+        Assertions.assertEquals(expected, writeCache(ebuilds, trees, 2));
+    }
+
+    static List<String> writeCache(List<List<CacheItem>> ebuilds, int[] trees, int runSize) throws Exception {
+        Path dir = Files.createTempDirectory("java-ebuilder");
+        Path cacheFile = dir.resolve("cache");
+
+        try {
+            try (SortedCacheWriter writer = new SortedCacheWriter(cacheFile, runSize)) {
+                for (int i = 0; i < ebuilds.size(); i++) {
+                    writer.add(trees[i], ebuilds.get(i));
+                }
+
+                writer.write(CacheFormat.TEXT);
+            }
+
+            try (Stream<Path> files = Files.list(dir)) {
+                Assertions.assertEquals(1, files.count(), "run files should be deleted");
+            }
+
+            List<String> lines = Files.readAllLines(cacheFile);
+
+            return lines.subList(2, lines.size());
+        } finally {
+            try (Stream<Path> paths = Files.walk(dir)) {
+                for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+}